@@ -22,7 +22,7 @@ public class Alphabet {
     private final Set<Character> symbolSet;
     private final Random random;
 
-    public Set<MinMaxPair> getCharRanges() {
+    public synchronized Set<MinMaxPair> getCharRanges() {
 
         // lazy access pattern
         if (charRanges.size() > 0) {
@@ -35,46 +35,31 @@ public class Alphabet {
 
     public List<String> allStrings(int minLength, int maxLength) {
 
-        // initialize return list of strings
-        List<String> returnList = new ArrayList<>();
-
-        // initialize string tracking list with empty string element
-        List<String> strList = new ArrayList<>();
-        strList.add("");
-
-        // add empty string to string domain if min is 0
-        if (minLength == 0) {
-            returnList.add("");
-        }
-
-        // for strings of length min to length max
-        for (int i = 1; i <= maxLength; i++) {
-
-            // save strings to temporary list before clearing string list
-            List<String> tempList = new ArrayList<>(strList.size());
-            tempList.addAll(strList);
-            strList.clear();
-
-            // loop for each character in alphabet
-            for (char c : this.symbolSet) {
-
-                // for each previous string of length n, append the current
-                // character to create instances of strings with length n+1
-                for (String str : tempList) {
-                    String strInstance = str + c;
-                    strList.add(strInstance);
-                }
-            }
-
-            // add to return list if above min length
-            if (i >= minLength) {
-                returnList.addAll(strList);
-            }
+        // gather strings from string space
+        StringSpace space = this.stringSpace(minLength, maxLength);
+        List<String> returnList = new ArrayList<>((int) space.size());
+        for (String str : space) {
+            returnList.add(str);
         }
 
         return returnList;
     }
 
+    /**
+     * Gets the strings over this alphabet with lengths in a range, without
+     * creating them.
+     *
+     * @param minLength
+     *         The length of the shortest strings.
+     * @param maxLength
+     *         The length of the longest strings.
+     *
+     * @return The string space, in length then lexicographic order.
+     */
+    public StringSpace stringSpace(int minLength, int maxLength) {
+        return new StringSpace(this.symbolSet, minLength, maxLength);
+    }
+
     public String getWhitespaceCharSet() {
 
         // get char set as string from symbol set
@@ -2,19 +2,27 @@ package edu.boisestate.cs;
 
 public class BasicTimer {
 
-    static private long startTime = 0;
-    static private long stopTime = 0;
+    // timers are kept per thread so components solved in parallel do not
+    // overwrite each other's measurements
+    static private final ThreadLocal<long[]> times = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
 
     static public void start() {
-        stopTime = 0;
-        startTime = System.nanoTime();
+        long[] t = times.get();
+        t[1] = 0;
+        t[0] = System.nanoTime();
     }
 
     static public void stop() {
-        stopTime = System.nanoTime();
+        times.get()[1] = System.nanoTime();
     }
 
     static public long getRunTime() {
-        return (stopTime - startTime) / 1000;
+        long[] t = times.get();
+        return (t[1] - t[0]) / 1000;
     }
 }
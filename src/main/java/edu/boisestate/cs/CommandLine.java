@@ -3,7 +3,9 @@ package edu.boisestate.cs;
 import org.apache.commons.cli.*;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -45,6 +47,44 @@ class CommandLine {
             return null;
         }
 
+        // process threads option, also read by the server
+        if (commandLine.hasOption("t")) {
+
+            // set number of worker threads from option value
+            String optionValue = commandLine.getOptionValue("t");
+            int threads = Integer.parseInt(optionValue);
+            if (threads < 1) {
+                System.err.println("The number of threads must be at least 1");
+                return null;
+            }
+            settings.setThreads(threads);
+        }
+
+        // process serve option, each request gives its own arguments
+        if (commandLine.hasOption("n")) {
+
+            // get port and optional worker count from option value
+            String[] values = commandLine.getOptionValue("n").split(",");
+            int port;
+            int workers = Runtime.getRuntime().availableProcessors();
+            try {
+                port = Integer.parseInt(values[0].trim());
+                if (values.length > 1) {
+                    workers = Integer.parseInt(values[1].trim());
+                }
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if (values.length > 2 || port < 0 || port > 65535 || workers < 1) {
+                System.err.println("The server must be given as " +
+                                   "port[,workers] with a port from 0 up " +
+                                   "to 65535 and at least 1 worker");
+                return null;
+            }
+            settings.setServe(port, workers);
+            return settings;
+        }
+
         // ensure valid unprocessed arguments
         List<String> argsList = commandLine.getArgList();
         if (argsList.size() != 1 ||
@@ -68,6 +108,11 @@ class CommandLine {
             settings.setDebug(true);
         }
 
+        // process statistics option
+        if (commandLine.hasOption("stats")) {
+            settings.setStatistics(true);
+        }
+
         // process bounding length option
         if (commandLine.hasOption("l")) {
 
@@ -86,6 +131,162 @@ class CommandLine {
             settings.setAutomatonModelVersion(version);
         }
 
+        // process parallel branches option
+        if (commandLine.hasOption("p")) {
+            settings.setParallelBranches(true);
+        }
+
+        // process lazy concatenation option
+        if (commandLine.hasOption("c")) {
+            settings.setLazyConcat(true);
+        }
+
+        // process approximation option
+        if (commandLine.hasOption("a")) {
+
+            // get epsilon and optional delta from option value
+            String optionValue = commandLine.getOptionValue("a");
+            String[] bounds = optionValue.split(",");
+            double epsilon;
+            double delta = 0;
+            try {
+                epsilon = Double.parseDouble(bounds[0]);
+                if (bounds.length > 1) {
+                    delta = Double.parseDouble(bounds[1]);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("The approximation bounds must be " +
+                                   "numbers given as epsilon[,delta]");
+                return null;
+            }
+            if (bounds.length > 2 || !(epsilon > 0) || !(delta >= 0 && delta < 1)) {
+                System.err.println("The approximation epsilon must be " +
+                                   "greater than 0 and delta must be from 0 " +
+                                   "up to 1");
+                return null;
+            }
+            settings.setApproximation(epsilon, delta);
+        }
+
+        // process counts by length option
+        if (commandLine.hasOption("b")) {
+            settings.setCountLengths(true);
+        }
+
+        // process folding option
+        if (commandLine.hasOption("folding")) {
+            settings.setConstantFolding(true);
+        }
+
+        // process schedule option
+        if (commandLine.hasOption("g")) {
+
+            // get schedule policy choice from option value
+            String optionValue = commandLine.getOptionValue("g");
+            String choice = optionValue.toLowerCase();
+
+            if (choice.equals("topological")) {
+                settings.setSchedulePolicy(Settings.SchedulePolicy.TOPOLOGICAL);
+            } else if (choice.equals("liveness")) {
+                settings.setSchedulePolicy(Settings.SchedulePolicy.LIVENESS);
+            } else {
+
+                String errorMessage = String.format(
+                        "The specified schedule \"%s\" is not a recognized " +
+                        "schedule policy, please use the -h or --help option " +
+                        "to see the valid policies",
+                        choice);
+                System.err.println(errorMessage);
+                return null;
+            }
+        }
+
+        // process no common subexpressions option
+        if (commandLine.hasOption("no-cse")) {
+            settings.setCommonSubexpressions(false);
+        }
+
+        // process off heap option
+        if (commandLine.hasOption("off-heap")) {
+            settings.setOffHeap(true);
+        }
+
+        // process slice options, selecting predicates slices the graph
+        if (commandLine.hasOption("i")) {
+
+            // get predicate ids from option value
+            String optionValue = commandLine.getOptionValue("i");
+            Set<Integer> predicateIds = new HashSet<>();
+            try {
+                for (String id : optionValue.split(",")) {
+                    predicateIds.add(Integer.parseInt(id.trim()));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("The predicates must be given as a comma " +
+                                   "separated list of vertex ids");
+                return null;
+            }
+            settings.setSlice(predicateIds);
+        } else if (commandLine.hasOption("slice")) {
+            settings.setSlice(null);
+        }
+
+        // process model cache option
+        if (commandLine.hasOption("m")) {
+
+            // get directory and optional size in megabytes from option value
+            String optionValue = commandLine.getOptionValue("m");
+            int split = optionValue.lastIndexOf(',');
+            String directory = optionValue;
+            long megabytes = settings.getModelCacheSize() / (1024 * 1024);
+            if (split >= 0) {
+                directory = optionValue.substring(0, split);
+                try {
+                    megabytes = Long.parseLong(optionValue.substring(split + 1)
+                                                          .trim());
+                } catch (NumberFormatException e) {
+                    megabytes = -1;
+                }
+            }
+            if (directory.isEmpty() || megabytes < 1) {
+                System.err.println("The model cache must be given as " +
+                                   "directory[,megabytes] with a size of at " +
+                                   "least 1 megabyte");
+                return null;
+            }
+            settings.setModelCache(directory, megabytes * 1024 * 1024);
+        }
+
+        // process double counts option
+        if (commandLine.hasOption("x")) {
+
+            // map each listed column to its report column name
+            String optionValue = commandLine.getOptionValue("x");
+            String[] choices = optionValue.toLowerCase().split(",");
+            String[] columns = new String[choices.length];
+            for (int i = 0; i < choices.length; i++) {
+                String choice = choices[i].trim();
+                if (choice.equals("in")) {
+                    columns[i] = "IN COUNT";
+                } else if (choice.equals("t")) {
+                    columns[i] = "T COUNT";
+                } else if (choice.equals("f")) {
+                    columns[i] = "F COUNT";
+                } else if (choice.equals("overlap")) {
+                    columns[i] = "OVERLAP";
+                } else {
+                    String errorMessage = String.format(
+                            "The specified count column \"%s\" is not " +
+                            "recognized, please use the -h or --help option " +
+                            "to see the valid columns",
+                            choice);
+                    System.err.println(errorMessage);
+                    return null;
+                }
+            }
+            settings.setDoubleCountColumns(columns);
+        }
+
         // process solver option
         if (commandLine.hasOption("s")) {
 
@@ -118,6 +319,31 @@ class CommandLine {
             }
         }
 
+        // process report format option
+        if (commandLine.hasOption("f")) {
+
+            // get format choice from option value
+            String optionValue = commandLine.getOptionValue("f");
+            String choice = optionValue.toLowerCase();
+
+            if (choice.equals("text")) {
+                settings.setReportFormat(Settings.ReportFormat.TEXT);
+            } else if (choice.equals("json-lines")) {
+                settings.setReportFormat(Settings.ReportFormat.JSON_LINES);
+            } else if (choice.equals("columnar")) {
+                settings.setReportFormat(Settings.ReportFormat.COLUMNAR);
+            } else {
+
+                String errorMessage = String.format(
+                        "The specified format \"%s\" is not a recognized " +
+                        "report format, please use the -h or --help option " +
+                        "to see the valid formats",
+                        choice);
+                System.err.println(errorMessage);
+                return null;
+            }
+        }
+
         // process reporter option
         if (commandLine.hasOption("r")) {
 
@@ -286,6 +512,25 @@ class CommandLine {
                                 .argName("reporter")
                                 .build();
 
+        // report format option
+        Option format = Option.builder("f")
+                              .longOpt("format")
+                              .desc("The format of the report written to " +
+                                    "standard output:\n" +
+                                    Settings.ReportFormat.TEXT +
+                                    " - Tab separated columns\n" +
+                                    Settings.ReportFormat.JSON_LINES +
+                                    " - One JSON object per row\n" +
+                                    Settings.ReportFormat.COLUMNAR +
+                                    " - Compact columnar binary\n\nThe " +
+                                    "default format is " +
+                                    Settings.ReportFormat.DEFAULT +
+                                    "\n")
+                              .hasArg()
+                              .numberOfArgs(1)
+                              .argName("format")
+                              .build();
+
         // debug mode flag
         Option debug = Option.builder("d")
                              .longOpt("debug")
@@ -293,6 +538,16 @@ class CommandLine {
                                    " Default value is false.")
                              .build();
 
+        // statistics flag
+        Option stats = Option.builder()
+                             .longOpt("stats")
+                             .desc("Writes statistics of the run to " +
+                                   "standard error, such as the number " +
+                                   "of folded, duplicate and sliced " +
+                                   "vertices and the peak number of live " +
+                                   "models.")
+                             .build();
+
         // help / usage option
         Option help = Option.builder("h")
                             .longOpt("help")
@@ -327,6 +582,196 @@ class CommandLine {
                                     .argName("version")
                                     .build();
 
+        // worker threads option
+        Option threads = Option.builder("t")
+                               .longOpt("threads")
+                               .desc("Number of threads used to solve " +
+                                     "independent parts of the graph in " +
+                                     "parallel, also used to split large " +
+                                     "value sets of the Concrete solver. " +
+                                     "Default value is 1.")
+                               .hasArg()
+                               .numberOfArgs(1)
+                               .argName("threads")
+                               .build();
+
+        // parallel branches flag
+        Option branches = Option.builder("p")
+                                .longOpt("parallel-branches")
+                                .desc("Evaluates the true, false and " +
+                                      "overlap branches of each predicate " +
+                                      "concurrently in the model count " +
+                                      "reporter, on three threads for " +
+                                      "each component solved at once.")
+                                .build();
+
+        // lazy concatenation flag
+        Option lazyConcat = Option.builder("c")
+                                  .longOpt("lazy-concat")
+                                  .desc("Keeps concatenations in the " +
+                                        "Concrete solver as pairs of value " +
+                                        "sets, streaming the pairs when a " +
+                                        "value is needed instead of storing " +
+                                        "the cross product.")
+                                  .build();
+
+        // approximate model count option
+        Option approximate = Option.builder("a")
+                                   .longOpt("approximate")
+                                   .desc("Estimates model counts of the " +
+                                         "automaton solvers in floating " +
+                                         "point, reporting each count with " +
+                                         "a bound on its relative error. " +
+                                         "Counts whose bound exceeds " +
+                                         "epsilon are counted exactly. " +
+                                         "Delta, the accepted probability " +
+                                         "of exceeding epsilon, defaults " +
+                                         "to 0.")
+                                   .hasArg()
+                                   .numberOfArgs(1)
+                                   .argName("epsilon[,delta]")
+                                   .build();
+
+        // double count columns option
+        Option doubleCounts = Option.builder("x")
+                                    .longOpt("double-counts")
+                                    .desc("Comma separated count columns of " +
+                                          "the model count reporter that " +
+                                          "are counted in doubles, falling " +
+                                          "back to exact counts only when " +
+                                          "the error bound grows too wide. " +
+                                          "Columns are any of in, t, f and " +
+                                          "overlap. Other columns are " +
+                                          "counted exactly.")
+                                    .hasArg()
+                                    .numberOfArgs(1)
+                                    .argName("columns")
+                                    .build();
+
+        // counts by length flag
+        Option byLength = Option.builder("b")
+                                .longOpt("by-length")
+                                .desc("Adds the counts of each string " +
+                                      "length from 0 up to the bound to " +
+                                      "the model count report, one column " +
+                                      "for each of the in, true, false and " +
+                                      "overlap counts, so a single run " +
+                                      "gives the counts of every smaller " +
+                                      "bound.")
+                                .build();
+
+
+        // folding flag
+        Option folding = Option.builder()
+                               .longOpt("folding")
+                               .desc("Folds operations on concrete values " +
+                                     "into concrete strings before " +
+                                     "solving with the JSA solver. Counts " +
+                                     "of model version 3 may differ from " +
+                                     "those of unfolded operations.")
+                               .build();
+
+        // schedule option
+        Option schedule = Option.builder("g")
+                                .longOpt("schedule")
+                                .desc("The order vertices are solved in:\n" +
+                                      Settings.SchedulePolicy.TOPOLOGICAL +
+                                      " - Lowest id first\n" +
+                                      Settings.SchedulePolicy.LIVENESS +
+                                      " - Fewest live models first, " +
+                                      "finishing chains of operations " +
+                                      "before starting others\n\nThe " +
+                                      "default schedule is " +
+                                      Settings.SchedulePolicy.DEFAULT +
+                                      ". Both give the same report.\n")
+                                .hasArg()
+                                .numberOfArgs(1)
+                                .argName("policy")
+                                .build();
+
+        // no common subexpressions flag
+        Option noCse = Option.builder()
+                             .longOpt("no-cse")
+                             .desc("Solves every operation with the JSA " +
+                                   "solver instead of copying the result " +
+                                   "of an earlier operation on the same " +
+                                   "values.")
+                             .build();
+
+        // slice flag
+        Option slice = Option.builder()
+                             .longOpt("slice")
+                             .desc("Solves only the vertices that a " +
+                                   "predicate depends on, skipping " +
+                                   "operations whose results no predicate " +
+                                   "uses.")
+                             .build();
+
+        // predicates option
+        Option predicates = Option.builder("i")
+                                  .longOpt("predicates")
+                                  .desc("Slices the graph to the predicates " +
+                                        "with these vertex ids, solving " +
+                                        "only the vertices they depend on. " +
+                                        "Other predicates on the same " +
+                                        "values are kept, since their " +
+                                        "branches refine those values.")
+                                  .hasArg()
+                                  .numberOfArgs(1)
+                                  .argName("id[,id...]")
+                                  .build();
+
+        // model cache option
+        Option modelCache = Option.builder("m")
+                                  .longOpt("model-cache")
+                                  .desc("Stores the model solved for each " +
+                                        "vertex and the exact counts of " +
+                                        "each counted model in this " +
+                                        "directory and reuses them in " +
+                                        "later runs of the same graph file " +
+                                        "with the same model version, " +
+                                        "bound and alphabet. Least " +
+                                        "recently used entries are removed " +
+                                        "once the cache " +
+                                        "exceeds its size, 256 megabytes " +
+                                        "unless given. Only used by the JSA " +
+                                        "solver.")
+                                  .hasArg()
+                                  .numberOfArgs(1)
+                                  .argName("directory[,megabytes]")
+                                  .build();
+
+        // off heap flag
+        Option offHeap = Option.builder()
+                               .longOpt("off-heap")
+                               .desc("Keeps the models stored by the JSA " +
+                                     "solver encoded in direct buffers " +
+                                     "outside the heap once their vertex " +
+                                     "is solved, decoding each model once " +
+                                     "for each vertex that reads it and " +
+                                     "releasing its memory once no later " +
+                                     "vertex reads it.")
+                               .build();
+
+        // serve option
+        Option serve = Option.builder("n")
+                             .longOpt("serve")
+                             .desc("Runs as a server on this loopback " +
+                                   "port, keeping loaded graphs and " +
+                                   "alphabets between requests. Each " +
+                                   "request gives the arguments of a " +
+                                   "single run and is solved by one of " +
+                                   "the workers, as many as there are " +
+                                   "processors unless given. The " +
+                                   "threads option given with this one " +
+                                   "splits value sets of the Concrete " +
+                                   "solver for every request. See " +
+                                   "SolveServer for the protocol.")
+                             .hasArg()
+                             .numberOfArgs(1)
+                             .argName("port[,workers]")
+                             .build();
+
         Option old = Option.builder("o")
                            .longOpt("old")
                            .desc("Runs older version of jsa solver")
@@ -335,12 +780,28 @@ class CommandLine {
         // add each option to options collection
         Options options = new Options();
         options.addOption(debug);
+        options.addOption(stats);
         options.addOption(help);
         options.addOption(length);
         options.addOption(modelVersion);
         options.addOption(solver);
         options.addOption(reporter);
         options.addOption(old);
+        options.addOption(threads);
+        options.addOption(branches);
+        options.addOption(lazyConcat);
+        options.addOption(approximate);
+        options.addOption(doubleCounts);
+        options.addOption(byLength);
+        options.addOption(modelCache);
+        options.addOption(offHeap);
+        options.addOption(folding);
+        options.addOption(noCse);
+        options.addOption(schedule);
+        options.addOption(slice);
+        options.addOption(predicates);
+        options.addOption(serve);
+        options.addOption(format);
 
         // return options
         return options;
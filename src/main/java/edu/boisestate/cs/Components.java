@@ -1,30 +1,72 @@
 package edu.boisestate.cs;
 
+import edu.boisestate.cs.graph.CommonSubexpressions;
+import edu.boisestate.cs.graph.CompiledGraph;
+import edu.boisestate.cs.reporting.BranchEvaluator;
 import edu.boisestate.cs.reporting.Reporter;
 import edu.boisestate.cs.graph.PrintConstraint;
 import edu.boisestate.cs.graph.SymbolicEdge;
 import edu.boisestate.cs.solvers.ExtendedSolver;
+import edu.boisestate.cs.solvers.ModelCache;
 import org.jgrapht.DirectedGraph;
 
+import java.io.OutputStream;
+
 /**
  *
  */
 class Components {
 
     private Alphabet alphabet;
+    private BranchEvaluator branchEvaluator;
+    private CommonSubexpressions commonSubexpressions;
+    private CompiledGraph compiledGraph;
+    private ConstantFolding constantFolding;
     private DirectedGraph<PrintConstraint, SymbolicEdge> graph;
+    private String graphHash;
+    private ModelCache modelCache;
+    private OutputStream output;
     private Parser parser;
     private Reporter reporter;
+    private int[] schedule;
     private ExtendedSolver solver;
 
     public Alphabet getAlphabet() {
         return alphabet;
     }
 
+    public BranchEvaluator getBranchEvaluator() {
+        return branchEvaluator;
+    }
+
+    public CommonSubexpressions getCommonSubexpressions() {
+        return commonSubexpressions;
+    }
+
+    public CompiledGraph getCompiledGraph() {
+        return compiledGraph;
+    }
+
+    public ConstantFolding getConstantFolding() {
+        return constantFolding;
+    }
+
     public DirectedGraph<PrintConstraint, SymbolicEdge> getGraph() {
         return graph;
     }
 
+    public String getGraphHash() {
+        return graphHash;
+    }
+
+    public ModelCache getModelCache() {
+        return modelCache;
+    }
+
+    public OutputStream getOutput() {
+        return output;
+    }
+
     public Parser getParser() {
         return parser;
     }
@@ -33,6 +75,10 @@ class Components {
         return reporter;
     }
 
+    public int[] getSchedule() {
+        return schedule;
+    }
+
     public ExtendedSolver getSolver() {
         return solver;
     }
@@ -41,10 +87,38 @@ class Components {
         this.alphabet = alphabet;
     }
 
+    public void setBranchEvaluator(BranchEvaluator branchEvaluator) {
+        this.branchEvaluator = branchEvaluator;
+    }
+
+    public void setCommonSubexpressions(CommonSubexpressions commonSubexpressions) {
+        this.commonSubexpressions = commonSubexpressions;
+    }
+
+    public void setCompiledGraph(CompiledGraph compiledGraph) {
+        this.compiledGraph = compiledGraph;
+    }
+
+    public void setConstantFolding(ConstantFolding constantFolding) {
+        this.constantFolding = constantFolding;
+    }
+
     public void setGraph(DirectedGraph<PrintConstraint, SymbolicEdge> graph) {
         this.graph = graph;
     }
 
+    public void setGraphHash(String graphHash) {
+        this.graphHash = graphHash;
+    }
+
+    public void setModelCache(ModelCache modelCache) {
+        this.modelCache = modelCache;
+    }
+
+    public void setOutput(OutputStream output) {
+        this.output = output;
+    }
+
     public void setParser(Parser parser) {
         this.parser = parser;
     }
@@ -53,6 +127,10 @@ class Components {
         this.reporter = reporter;
     }
 
+    public void setSchedule(int[] schedule) {
+        this.schedule = schedule;
+    }
+
     public void setSolver(ExtendedSolver solver) {
         this.solver = solver;
     }
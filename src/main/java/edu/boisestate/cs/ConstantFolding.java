@@ -0,0 +1,120 @@
+package edu.boisestate.cs;
+
+import edu.boisestate.cs.graph.CompiledGraph;
+import edu.boisestate.cs.graph.Opcode;
+import edu.boisestate.cs.graph.PrintConstraint;
+import edu.boisestate.cs.solvers.ConcreteSolver;
+
+/**
+ * The results of the operations of a graph that take only concrete values,
+ * computed once before solving. The operations are run in topological order
+ * by a parser over a {@link ConcreteSolver}, so each is evaluated with plain
+ * java.lang.String operations and gives the same operation string as when
+ * solved. Operations whose inputs are all concrete roots or folded
+ * operations, and whose result is a single string, are folded. A solver then
+ * creates their results as concrete strings instead of running the
+ * operations on automata.
+ */
+public class ConstantFolding {
+
+    private final String[] values;
+    private final String[] operations;
+    private final int foldedCount;
+
+    private ConstantFolding(String[] values, String[] operations, int foldedCount) {
+        this.values = values;
+        this.operations = operations;
+        this.foldedCount = foldedCount;
+    }
+
+    /**
+     * Folds the operations of a graph that take only concrete values.
+     *
+     * @param compiled
+     *         The compiled constraint graph.
+     * @param alphabet
+     *         The alphabet of the solved graph.
+     *
+     * @return The folded operations.
+     */
+    public static ConstantFolding fold(CompiledGraph compiled, Alphabet alphabet) {
+
+        // values of any other input have more than one string within a bound
+        // of 1, so operations on them are never folded
+        ConcreteSolver solver = new ConcreteSolver(alphabet, 1);
+        Parser parser = new Parser(solver, false);
+        parser.setMaxGraphId(compiled.getMaxId());
+
+        boolean[] concrete = new boolean[compiled.size()];
+        String[] values = new String[compiled.size()];
+        String[] operations = new String[compiled.size()];
+        int foldedCount = 0;
+        for (int v : compiled.getTopologicalOrder()) {
+            PrintConstraint constraint = compiled.getConstraint(v);
+
+            // skip ends, which have no consumers
+            if (compiled.isEnd(v)) {
+                continue;
+            }
+
+            // create concrete roots
+            if (compiled.isRoot(v)) {
+                if (!parser.isSymbolicRoot(constraint)) {
+                    parser.addRoot(constraint);
+                    concrete[v] = true;
+                }
+                continue;
+            }
+
+            // ensure operation is known and all inputs are concrete
+            Opcode opcode = constraint.getOpcode();
+            boolean foldable = opcode != Opcode.UNKNOWN && !opcode.isPredicate();
+            for (int e = compiled.inBegin(v); foldable && e < compiled.inEnd(v); e++) {
+                foldable = concrete[compiled.inSource(e)];
+            }
+            if (!foldable) {
+                continue;
+            }
+
+            // evaluate operation, folding it if its result is a single string
+            String operation = parser.addOperation(constraint);
+            int id = constraint.getId();
+            if (operation != null && solver.isSingleton(id)) {
+                concrete[v] = true;
+                values[v] = solver.getAllVales(id).iterator().next();
+                operations[v] = operation;
+                foldedCount++;
+            }
+        }
+
+        return new ConstantFolding(values, operations, foldedCount);
+    }
+
+    /**
+     * @return True if the operation of a vertex is folded.
+     */
+    public boolean isFolded(int v) {
+        return operations[v] != null;
+    }
+
+    /**
+     * @return The result of the folded operation of a vertex.
+     */
+    public String getValue(int v) {
+        return values[v];
+    }
+
+    /**
+     * @return The operation string of the folded operation of a vertex.
+     */
+    public String getOperation(int v) {
+        return operations[v];
+    }
+
+    /**
+     * @return The number of folded operations.
+     */
+    public int getFoldedCount() {
+        return foldedCount;
+    }
+}
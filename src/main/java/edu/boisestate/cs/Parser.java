@@ -1,5 +1,7 @@
 package edu.boisestate.cs;
 
+import edu.boisestate.cs.graph.CommonSubexpressions;
+import edu.boisestate.cs.graph.Opcode;
 import edu.boisestate.cs.graph.PrintConstraint;
 import edu.boisestate.cs.solvers.ExtendedSolver;
 
@@ -14,7 +16,9 @@ import java.util.Map;
 @SuppressWarnings("Duplicates")
 public class Parser {
 
-    public static Map<Integer, String> actualVals;
+    // actual values by vertex id, kept per parser so parsers of different
+    // graphs can run side by side
+    private final Map<Integer, String> actualVals;
     ExtendedSolver solver;
     private boolean debug;
     private int maxGraphId;
@@ -23,8 +27,19 @@ public class Parser {
         this.maxGraphId = maxGraphId;
     }
 
-    static {
-        actualVals = new HashMap<>();
+    /**
+     * @return The largest id in use, including ids generated for temporary
+     * symbolic strings.
+     */
+    public int getMaxGraphId() {
+        return maxGraphId;
+    }
+
+    /**
+     * @return The actual value of a processed vertex.
+     */
+    public String getActualValue(int id) {
+        return actualVals.get(id);
     }
 
     public Parser(ExtendedSolver solver,
@@ -36,6 +51,7 @@ public class Parser {
 
         // initialize fields
         this.maxGraphId = 0;
+        this.actualVals = new HashMap<>();
     }
 
     public boolean addEnd(PrintConstraint constraint) {
@@ -82,10 +98,8 @@ public class Parser {
         }
 
 
-        // if solver containsString boolean function name
-        String fName = string.split("!!")[0];
-
-        return ExtendedSolver.containsBoolFunction(fName);
+        // if constraint is a boolean function
+        return constraint.getOpcode().isPredicate();
     }
 
     /**
@@ -125,17 +139,10 @@ public class Parser {
         actualVal = solver.replaceEscapes(actualVal);
         actualVals.put(id, actualVal);
 
-        // get base id from source map
-        int base = sourceMap.get("t");
-
-        // get function name from string value
-        String fName = string.split("!!")[0];
-
-        // get arg id from source map, -1 if none
-        int arg = -1;
-        if (sourceMap.get("s1") != null) {
-            arg = sourceMap.get("s1");
-        }
+        // get base and arg ids parsed with the graph, arg -1 if none
+        int base = constraint.getBaseId();
+        int arg = constraint.getArgId();
+        String fName = constraint.getFunctionName();
 
         // ensure the operation can be completed
         if (!solver.isValidState(base, arg)) {
@@ -144,98 +151,111 @@ public class Parser {
             return null;
         }
 
-        // process operation based on function name
-        if ((fName.equals("concatenate")) ||
-            fName.equals("concat") ||
-            fName.equals("append")) {
-
-            operationString = processConcat(constraint);
-
-        } else if (fName.equals("<init>")) {
-
-            operationString = processInit(constraint);
-
-        } else if (string.startsWith("substring")) {
-
-            operationString = processSubstring(constraint, string);
-
-        } else if (fName.equals("setLength")) {
-
-            operationString = processSetLength(constraint);
-
-        } else if (fName.equals("insert")) {
-
-            operationString = processInsert(constraint);
-
-        } else if (fName.equals("setCharAt")) {
-
-            operationString = processSetCharAt(constraint);
-
+        // reuse the result stored by an earlier run
+        String restored = solver.restoreResult(id);
+        if (restored != null) {
+            return restored;
         }
-        //TODO: Check for 2 cases: Restricted any string and more then 2
-        // leading white space chars
-
-        //For some reason it fails when it is any string of any length. This
-        // hack fixes it (woo). Check should be done in strangerlib.
-        else if (fName.equals("trim")) {
-
-            // perform trim operation
-            solver.trim(id, base);
-            operationString = String.format("<S:%d>.trim()", base);
-
-        } else if (fName.equals("delete")) {
-
-            operationString = processDelete(constraint);
-
-        } else if (fName.equals("deleteCharAt")) {
-
-            operationString = processDeleteCharAt(constraint);
-
-        } else if (fName.equals("reverse")) {
-
-            // perform reverse operation
-            solver.reverse(id, base);
-            operationString = String.format("<S:%d>.reverse()", base);
-
-        } else if (fName.startsWith("replace")) {
 
-            operationString = processReplace(constraint);
-
-        } else if (fName.equals("toUpperCase") && sourceMap.size() == 1) {
-
-            // perform uppercase operation
-            solver.toUpperCase(id, base);
-            operationString = String.format("<S:%d>.toUpperCase()", base);
+        // process operation based on opcode parsed with the graph
+        switch (constraint.getOpcode()) {
+            case CONCAT:
+                operationString = processConcat(constraint);
+                break;
+            case INIT:
+                operationString = processInit(constraint);
+                break;
+            case SUBSTRING:
+                operationString = processSubstring(constraint, string);
+                break;
+            case SET_LENGTH:
+                operationString = processSetLength(constraint);
+                break;
+            case INSERT:
+                operationString = processInsert(constraint);
+                break;
+            case SET_CHAR_AT:
+                operationString = processSetCharAt(constraint);
+                break;
+
+            //TODO: Check for 2 cases: Restricted any string and more then 2
+            // leading white space chars
+
+            //For some reason it fails when it is any string of any length. This
+            // hack fixes it (woo). Check should be done in strangerlib.
+            case TRIM:
+
+                // perform trim operation
+                solver.trim(id, base);
+                operationString = String.format("<S:%d>.trim()", base);
+                break;
+
+            case DELETE:
+                operationString = processDelete(constraint);
+                break;
+            case DELETE_CHAR_AT:
+                operationString = processDeleteCharAt(constraint);
+                break;
+            case REVERSE:
+
+                // perform reverse operation
+                solver.reverse(id, base);
+                operationString = String.format("<S:%d>.reverse()", base);
+                break;
+
+            case REPLACE:
+                operationString = processReplace(constraint);
+                break;
+            case TO_UPPER_CASE:
+            case TO_LOWER_CASE:
+                if (sourceMap.size() != 1) {
+
+                    // create symbolic string
+                    solver.newSymbolicString(id);
+                } else if (constraint.getOpcode() == Opcode.TO_UPPER_CASE) {
+
+                    // perform uppercase operation
+                    solver.toUpperCase(id, base);
+                    operationString = String.format("<S:%d>.toUpperCase()", base);
+                } else {
 
-        } else if (fName.equals("toLowerCase") && sourceMap.size() == 1) {
+                    // perform lowercase operation
+                    solver.toLowerCase(id, base);
+                    operationString = String.format("<S:%d>.toLowerCase()", base);
+                }
+                break;
 
-            // perform lowercase operation
-            solver.toLowerCase(id, base);
-            operationString = String.format("<S:%d>.toLowerCase()", base);
+            case PROPAGATE:
 
-        } else if (fName.equals("toString") ||
-                   fName.equals("intern") ||
-                   fName.equals("trimToSize") ||
-                   fName.equals("length") ||
-                   fName.equals("charAt")) {
+                // perform string propagation
+                processPropagation(constraint);
+                operationString = String.format("<S:%d>.%s()", base, fName);
+                break;
 
-            // perform string propagation
-            processPropagation(constraint);
-            operationString = String.format("<S:%d>.%s()", base, fName);
+            case VALUE_OF:
+            case COPY_VALUE_OF:
+                if (constraint.getOpcode() == Opcode.COPY_VALUE_OF &&
+                    sourceMap.size() != 2) {
 
-        } else if (fName.equals("valueOf") ||
-                   (fName.equals("copyValueOf") && sourceMap.size() == 2)) {
+                    // create symbolic string
+                    solver.newSymbolicString(id);
+                } else {
 
-            // perform string propagation
-            processPropagation(constraint);
-            operationString = String.format("String.%s(<S:%d>)", fName, base);
+                    // perform string propagation
+                    processPropagation(constraint);
+                    operationString = String.format("String.%s(<S:%d>)", fName, base);
+                }
+                break;
 
-        } else {
+            default:
 
-            // create symbolic string
-            solver.newSymbolicString(id);
+                // create symbolic string
+                solver.newSymbolicString(id);
         }
 
+        // store result for later runs
+        solver.storeResult(id, operationString);
+
         // return op string
         return operationString;
     }
@@ -282,7 +302,7 @@ public class Parser {
         String string = constraint.getSplitValue();
         int id = constraint.getId();
         int base = sourceMap.get("t");
-        String fName = string.split("!!")[0];
+        String fName = constraint.getFunctionName();
 
         // get arg id from source map, -1 if none
         int arg = -1;
@@ -303,7 +323,7 @@ public class Parser {
         }
 
         // get operation parameters
-        String params = string.split("!!")[1];
+        String params = constraint.getParameters();
 
         // if function has more than two arguments
         if (sourceMap.size() > 3) {
@@ -610,7 +630,7 @@ public class Parser {
         //TODO implement other inserts
 
         // get operation parameters
-        String params = string.split("!!")[1];
+        String params = constraint.getParameters();
 
         // stringBuilder.insert(int offset, char c)
         // stringBuilder.insert(int offset, char[] str)
@@ -741,8 +761,7 @@ public class Parser {
 
         // get constraint info as variables
         Map<String, Integer> sourceMap = constraint.getSourceMap();
-        String string = constraint.getSplitValue();
-        String fName = string.split("!!")[0];
+        String fName = constraint.getFunctionName();
         int id = constraint.getId();
         int base = sourceMap.get("t");
 
@@ -751,7 +770,7 @@ public class Parser {
         int arg2 = sourceMap.get("s2");
 
         // get operation parameters
-        String params = string.split("!!")[1];
+        String params = constraint.getParameters();
 
         // declare operation string
         String operation = null;
@@ -1059,10 +1078,9 @@ public class Parser {
 
         // add actual value to map
         actualVals.put(id, actualValue);
-        value = solver.replaceEscapes(value);
 
         // if labeled as root value
-        if (value.startsWith("r") || value.startsWith("$r")) {
+        if (isSymbolicRoot(constraint)) {
 
             // create new symbolic string for id
             solver.newSymbolicString(id);
@@ -1074,6 +1092,113 @@ public class Parser {
         return String.format("<S:%d> = \\\"%s\\\"", id, actualValue);
     }
 
+    /**
+     * @return True if a root is labeled as a symbolic value, false if it is a
+     * concrete string.
+     */
+    public boolean isSymbolicRoot(PrintConstraint constraint) {
+        String value = solver.replaceEscapes(constraint.getSplitValue());
+        return value.startsWith("r") || value.startsWith("$r");
+    }
+
+    /**
+     * Adds an operation whose result was computed before solving by {@link
+     * ConstantFolding}, creating the result as a concrete string.
+     *
+     * @param constraint
+     *         The operation node constraint.
+     * @param value
+     *         The folded result of the operation.
+     * @param operation
+     *         The operation string given when the operation was folded.
+     *
+     * @return Returns a string representation of the operation represented by
+     * the operation node constraint.
+     */
+    public String addFoldedOperation(PrintConstraint constraint,
+                                     String value,
+                                     String operation) {
+
+        // get constraint info as variables
+        String actualVal = constraint.getActualVal();
+        int id = constraint.getId();
+
+        // if debug mode set
+        if (debug) {
+
+            // output operation information
+            String opInfo = String.format("Folded operation: %s | %s | %d",
+                                          constraint.getSplitValue(),
+                                          actualVal,
+                                          id);
+            System.out.println(opInfo);
+        }
+
+        // ensure valid actual value
+        actualVals.put(id, solver.replaceEscapes(actualVal));
+
+        // ensure the operation can be completed
+        if (!solver.isValidState(constraint.getBaseId(), constraint.getArgId())) {
+            // return after setting new symbolic string
+            solver.newSymbolicString(id);
+            return null;
+        }
+
+        // create folded result
+        solver.newConcreteString(id, value);
+        return operation;
+    }
+
+    /**
+     * Adds an operation that repeats an earlier operation, found by {@link
+     * CommonSubexpressions}, copying the result of the earlier operation.
+     *
+     * @param constraint
+     *         The operation node constraint.
+     * @param representative
+     *         The id of the earlier operation.
+     * @param operation
+     *         The operation string given when the earlier operation was
+     *         added.
+     *
+     * @return Returns a string representation of the operation represented by
+     * the operation node constraint.
+     */
+    public String addDuplicateOperation(PrintConstraint constraint,
+                                        int representative,
+                                        String operation) {
+
+        // get constraint info as variables
+        String actualVal = constraint.getActualVal();
+        int id = constraint.getId();
+
+        // if debug mode set
+        if (debug) {
+
+            // output operation information
+            String opInfo = String.format("Duplicate operation: %s | %s | %d | %d",
+                                          constraint.getSplitValue(),
+                                          actualVal,
+                                          id,
+                                          representative);
+            System.out.println(opInfo);
+        }
+
+        // ensure valid actual value
+        actualVals.put(id, solver.replaceEscapes(actualVal));
+
+        // ensure the operation can be completed
+        if (!solver.isValidState(constraint.getBaseId(), constraint.getArgId())) {
+            // return after setting new symbolic string
+            solver.newSymbolicString(id);
+            return null;
+        }
+
+        // copy result of earlier operation
+        solver.propagateSymbolicString(id, representative);
+        return operation;
+    }
+
     /**
      * Assert a predicate on a symbolic value from the following boolean
      * function: <ul> <li>{@link java.lang.String#contains(CharSequence)}</li>
@@ -1096,47 +1221,51 @@ public class Parser {
      */
     public void assertBooleanConstraint(boolean result,
                                         PrintConstraint constraint) {
+        assertBooleanConstraint(result, constraint, this.solver);
+    }
 
-        // get constraint info as variables
-        String string = constraint.getSplitValue();
-        String fName = string.split("!!")[0];
-        Map<String, Integer> sourceMap = constraint.getSourceMap();
-
-        // get id of base symbolic string
-        int base = (sourceMap.get("t"));
+    /**
+     * Assert a predicate on a symbolic value using the specified solver, such
+     * as a branch of the parser's solver.
+     *
+     * @param result
+     *         Is it a true or false predicate.
+     * @param constraint
+     *         The the boolean constraint which is being asserted.
+     * @param solver
+     *         The solver on which the predicate is asserted.
+     */
+    public void assertBooleanConstraint(boolean result,
+                                        PrintConstraint constraint,
+                                        ExtendedSolver solver) {
 
-        // get id of second symbolic string if it exists
-        int arg = -1;
-        if (sourceMap.get("s1") != null) {
-            arg = sourceMap.get("s1");
-        }
+        // get ids of base and second symbolic string, -1 if none
+        int base = constraint.getBaseId();
+        int arg = constraint.getArgId();
 
         // TODO: add starts with for sourceMap size 3 (two args)
         // assert the boolean constraint
-        if (fName.equals("contains")) {
-        	
-            solver.contains(result, base, arg);
-
-        } else if (fName.equals("endsWith")) {
-
-            solver.endsWith(result, base, arg);
-
-        } else if (fName.equals("startsWith") && sourceMap.size() == 2) {
-
-            solver.startsWith(result, base, arg);
-
-        } else if (fName.equals("equals") || fName.equals("contentEquals")) {
-
-            solver.equals(result, base, arg);
-
-        } else if (fName.equals("equalsIgnoreCase")) {
-
-            solver.equalsIgnoreCase(result, base, arg);
-
-        } else if (fName.equals("isEmpty")) {
-
-            solver.isEmpty(result, base);
-
+        switch (constraint.getOpcode()) {
+            case CONTAINS:
+                solver.contains(result, base, arg);
+                break;
+            case ENDS_WITH:
+                solver.endsWith(result, base, arg);
+                break;
+            case STARTS_WITH:
+                if (constraint.getSourceMap().size() == 2) {
+                    solver.startsWith(result, base, arg);
+                }
+                break;
+            case EQUALS:
+                solver.equals(result, base, arg);
+                break;
+            case EQUALS_IGNORE_CASE:
+                solver.equalsIgnoreCase(result, base, arg);
+                break;
+            case IS_EMPTY:
+                solver.isEmpty(result, base);
+                break;
         }
     }
 
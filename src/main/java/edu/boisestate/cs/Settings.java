@@ -1,9 +1,14 @@
 package edu.boisestate.cs;
 
+import java.util.Set;
+
 public class Settings {
 
     public static final int DEFAULT_BOUNDING_LENGTH = 10;
     private String alphabetDeclaration;
+    private boolean approximate;
+    private double approximationDelta;
+    private double approximationEpsilon;
     /**
      * Version of the automaton model used with JSA family of string constraint
      * solvers: <ol> <li>Unbounded automaton model</li> <li>Bounded automaton
@@ -11,26 +16,87 @@ public class Settings {
      * accurate automaton model</li> </ol>
      */
     private int automatonModelVersion;
+    private boolean commonSubexpressions;
+    private boolean constantFolding;
+    private boolean countLengths;
     private boolean debug;
+    private String[] doubleCountColumns;
     private String graphFilePath;
     private int initialBoundingLength;
+    private boolean lazyConcat;
     private String minAlphabet;
+    private String modelCacheDirectory;
+    private long modelCacheSize;
+    private boolean offHeap;
     private boolean old;
+    private boolean parallelBranches;
+    private ReportFormat reportFormat;
     private ReportType reportType;
+    private SchedulePolicy schedulePolicy;
+    private int servePort;
+    private boolean statistics;
+    private boolean slice;
+    private Set<Integer> slicePredicateIds;
+    private int serveWorkers;
     private SolverType solverType;
+    private int threads;
 
     public String getAlphabetDeclaration() {
         return alphabetDeclaration;
     }
 
+    public boolean getApproximate() {
+        return approximate;
+    }
+
+    public double getApproximationDelta() {
+        return approximationDelta;
+    }
+
+    public double getApproximationEpsilon() {
+        return approximationEpsilon;
+    }
+
     public int getAutomatonModelVersion() {
         return automatonModelVersion;
     }
 
+    /**
+     * @return True if duplicate operations are given a copy of the result of
+     * an earlier operation when solving with the JSA solver.
+     */
+    public boolean getCommonSubexpressions() {
+        return commonSubexpressions;
+    }
+
+    /**
+     * @return True if operations on concrete values are folded before
+     * solving with the JSA solver.
+     */
+    public boolean getConstantFolding() {
+        return constantFolding;
+    }
+
+    public boolean getCountLengths() {
+        return countLengths;
+    }
+
+    /**
+     * @return True if graph and memory statistics of a run are written to
+     * standard error.
+     */
+    public boolean getStatistics() {
+        return statistics;
+    }
+
     public boolean getDebug() {
         return debug;
     }
 
+    public String[] getDoubleCountColumns() {
+        return doubleCountColumns;
+    }
+
     public String getGraphFilePath() {
         return graphFilePath;
     }
@@ -39,18 +105,92 @@ public class Settings {
         return initialBoundingLength;
     }
 
+    public boolean getLazyConcat() {
+        return lazyConcat;
+    }
+
     public String getMinAlphabet() {
         return minAlphabet;
     }
 
+    /**
+     * @return The directory of the on-disk model cache, or null to solve
+     * without a cache.
+     */
+    public String getModelCacheDirectory() {
+        return modelCacheDirectory;
+    }
+
+    /**
+     * @return The greatest size of the model cache in bytes.
+     */
+    public long getModelCacheSize() {
+        return modelCacheSize;
+    }
+
+    /**
+     * @return True if the JSA solver keeps stored models encoded in direct
+     * buffers instead of on the heap.
+     */
+    public boolean getOffHeap() {
+        return offHeap;
+    }
+
+    public ReportFormat getReportFormat() {
+        return reportFormat;
+    }
+
     public ReportType getReportType() {
         return reportType;
     }
 
+    /**
+     * @return The loopback port to serve requests on, or -1 to solve a
+     * single graph.
+     */
+    public int getServePort() {
+        return servePort;
+    }
+
+    /**
+     * @return The number of requests solved at the same time when serving.
+     */
+    public SchedulePolicy getSchedulePolicy() {
+        return schedulePolicy;
+    }
+
+    public int getServeWorkers() {
+        return serveWorkers;
+    }
+
+    /**
+     * @return True if the graph is sliced to the cones of its predicates
+     * before solving.
+     */
+    public boolean getSlice() {
+        return slice;
+    }
+
+    /**
+     * @return The ids of the predicates kept when slicing, or null to keep
+     * every predicate.
+     */
+    public Set<Integer> getSlicePredicateIds() {
+        return slicePredicateIds;
+    }
+
     public SolverType getSolverType() {
         return solverType;
     }
 
+    public boolean getParallelBranches() {
+        return parallelBranches;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     public boolean getOld() {
         return this.old;
     }
@@ -59,14 +199,40 @@ public class Settings {
         this.alphabetDeclaration = alphabetDeclaration;
     }
 
+    public void setApproximation(double epsilon, double delta) {
+        this.approximate = true;
+        this.approximationEpsilon = epsilon;
+        this.approximationDelta = delta;
+    }
+
     public void setAutomatonModelVersion(int automatonModelVersion) {
         this.automatonModelVersion = automatonModelVersion;
     }
 
+    public void setCommonSubexpressions(boolean commonSubexpressions) {
+        this.commonSubexpressions = commonSubexpressions;
+    }
+
+    public void setConstantFolding(boolean constantFolding) {
+        this.constantFolding = constantFolding;
+    }
+
+    public void setCountLengths(boolean countLengths) {
+        this.countLengths = countLengths;
+    }
+
+    public void setStatistics(boolean statistics) {
+        this.statistics = statistics;
+    }
+
     public void setDebug(boolean debug) {
         this.debug = debug;
     }
 
+    public void setDoubleCountColumns(String[] doubleCountColumns) {
+        this.doubleCountColumns = doubleCountColumns;
+    }
+
     public void setGraphFilePath(String graphFilePath) {
         this.graphFilePath = graphFilePath;
     }
@@ -75,36 +241,118 @@ public class Settings {
         this.initialBoundingLength = initialBoundingLength;
     }
 
+    public void setLazyConcat(boolean lazyConcat) {
+        this.lazyConcat = lazyConcat;
+    }
+
     public void setMinAlphabet(String minAlphabet) {
         this.minAlphabet = minAlphabet;
     }
 
+    public void setModelCache(String directory, long size) {
+        this.modelCacheDirectory = directory;
+        this.modelCacheSize = size;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public void setReportFormat(ReportFormat reportFormat) {
+        this.reportFormat = reportFormat;
+    }
+
     public void setReportType(ReportType reportType) {
         this.reportType = reportType;
     }
 
+    public void setSchedulePolicy(SchedulePolicy schedulePolicy) {
+        this.schedulePolicy = schedulePolicy;
+    }
+
+    public void setServe(int port, int workers) {
+        this.servePort = port;
+        this.serveWorkers = workers;
+    }
+
+    /**
+     * Slices the graph to the cones of its predicates before solving.
+     *
+     * @param predicateIds
+     *         The ids of the predicates to keep, or null to keep every
+     *         predicate.
+     */
+    public void setSlice(Set<Integer> predicateIds) {
+        this.slice = true;
+        this.slicePredicateIds = predicateIds;
+    }
+
     public void setSolverType(SolverType solverType) {
         this.solverType = solverType;
     }
 
+    public void setParallelBranches(boolean parallelBranches) {
+        this.parallelBranches = parallelBranches;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public Settings() {
 
         // initialize fields with default values
         this.alphabetDeclaration = null;
         this.automatonModelVersion = 1;
         this.debug = false;
+        this.statistics = false;
         this.initialBoundingLength = DEFAULT_BOUNDING_LENGTH;
         this.minAlphabet = " -~"; // ascii visual characters
+        this.reportFormat = ReportFormat.DEFAULT;
         this.reportType = ReportType.DEFAULT;
+        this.schedulePolicy = SchedulePolicy.DEFAULT;
         this.solverType = SolverType.DEFAULT;
         this.graphFilePath = "./graphs/beasties01.json";
         this.old = false;
+        this.threads = 1;
+        this.parallelBranches = false;
+        this.lazyConcat = false;
+        this.approximate = false;
+        this.doubleCountColumns = new String[0];
+        this.countLengths = false;
+        this.constantFolding = false;
+        this.commonSubexpressions = true;
+        this.modelCacheDirectory = null;
+        this.modelCacheSize = 256L * 1024 * 1024;
+        this.offHeap = false;
+        this.servePort = -1;
+        this.serveWorkers = 1;
+        this.slice = false;
+        this.slicePredicateIds = null;
     }
 
     public void setOld() {
         this.old = true;
     }
 
+    public enum ReportFormat {
+        TEXT("Text"),
+        JSON_LINES("JSON Lines"),
+        COLUMNAR("Columnar");
+
+        public static ReportFormat DEFAULT = ReportFormat.TEXT;
+        private final String name;
+
+        ReportFormat(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name.toLowerCase().replace(' ', '-');
+        }
+    }
+
     public enum ReportType {
         SAT("SAT"),
         MODEL_COUNT("Model Count");
@@ -122,6 +370,23 @@ public class Settings {
         }
     }
 
+    public enum SchedulePolicy {
+        TOPOLOGICAL("Topological"),
+        LIVENESS("Liveness");
+
+        public static SchedulePolicy DEFAULT = SchedulePolicy.TOPOLOGICAL;
+        private final String name;
+
+        SchedulePolicy(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name.toLowerCase().replace(' ', '-');
+        }
+    }
+
     public enum SolverType {
         BLANK("Blank"),
         CONCRETE("Concrete"),
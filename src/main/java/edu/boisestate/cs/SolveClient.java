@@ -0,0 +1,76 @@
+package edu.boisestate.cs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Sends a single request to a local {@link SolveServer}, writing the report
+ * to standard output and the timing of the request to standard error.
+ * <p>
+ * Usage: <code>java edu.boisestate.cs.SolveClient &lt;port&gt; [repeat]
+ * &lt;SolveMain arguments&gt;...</code>, where a repeat count sends the
+ * request that many times over the same connection.
+ */
+@SuppressWarnings("unchecked")
+public class SolveClient {
+
+    public static void main(String[] args) throws IOException {
+
+        // get port, optional repeat count and request arguments
+        if (args.length < 2) {
+            System.err.println("Usage: SolveClient <port> [repeat] " +
+                               "<SolveMain arguments>...");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int first = 1;
+        int repeat = 1;
+        if (args[1].matches("\\d+")) {
+            repeat = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        String[] solveArgs = Arrays.copyOfRange(args, first, args.length);
+
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] request = mapper.writeValueAsBytes(
+                Collections.singletonMap("args", solveArgs));
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+
+            // send each request and output its response
+            for (int i = 0; i < repeat; i++) {
+                long start = System.nanoTime();
+                SolveServer.writeFrame(out, request);
+                byte[] frame = SolveServer.readFrame(in);
+                if (frame == null) {
+                    System.err.println("Connection closed by server");
+                    return;
+                }
+                double roundTrip = (System.nanoTime() - start) / 1e6;
+                Map<String, Object> response = mapper.readValue(frame, Map.class);
+                if (!"ok".equals(response.get("status"))) {
+                    System.err.println("Error: " + response.get("message"));
+                    return;
+                }
+                if (i == repeat - 1) {
+                    System.out.print(response.get("report"));
+                }
+                System.err.printf("Request %d: %s round trip %.1f ms, " +
+                                  "graph cached %s\n",
+                                  i + 1,
+                                  response.get("timing"),
+                                  roundTrip,
+                                  response.get("graphCached"));
+            }
+        }
+    }
+}
@@ -9,11 +9,14 @@ package edu.boisestate.cs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.boisestate.cs.automatonModel.AutomatonModelManager;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
+import edu.boisestate.cs.graph.CommonSubexpressions;
+import edu.boisestate.cs.graph.CompiledGraph;
+import edu.boisestate.cs.graph.LivenessSchedule;
+import edu.boisestate.cs.graph.PredicateSlice;
 import edu.boisestate.cs.graph.PrintConstraint;
 import edu.boisestate.cs.graph.SymbolicEdge;
-import edu.boisestate.cs.reporting.MCReporter;
-import edu.boisestate.cs.reporting.Reporter;
-import edu.boisestate.cs.reporting.SATReporter;
+import edu.boisestate.cs.reporting.*;
 import edu.boisestate.cs.solvers.*;
 import edu.boisestate.cs.util.LambdaVoid1;
 import org.jgrapht.DirectedGraph;
@@ -21,6 +24,10 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 import javax.swing.plaf.synth.SynthSeparatorUI;
@@ -37,8 +44,22 @@ public class SolveMain {
             return;
         }
 
+        // serve requests instead of solving a single graph if requested
+        if (settings.getServePort() >= 0) {
+            SolveServer.serve(settings);
+            return;
+        }
+
+        // split concrete value operations over worker threads, once
+        // for the whole run as the pool is shared by every solver
+        if (settings.getSolverType() == Settings.SolverType.CONCRETE &&
+            settings.getThreads() > 1) {
+            ConcreteValues.setParallelism(settings.getThreads());
+        }
+
         // initialize components object
         Components components = new Components();
+        components.setOutput(System.out);
 
         // load constraint graph
         loadGraph(components, settings);
@@ -46,12 +67,43 @@ public class SolveMain {
         // load alphabet
         loadAlphabet(components, settings);
 
+        // load model cache if requested
+        loadModelCache(components, settings);
+
+        // solve graph
+        solve(components, settings);
+
+        // record cache use and unmap cached models read by the run
+        if (components.getModelCache() != null) {
+            try {
+                components.getModelCache().close();
+            } catch (IOException e) {
+                System.err.println("Model cache index not written: " +
+                                   e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Solves the loaded graph of the components, writing the report to the
+     * output of the components.
+     *
+     * @return False if no solver or reporter could be created for the
+     * settings.
+     */
+    static boolean solve(Components components, Settings settings) {
+
+        // slice graph to the cones of its predicates if requested
+        if (settings.getSlice() && components.getGraph() != null) {
+            sliceGraph(components, settings);
+        }
+
         // load solver
         loadSolver(components, settings);
 
         // if graph or parser not loaded, abort program
         if (components.getGraph() == null || components.getSolver() == null) {
-            return;
+            return false;
         }
 
         // load parser
@@ -62,14 +114,56 @@ public class SolveMain {
 
         // if reporter not loaded, abort program
         if (components.getReporter() == null) {
-            return;
+            return false;
         }
 
         // run reporter
-        components.getReporter().run();
+        runReporter(components.getReporter(),
+                    components,
+                    settings,
+                    settings.getInitialBoundingLength());
+        return true;
     }
 
-    private static void loadAlphabet(Components components, Settings settings) {
+    private static void runReporter(Reporter reporter,
+                                    Components components,
+                                    Settings settings,
+                                    int boundingLength) {
+
+        // run reporter on worker threads if requested
+        if (settings.getThreads() > 1) {
+            runParallel(reporter, components, settings, boundingLength);
+        } else {
+            reporter.run();
+        }
+    }
+
+    private static void runParallel(Reporter reporter,
+                                    final Components components,
+                                    final Settings settings,
+                                    final int boundingLength) {
+
+        // create reporters with their own solver and parser for each part
+        ReporterFactory factory = new ReporterFactory() {
+            @Override
+            public Reporter createReporter() {
+                ExtendedSolver solver = createSolver(settings,
+                                                     components,
+                                                     boundingLength);
+                Parser parser = new Parser(solver, settings.getDebug());
+                return SolveMain.createReporter(settings,
+                                                components.getGraph(),
+                                                parser,
+                                                solver,
+                                                components.getBranchEvaluator());
+            }
+        };
+
+        // run reporter with worker threads
+        reporter.runParallel(factory, settings.getThreads());
+    }
+
+    static void loadAlphabet(Components components, Settings settings) {
 
         // declare alphabet variable
         Alphabet alphabet = null;
@@ -100,6 +194,45 @@ public class SolveMain {
 
     }
 
+    private static void loadModelCache(Components components, Settings settings) {
+
+        // ensure model cache requested
+        if (settings.getModelCacheDirectory() == null) {
+            return;
+        }
+
+        try {
+
+            // hash graph file so cached models are only used with their graph
+            byte[] graphBytes =
+                    Files.readAllBytes(Paths.get(settings.getGraphFilePath()));
+            components.setGraphHash(ModelCache.hash(graphBytes));
+
+            // open cache directory and store cache as component
+            Path directory = Paths.get(settings.getModelCacheDirectory());
+            components.setModelCache(new ModelCache(directory,
+                                                    settings.getModelCacheSize()));
+        } catch (IOException e) {
+            System.err.println("Model cache not loaded: " + e.getMessage());
+        }
+    }
+
+    private static void sliceGraph(Components components, Settings settings) {
+
+        // replace graph with its slice, which is compiled when solved
+        DirectedGraph<PrintConstraint, SymbolicEdge> graph =
+                components.getGraph();
+        DirectedGraph<PrintConstraint, SymbolicEdge> sliced =
+                PredicateSlice.slice(graph, settings.getSlicePredicateIds());
+        components.setGraph(sliced);
+        components.setCompiledGraph(null);
+        if (settings.getStatistics()) {
+            System.err.printf("Sliced graph: %d of %d vertices\n",
+                              sliced.vertexSet().size(),
+                              graph.vertexSet().size());
+        }
+    }
+
     private static void loadGraph(Components components, final Settings settings) {
         // store graph as component
         LambdaVoid1<String> setMinAlphabet = new LambdaVoid1<String>() {
@@ -240,13 +373,116 @@ public class SolveMain {
     private static void loadReporter(Components components,
                                      Settings settings) {
 
+        // create branch evaluator shared by the reporters of the run
+        components.setBranchEvaluator(createBranchEvaluator(settings));
+
+        // create and store reporter as component
+        components.setReporter(createReporter(settings,
+                                              components.getGraph(),
+                                              components.getParser(),
+                                              components.getSolver(),
+                                              components.getBranchEvaluator()));
+
+        // write report rows on a separate thread
+        if (components.getReporter() != null) {
+            ReportSink sink = createSink(settings.getReportFormat(),
+                                         components.getOutput());
+            components.getReporter().setSink(new AsyncReportSink(sink));
+
+            // compile graph unless compiled by an earlier run
+            if (components.getCompiledGraph() == null) {
+                components.setCompiledGraph(
+                        CompiledGraph.compile(components.getGraph()));
+            }
+            components.getReporter()
+                      .setCompiledGraph(components.getCompiledGraph());
+
+            // fold operations on concrete values for automaton solvers
+            if (settings.getConstantFolding() &&
+                components.getSolver() instanceof AutomatonModelSolver) {
+                if (components.getConstantFolding() == null) {
+                    components.setConstantFolding(
+                            ConstantFolding.fold(components.getCompiledGraph(),
+                                                 components.getAlphabet()));
+                    if (settings.getStatistics()) {
+                        System.err.printf("Folded operations: %d\n",
+                                          components.getConstantFolding()
+                                                    .getFoldedCount());
+                    }
+                }
+                components.getReporter()
+                          .setConstantFolding(components.getConstantFolding());
+            }
+
+            // merge duplicate operations for automaton solvers
+            if (settings.getCommonSubexpressions() &&
+                components.getSolver() instanceof AutomatonModelSolver) {
+                if (components.getCommonSubexpressions() == null) {
+                    CommonSubexpressions duplicates =
+                            CommonSubexpressions.eliminate(components.getCompiledGraph());
+                    components.setCommonSubexpressions(duplicates);
+                    if (settings.getStatistics()) {
+                        System.err.printf("Duplicate operations: " +
+                                          "%d of %d (%.1f%%)\n",
+                                          duplicates.getDuplicateCount(),
+                                          duplicates.getOperationCount(),
+                                          duplicates.getDuplicationRate() *
+                                          100);
+                    }
+                }
+                components.getReporter()
+                          .setCommonSubexpressions(components.getCommonSubexpressions());
+            }
+
+            // order vertices to keep few models live if requested
+            if (settings.getSchedulePolicy() == Settings.SchedulePolicy.LIVENESS) {
+                if (components.getSchedule() == null) {
+                    components.setSchedule(
+                            LivenessSchedule.compute(components.getCompiledGraph(),
+                                                     components.getCommonSubexpressions()));
+                }
+                components.getReporter().setSchedule(components.getSchedule());
+            }
+        }
+    }
+
+    private static BranchEvaluator createBranchEvaluator(Settings settings) {
+
+        // evaluate every branch of a predicate at once, for each component
+        // solved at the same time
+        if (!settings.getParallelBranches()) {
+            return null;
+        }
+        return new BranchEvaluator(BranchEvaluator.MAX_BRANCHES *
+                                   settings.getThreads());
+    }
+
+    private static ReportSink createSink(Settings.ReportFormat format,
+                                         OutputStream out) {
+
+        // create sink for report format on output stream
+        if (format == Settings.ReportFormat.JSON_LINES) {
+            try {
+                return new JsonLinesReportSink(out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        } else if (format == Settings.ReportFormat.COLUMNAR) {
+            return new ColumnarReportSink(out);
+        }
+        return new TextReportSink(out);
+    }
+
+    private static Reporter createReporter(Settings settings,
+                                           DirectedGraph<PrintConstraint,
+                                                   SymbolicEdge> graph,
+                                           Parser parser,
+                                           ExtendedSolver solver,
+                                           BranchEvaluator branchEvaluator) {
+
         // get values from settings
         Settings.ReportType reportType = settings.getReportType();
         boolean debug = settings.getDebug();
-        DirectedGraph<PrintConstraint, SymbolicEdge> graph =
-                components.getGraph();
-        Parser parser = components.getParser();
-        ExtendedSolver solver = components.getSolver();
 
         // initialize reporter as null
         Reporter reporter = null;
@@ -260,11 +496,18 @@ public class SolveMain {
                 ModelCountSolver mcSolver = (ModelCountSolver) solver;
 
                 // create reporter from parameters
-                reporter = new MCReporter(graph,
-                                          parser,
-                                          solver,
-                                          debug,
-                                          mcSolver);
+                MCReporter mcReporter = new MCReporter(graph,
+                                                       parser,
+                                                       solver,
+                                                       debug,
+                                                       mcSolver);
+                mcReporter.setBranchEvaluator(branchEvaluator);
+                mcReporter.setApproximate(settings.getApproximate());
+                mcReporter.setCountLengths(settings.getCountLengths());
+                for (String column : settings.getDoubleCountColumns()) {
+                    mcReporter.setCountPrecision(column, CountPrecision.DOUBLE);
+                }
+                reporter = mcReporter;
             }
 
         } else if (reportType == Settings.ReportType.SAT) {
@@ -273,17 +516,31 @@ public class SolveMain {
             reporter = new SATReporter(graph, parser, solver, debug);
         }
 
-        // store reporter
-        components.setReporter(reporter);
+        // write statistics of the run if requested
+        if (reporter != null) {
+            reporter.setStatistics(settings.getStatistics());
+        }
+
+        // return created reporter
+        return reporter;
     }
 
     private static void loadSolver(Components components, Settings settings) {
 
+        // create and store solver as component
+        components.setSolver(createSolver(settings,
+                                          components,
+                                          settings.getInitialBoundingLength()));
+    }
+
+    private static ExtendedSolver createSolver(Settings settings,
+                                               Components components,
+                                               int boundingLength) {
+
         // get needed info from settings object
         Settings.SolverType selectedSolver = settings.getSolverType();
         Settings.ReportType reportType = settings.getReportType();
         int modelVersion = settings.getAutomatonModelVersion();
-        int boundingLength = settings.getInitialBoundingLength();
         Alphabet alphabet = components.getAlphabet();
 
         // initialize extend solver as null
@@ -296,7 +553,9 @@ public class SolveMain {
 
         } else if (selectedSolver == Settings.SolverType.CONCRETE) {
 
-            solver = new ConcreteSolver(alphabet, boundingLength);
+            solver = new ConcreteSolver(alphabet,
+                                        boundingLength,
+                                        settings.getLazyConcat());
 
         } else if (selectedSolver == Settings.SolverType.JSA) {
 
@@ -312,14 +571,41 @@ public class SolveMain {
 
             } else if (reportType == Settings.ReportType.MODEL_COUNT) {
 
-                solver = new MCAutomatonModelSolver(modelManager,
-                                                    boundingLength);
+                MCAutomatonModelSolver mcSolver =
+                        new MCAutomatonModelSolver(modelManager,
+                                                   boundingLength);
+
+                // estimate counts if requested
+                if (settings.getApproximate()) {
+                    mcSolver.setApproximation(settings.getApproximationEpsilon(),
+                                              settings.getApproximationDelta());
+                }
+                solver = mcSolver;
+            }
+
+            // reuse vertex models and counts solved by earlier runs of the
+            // graph, in the same vertex order, as the order predicates are
+            // asserted in changes later models
+            if (solver != null && components.getModelCache() != null) {
+                String runKey = ModelCache.key(components.getGraphHash(),
+                                               modelVersion,
+                                               boundingLength,
+                                               alphabet.getCharSet(),
+                                               settings.getSchedulePolicy());
+                ((AutomatonModelSolver) solver)
+                        .setModelCache(components.getModelCache(), runKey);
+            }
+
+            // keep stored models off the heap if requested
+            if (solver != null && settings.getOffHeap()) {
+                ((AutomatonModelSolver) solver).setModelArena(
+                        new ModelArena());
             }
 
         }
 
-        // store created solver
-        components.setSolver(solver);
+        // return created solver
+        return solver;
     }
 
 }
@@ -0,0 +1,382 @@
+package edu.boisestate.cs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.boisestate.cs.graph.CompiledGraph;
+import edu.boisestate.cs.graph.PrintConstraint;
+import edu.boisestate.cs.graph.SymbolicEdge;
+import edu.boisestate.cs.solvers.ConcreteValues;
+import edu.boisestate.cs.solvers.ModelCache;
+import edu.boisestate.cs.util.LambdaVoid1;
+import org.jgrapht.DirectedGraph;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Serves solve requests on a loopback socket so a single warmed up JVM
+ * answers many queries. Loaded graphs, with their compiled form, are kept
+ * until their file changes, and alphabets and model caches are kept for the
+ * life of the server. Every request gets its own solver, parser and
+ * reporter, and requests are solved by a fixed pool of workers. Value sets
+ * of the Concrete solver are split over the threads given to the server,
+ * the threads given by a request are used for its other parallel steps.
+ * <p>
+ * Requests and responses are frames of a four byte big endian length
+ * followed by that many bytes of UTF-8 JSON. A connection may send any
+ * number of requests and gets a response to each in order. A request holds
+ * the command line arguments of a single run:
+ * <pre>
+ * {"args": ["graphs/beasties01.json", "-r", "model-count", "-l", "3"]}
+ * </pre>
+ * and its response holds the report as it would be written to standard
+ * output, with the time spent waiting for a worker, loading the graph and
+ * solving it:
+ * <pre>
+ * {"status": "ok", "report": "...", "graphCached": true,
+ *  "timing": {"queueMillis": 0.1, "loadMillis": 0.2, "solveMillis": 51.3,
+ *             "totalMillis": 51.6}}
+ * </pre>
+ * Failed requests get a status of "error" and a message.
+ */
+@SuppressWarnings("unchecked")
+public class SolveServer {
+
+    // largest request frame accepted
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private final ObjectMapper mapper;
+    private final ExecutorService workers;
+    private final ConcurrentMap<Path, LoadedGraph> graphs;
+    private final ConcurrentMap<String, Alphabet> alphabets;
+    private final ConcurrentMap<Path, ModelCache> modelCaches;
+
+    private SolveServer(int workerCount) {
+        this.mapper = new ObjectMapper();
+        this.workers = Executors.newFixedThreadPool(workerCount);
+        this.graphs = new ConcurrentHashMap<>();
+        this.alphabets = new ConcurrentHashMap<>();
+        this.modelCaches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Serves requests on the loopback port of the settings until the process
+     * is stopped.
+     */
+    static void serve(Settings settings) {
+        SolveServer server = new SolveServer(settings.getServeWorkers());
+
+        // size the pool shared by concrete solvers once, as replacing it
+        // would stop the operations of requests being solved
+        ConcreteValues.setParallelism(settings.getThreads());
+        try (ServerSocket socket = new ServerSocket(settings.getServePort(),
+                                                    50,
+                                                    InetAddress.getLoopbackAddress())) {
+            System.err.printf("Serving on port %d with %d workers\n",
+                              socket.getLocalPort(),
+                              settings.getServeWorkers());
+            server.accept(socket);
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            server.workers.shutdownNow();
+
+            // record cache use and unmap cached models not being read
+            for (ModelCache cache : server.modelCaches.values()) {
+                try {
+                    cache.close();
+                } catch (IOException e) {
+                    System.err.println("Model cache index not written: " +
+                                       e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a frame.
+     *
+     * @return The frame, or null at the end of the stream.
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    private void accept(ServerSocket socket) throws IOException {
+
+        // read the requests of each connection on its own thread
+        while (true) {
+            final Socket connection = socket.accept();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    handle(connection);
+                }
+            }, "solve-connection-" + connection.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private void handle(Socket connection) {
+        try (Socket socket = connection) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+
+            // answer each request in order
+            byte[] frame;
+            while ((frame = readFrame(in)) != null) {
+                writeFrame(out, mapper.writeValueAsBytes(submit(frame)));
+            }
+        } catch (IOException e) {
+            System.err.println("Connection closed: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> submit(byte[] frame) {
+        final long received = System.nanoTime();
+
+        // get arguments from request
+        final String[] args;
+        try {
+            Map<String, Object> request = mapper.readValue(frame, Map.class);
+            List<String> argList = (List<String>) request.get("args");
+            args = argList.toArray(new String[argList.size()]);
+        } catch (IOException | ClassCastException | NullPointerException |
+                ArrayStoreException e) {
+            return error("Request must be a JSON object with an args list " +
+                         "of strings");
+        }
+
+        // solve request on a worker
+        Future<Map<String, Object>> result =
+                workers.submit(new Callable<Map<String, Object>>() {
+                    @Override
+                    public Map<String, Object> call() {
+                        return solve(args, received);
+                    }
+                });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return error("Server is shutting down");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            cause.printStackTrace();
+            return error("Solving failed: " + cause);
+        }
+    }
+
+    private Map<String, Object> solve(String[] args, long received) {
+        long started = System.nanoTime();
+
+        // process request arguments as a command line
+        Settings settings = CommandLine.processArgs(args);
+        if (settings == null) {
+            return error("Invalid arguments, see the server output for " +
+                         "details");
+        }
+        if (settings.getServePort() >= 0) {
+            return error("A request cannot start a server");
+        }
+
+        // load graph, alphabet and model cache from earlier requests
+        Components components = new Components();
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        components.setOutput(report);
+        LoadedGraph graph;
+        try {
+            graph = loadGraph(Paths.get(settings.getGraphFilePath()));
+        } catch (IOException e) {
+            return error("Graph not loaded: " + e.getMessage());
+        }
+        settings.setMinAlphabet(graph.minAlphabet);
+        components.setGraph(graph.graph);
+        components.setCompiledGraph(graph.compiled);
+        loadAlphabet(components, settings);
+        if (settings.getModelCacheDirectory() != null) {
+            try {
+                components.setGraphHash(graph.hash);
+                components.setModelCache(loadModelCache(settings));
+            } catch (IOException e) {
+                return error("Model cache not loaded: " + e.getMessage());
+            }
+        }
+        long loaded = System.nanoTime();
+
+        // solve graph into report
+        if (!SolveMain.solve(components, settings)) {
+            return error("No solver or reporter for the given settings");
+        }
+        long solved = System.nanoTime();
+
+        // create response with timing of each step
+        Map<String, Object> timing = new LinkedHashMap<>();
+        timing.put("queueMillis", millis(started - received));
+        timing.put("loadMillis", millis(loaded - started));
+        timing.put("solveMillis", millis(solved - loaded));
+        timing.put("totalMillis", millis(solved - received));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "ok");
+        response.put("report", new String(report.toByteArray(),
+                                          StandardCharsets.UTF_8));
+        response.put("graphCached", graph.reused);
+        response.put("timing", timing);
+        return response;
+    }
+
+    private LoadedGraph loadGraph(Path path) throws IOException {
+        path = path.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+
+        // reuse graph if its file has not changed
+        LoadedGraph graph = graphs.get(path);
+        if (graph != null && graph.modified == modified && graph.size == size) {
+            return graph.reuse();
+        }
+
+        // load and compile graph, compiling sets the source maps of its
+        // constraints so it is done once before the graph is shared
+        final String[] minAlphabet = new String[1];
+        LambdaVoid1<String> setMinAlphabet = new LambdaVoid1<String>() {
+            @Override
+            public void execute(String s) {
+                minAlphabet[0] = s;
+            }
+        };
+        DirectedGraph<PrintConstraint, SymbolicEdge> loaded =
+                SolveMain.loadGraph(path.toString(), setMinAlphabet);
+        if (minAlphabet[0] == null) {
+            throw new IOException("Invalid graph file " + path);
+        }
+        graph = new LoadedGraph(loaded,
+                                CompiledGraph.compile(loaded),
+                                minAlphabet[0],
+                                ModelCache.hash(Files.readAllBytes(path)),
+                                modified,
+                                size);
+        graphs.put(path, graph);
+        return graph;
+    }
+
+    private void loadAlphabet(Components components, Settings settings) {
+
+        // reuse alphabet created for the same declarations
+        String key = settings.getAlphabetDeclaration() +
+                     "\0" +
+                     settings.getMinAlphabet();
+        Alphabet alphabet = alphabets.get(key);
+        if (alphabet != null) {
+            components.setAlphabet(alphabet);
+            return;
+        }
+        SolveMain.loadAlphabet(components, settings);
+        alphabets.putIfAbsent(key, components.getAlphabet());
+    }
+
+    private ModelCache loadModelCache(Settings settings) throws IOException {
+
+        // share one cache for each directory so its size is tracked once
+        Path directory = Paths.get(settings.getModelCacheDirectory())
+                              .toAbsolutePath()
+                              .normalize();
+        synchronized (modelCaches) {
+            ModelCache cache = modelCaches.get(directory);
+            if (cache == null) {
+                cache = new ModelCache(directory, settings.getModelCacheSize());
+                modelCaches.put(directory, cache);
+            }
+            return cache;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return response;
+    }
+
+    private static class LoadedGraph {
+
+        final DirectedGraph<PrintConstraint, SymbolicEdge> graph;
+        final CompiledGraph compiled;
+        final String minAlphabet;
+        final String hash;
+        final long modified;
+        final long size;
+        final boolean reused;
+
+        LoadedGraph(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
+                    CompiledGraph compiled,
+                    String minAlphabet,
+                    String hash,
+                    long modified,
+                    long size) {
+            this(graph, compiled, minAlphabet, hash, modified, size, false);
+        }
+
+        private LoadedGraph(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
+                            CompiledGraph compiled,
+                            String minAlphabet,
+                            String hash,
+                            long modified,
+                            long size,
+                            boolean reused) {
+            this.graph = graph;
+            this.compiled = compiled;
+            this.minAlphabet = minAlphabet;
+            this.hash = hash;
+            this.modified = modified;
+            this.size = size;
+            this.reused = reused;
+        }
+
+        /**
+         * @return This graph marked as loaded by an earlier request.
+         */
+        LoadedGraph reuse() {
+            return new LoadedGraph(graph,
+                                   compiled,
+                                   minAlphabet,
+                                   hash,
+                                   modified,
+                                   size,
+                                   true);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package edu.boisestate.cs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The strings over a set of symbols with lengths in a range, in length then
+ * lexicographic order. Strings are generated on demand in a reusable char
+ * buffer rather than stored, and the space can be split into contiguous
+ * parts that are consumed independently.
+ */
+public class StringSpace implements Iterable<String> {
+
+    private final char[] symbols;
+    private final int minLength;
+    private final int maxLength;
+    private final long start;
+    private final long end;
+
+    public StringSpace(Collection<Character> symbols,
+                       int minLength,
+                       int maxLength) {
+
+        // store symbols in sorted order
+        this.symbols = new char[symbols.size()];
+        int i = 0;
+        for (char c : symbols) {
+            this.symbols[i++] = c;
+        }
+        Arrays.sort(this.symbols);
+
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.start = 0;
+        this.end = firstOrdinal(this.symbols.length,
+                                minLength,
+                                maxLength + 1);
+    }
+
+    private StringSpace(StringSpace space, long start, long end) {
+        this.symbols = space.symbols;
+        this.minLength = space.minLength;
+        this.maxLength = space.maxLength;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Gets the position of the first string of a length in a space starting
+     * at the minimum length.
+     */
+    private static long firstOrdinal(int base, int minLength, int length) {
+        long ordinal = 0;
+        for (int l = minLength; l < length; l++) {
+            long count = 1;
+            for (int i = 0; i < l; i++) {
+                if (base != 0 && count > Long.MAX_VALUE / base) {
+                    throw new IllegalArgumentException(
+                            "String space is too large to enumerate");
+                }
+                count *= base;
+            }
+            if (ordinal > Long.MAX_VALUE - count) {
+                throw new IllegalArgumentException(
+                        "String space is too large to enumerate");
+            }
+            ordinal += count;
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return The number of strings in the space.
+     */
+    public long size() {
+        return end - start;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Splits the space into contiguous parts of nearly equal size.
+     *
+     * @param parts
+     *         The number of parts, at least 1.
+     *
+     * @return The parts in enumeration order, fewer than requested if the
+     * space has fewer strings than parts.
+     */
+    public List<StringSpace> split(int parts) {
+        List<StringSpace> spaces = new ArrayList<>(parts);
+        long size = size();
+        long from = start;
+        for (int i = 0; i < parts; i++) {
+
+            // spread the remainder over the first parts
+            long to = start + size / parts * (i + 1) +
+                      Math.min(i + 1, size % parts);
+            if (to > from) {
+                spaces.add(new StringSpace(this, from, to));
+            }
+            from = to;
+        }
+        return spaces;
+    }
+
+    /**
+     * @return A cursor positioned before the first string.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final Cursor cursor = cursor();
+        return new Iterator<String>() {
+            private boolean ready = cursor.next();
+
+            @Override
+            public boolean hasNext() {
+                return ready;
+            }
+
+            @Override
+            public String next() {
+                if (!ready) {
+                    throw new NoSuchElementException();
+                }
+                String string = cursor.toString();
+                ready = cursor.next();
+                return string;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Steps through the strings of a space. The cursor is itself the current
+     * string, so consumers can read its characters without creating a string
+     * for every step.
+     */
+    public class Cursor implements CharSequence {
+
+        private final char[] buffer;
+        private final int[] digits;
+        private int length;
+        private long position;
+
+        private Cursor() {
+            buffer = new char[maxLength];
+            digits = new int[maxLength];
+            position = start - 1;
+        }
+
+        /**
+         * Moves to the next string.
+         *
+         * @return False if there are no more strings.
+         */
+        public boolean next() {
+            position++;
+            if (position >= end) {
+                return false;
+            }
+            if (position == start) {
+                seek(position);
+                return true;
+            }
+
+            // increment digits from the last character
+            int i = length - 1;
+            while (i >= 0 && digits[i] == symbols.length - 1) {
+                digits[i] = 0;
+                buffer[i] = symbols[0];
+                i--;
+            }
+            if (i >= 0) {
+                digits[i]++;
+                buffer[i] = symbols[digits[i]];
+            } else {
+
+                // all digits wrapped, move to the first longer string
+                buffer[length] = symbols[0];
+                digits[length] = 0;
+                length++;
+            }
+            return true;
+        }
+
+        private void seek(long ordinal) {
+
+            // find length of string at ordinal
+            length = minLength;
+            long offset = ordinal;
+            long count = firstOrdinal(symbols.length, length, length + 1);
+            while (offset >= count) {
+                offset -= count;
+                length++;
+                count = firstOrdinal(symbols.length, length, length + 1);
+            }
+
+            // decode offset into digits, last character varies fastest
+            for (int i = length - 1; i >= 0; i--) {
+                digits[i] = (int) (offset % symbols.length);
+                buffer[i] = symbols[digits[i]];
+                offset /= symbols.length;
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return buffer[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new String(buffer, from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, length);
+        }
+    }
+}
@@ -0,0 +1,709 @@
+package edu.boisestate.cs.automaton;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.BasicAutomata;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+import edu.boisestate.cs.automaton.acyclic.AcyclicWeightedAutomaton;
+import org.apache.commons.math3.fraction.Fraction;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact binary encoding of weighted, acyclic weighted, run and plain
+ * automata. Each automaton is written as a record with a header of a magic
+ * number, a format version, the kind of automaton and the length of the body.
+ * The body numbers states in breadth first order from the initial state,
+ * state 0, and writes each state with its transitions, using variable length
+ * integers for counts, characters, destinations and the numerators and
+ * denominators of weights. States are walked with a work list rather than by
+ * recursion, so long chains of states are encoded without deep call stacks.
+ * <p>
+ * Records can be written to and read from channels one after another, and a
+ * record at the start of a file can be read through a memory mapped buffer.
+ */
+public class AutomatonCodec {
+
+    public static final int VERSION = 1;
+
+    // "SCAC", string constraint automaton codec
+    private static final int MAGIC = 0x53434143;
+
+    // magic, version, kind and body length
+    private static final int HEADER_LENGTH = 10;
+
+    private static final byte KIND_WEIGHTED = 1;
+    private static final byte KIND_ACYCLIC = 2;
+    private static final byte KIND_RUN = 3;
+    private static final byte KIND_PLAIN = 4;
+
+    // automaton flags
+    private static final int DETERMINISTIC = 1;
+    private static final int SINGLETON = 2;
+
+    // state and transition flags
+    private static final int ACCEPT = 1;
+    private static final int HAS_WEIGHT = 2;
+
+    private AutomatonCodec() {
+    }
+
+    /**
+     * Encodes a weighted automaton without expanding a singleton automaton.
+     *
+     * @return The record, positioned at its start.
+     */
+    public static ByteBuffer encode(WeightedAutomaton automaton) {
+        Encoder out = new Encoder(KIND_WEIGHTED);
+
+        // write automaton fields
+        String singleton = automaton.singleton;
+        int flags = (automaton.isDeterministic() ? DETERMINISTIC : 0) |
+                    (singleton != null ? SINGLETON : 0);
+        out.writeByte(flags);
+        out.writeSigned(automaton.getInitialFactor());
+        out.writeSigned(automaton.getNumEmptyStrings());
+        if (singleton != null) {
+            out.writeString(singleton);
+            return out.finish();
+        }
+
+        // number states in breadth first order
+        List<WeightedState> states = new ArrayList<>();
+        Map<WeightedState, Integer> numbers = new IdentityHashMap<>();
+        number(automaton.initial, states, numbers);
+        for (int i = 0; i < states.size(); i++) {
+            for (WeightedTransition t : states.get(i).getTransitions()) {
+                number(t.getDest(), states, numbers);
+            }
+        }
+
+        // write states with their transitions
+        out.writeUnsigned(states.size());
+        for (WeightedState state : states) {
+            Fraction weight = state.getWeight();
+            out.writeByte((state.isAccept() ? ACCEPT : 0) |
+                          (weight != null ? HAS_WEIGHT : 0));
+            out.writeFraction(weight);
+            out.writeUnsigned(state.getTransitions().size());
+            for (WeightedTransition t : state.getTransitions()) {
+                out.writeUnsigned(t.getMin());
+                out.writeUnsigned(t.getMax() - t.getMin());
+                out.writeUnsigned(numbers.get(t.getDest()));
+                out.writeSigned(t.getWeightInt());
+                out.writeByte(t.getWeight() != null ? HAS_WEIGHT : 0);
+                out.writeFraction(t.getWeight());
+            }
+        }
+        return out.finish();
+    }
+
+    /**
+     * Encodes an acyclic weighted automaton.
+     *
+     * @return The record, positioned at its start.
+     */
+    public static ByteBuffer encode(AcyclicWeightedAutomaton automaton) {
+        Encoder out = new Encoder(KIND_ACYCLIC);
+
+        // number states in breadth first order
+        List<edu.boisestate.cs.automaton.acyclic.WeightedState> states =
+                new ArrayList<>();
+        Map<edu.boisestate.cs.automaton.acyclic.WeightedState, Integer> numbers =
+                new IdentityHashMap<>();
+        number(automaton.getInitialState(), states, numbers);
+        for (int i = 0; i < states.size(); i++) {
+            for (edu.boisestate.cs.automaton.acyclic.WeightedTransition t :
+                    states.get(i).getTransitions()) {
+                number(t.getToState(), states, numbers);
+            }
+        }
+
+        // write states with their transitions
+        out.writeUnsigned(states.size());
+        for (edu.boisestate.cs.automaton.acyclic.WeightedState state : states) {
+            Fraction weight = state.getWeight();
+            out.writeByte((state.isAccept() ? ACCEPT : 0) |
+                          (weight != null ? HAS_WEIGHT : 0));
+            out.writeFraction(weight);
+            out.writeUnsigned(state.getTransitions().size());
+            for (edu.boisestate.cs.automaton.acyclic.WeightedTransition t :
+                    state.getTransitions()) {
+                out.writeUnsigned(t.getSymb());
+                out.writeUnsigned(numbers.get(t.getToState()));
+                out.writeByte(t.getWeight() != null ? HAS_WEIGHT : 0);
+                out.writeFraction(t.getWeight());
+            }
+        }
+        return out.finish();
+    }
+
+    /**
+     * Encodes a run automaton. The character class table is not written,
+     * it is rebuilt when the automaton is decoded.
+     *
+     * @return The record, positioned at its start.
+     */
+    public static ByteBuffer encode(RunAutomaton automaton) {
+        Encoder out = new Encoder(KIND_RUN);
+        out.writeByte(automaton.classmap != null ? 1 : 0);
+        out.writeUnsigned(automaton.size);
+        out.writeUnsigned(automaton.initial);
+
+        // write interval start points as differences
+        out.writeUnsigned(automaton.points.length);
+        int previous = 0;
+        for (char point : automaton.points) {
+            out.writeUnsigned(point - previous);
+            previous = point;
+        }
+
+        // write accept states as bits
+        for (int s = 0; s < automaton.size; s += 8) {
+            int bits = 0;
+            for (int b = 0; b < 8 && s + b < automaton.size; b++) {
+                if (automaton.accept[s + b]) {
+                    bits |= 1 << b;
+                }
+            }
+            out.writeByte(bits);
+        }
+
+        // write transition table, shifted so a missing transition is 0
+        for (int destination : automaton.transitions) {
+            out.writeUnsigned(destination + 1);
+        }
+        return out.finish();
+    }
+
+    /**
+     * Encodes an unweighted automaton without expanding a singleton
+     * automaton.
+     *
+     * @return The record, positioned at its start.
+     */
+    public static ByteBuffer encode(Automaton automaton) {
+        Encoder out = new Encoder(KIND_PLAIN);
+
+        // write singleton automata as their string
+        String singleton = automaton.getSingleton();
+        int flags = (automaton.isDeterministic() ? DETERMINISTIC : 0) |
+                    (singleton != null ? SINGLETON : 0);
+        out.writeByte(flags);
+        if (singleton != null) {
+            out.writeString(singleton);
+            return out.finish();
+        }
+
+        // number states in breadth first order
+        List<State> states = new ArrayList<>();
+        Map<State, Integer> numbers = new IdentityHashMap<>();
+        number(automaton.getInitialState(), states, numbers);
+        for (int i = 0; i < states.size(); i++) {
+            for (Transition t : states.get(i).getTransitions()) {
+                number(t.getDest(), states, numbers);
+            }
+        }
+
+        // write states with their transitions
+        out.writeUnsigned(states.size());
+        for (State state : states) {
+            out.writeByte(state.isAccept() ? ACCEPT : 0);
+            out.writeUnsigned(state.getTransitions().size());
+            for (Transition t : state.getTransitions()) {
+                out.writeUnsigned(t.getMin());
+                out.writeUnsigned(t.getMax() - t.getMin());
+                out.writeUnsigned(numbers.get(t.getDest()));
+            }
+        }
+        return out.finish();
+    }
+
+    /**
+     * Decodes a weighted automaton record at the position of the buffer,
+     * leaving the buffer positioned after the record.
+     *
+     * @throws IOException
+     *         if the buffer does not hold a weighted automaton record.
+     */
+    public static WeightedAutomaton decodeWeighted(ByteBuffer buffer)
+            throws IOException {
+        Decoder in = new Decoder(buffer, KIND_WEIGHTED);
+        try {
+
+            // read automaton fields
+            WeightedAutomaton automaton = new WeightedAutomaton();
+            int flags = in.readByte();
+            automaton.setInitialFactor(in.readSigned());
+            automaton.setNumEmptyStrings(in.readSigned());
+            if ((flags & SINGLETON) != 0) {
+                automaton.singleton = in.readString();
+                automaton.setDeterministic((flags & DETERMINISTIC) != 0);
+                return in.finish(automaton);
+            }
+
+            // create states before transitions can refer to them
+            int stateCount = in.readCount();
+            WeightedState[] states = new WeightedState[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                states[s] = new WeightedState();
+            }
+
+            // read states with their transitions
+            for (WeightedState state : states) {
+                int stateFlags = in.readByte();
+                state.setAccept((stateFlags & ACCEPT) != 0);
+                state.setWeight(in.readFraction(stateFlags));
+                int transitionCount = in.readCount();
+                for (int t = 0; t < transitionCount; t++) {
+                    char min = in.readChar();
+                    char max = (char) (min + in.readUnsigned());
+                    WeightedState dest = states[in.readState(stateCount)];
+                    int weightInt = in.readSigned();
+                    WeightedTransition transition =
+                            new WeightedTransition(min, max, dest, weightInt);
+                    transition.setWeight(in.readFraction(in.readByte()));
+                    state.getTransitions().add(transition);
+                }
+            }
+
+            // set initial state before flags, which it resets
+            automaton.setInitialState(states[0]);
+            automaton.setDeterministic((flags & DETERMINISTIC) != 0);
+            return in.finish(automaton);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated automaton record");
+        }
+    }
+
+    /**
+     * Decodes an acyclic weighted automaton record at the position of the
+     * buffer, leaving the buffer positioned after the record.
+     *
+     * @throws IOException
+     *         if the buffer does not hold an acyclic automaton record.
+     */
+    public static AcyclicWeightedAutomaton decodeAcyclic(ByteBuffer buffer)
+            throws IOException {
+        Decoder in = new Decoder(buffer, KIND_ACYCLIC);
+        try {
+
+            // create states before transitions can refer to them
+            int stateCount = in.readCount();
+            edu.boisestate.cs.automaton.acyclic.WeightedState[] states =
+                    new edu.boisestate.cs.automaton.acyclic.WeightedState[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                states[s] = new edu.boisestate.cs.automaton.acyclic.WeightedState();
+            }
+
+            // read states with their transitions
+            for (edu.boisestate.cs.automaton.acyclic.WeightedState state : states) {
+                int stateFlags = in.readByte();
+                state.setAccept((stateFlags & ACCEPT) != 0);
+                state.setWeight(in.readFraction(stateFlags));
+                int transitionCount = in.readCount();
+                for (int t = 0; t < transitionCount; t++) {
+                    char symbol = in.readChar();
+                    edu.boisestate.cs.automaton.acyclic.WeightedState dest =
+                            states[in.readState(stateCount)];
+                    Fraction weight = in.readFraction(in.readByte());
+                    state.getTransitions().add(
+                            new edu.boisestate.cs.automaton.acyclic.WeightedTransition(
+                                    state, symbol, dest, weight));
+                }
+            }
+
+            AcyclicWeightedAutomaton automaton = new AcyclicWeightedAutomaton();
+            automaton.setInitialState(states[0]);
+            return in.finish(automaton);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated automaton record");
+        }
+    }
+
+    /**
+     * Decodes an unweighted automaton record at the position of the buffer,
+     * leaving the buffer positioned after the record.
+     *
+     * @throws IOException
+     *         if the buffer does not hold an unweighted automaton record.
+     */
+    public static Automaton decodeAutomaton(ByteBuffer buffer)
+            throws IOException {
+        Decoder in = new Decoder(buffer, KIND_PLAIN);
+        try {
+            int flags = in.readByte();
+            if ((flags & SINGLETON) != 0) {
+                return in.finish(BasicAutomata.makeString(in.readString()));
+            }
+
+            // create states before transitions can refer to them
+            int stateCount = in.readCount();
+            State[] states = new State[stateCount];
+            for (int s = 0; s < stateCount; s++) {
+                states[s] = new State();
+            }
+
+            // read states with their transitions
+            for (State state : states) {
+                state.setAccept((in.readByte() & ACCEPT) != 0);
+                int transitionCount = in.readCount();
+                for (int t = 0; t < transitionCount; t++) {
+                    char min = in.readChar();
+                    char max = (char) (min + in.readUnsigned());
+                    state.addTransition(new Transition(min,
+                                                       max,
+                                                       states[in.readState(stateCount)]));
+                }
+            }
+
+            Automaton automaton = new Automaton();
+            automaton.setInitialState(states[0]);
+            automaton.setDeterministic((flags & DETERMINISTIC) != 0);
+            return in.finish(automaton);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated automaton record");
+        }
+    }
+
+    /**
+     * Decodes a run automaton record at the position of the buffer, leaving
+     * the buffer positioned after the record.
+     *
+     * @throws IOException
+     *         if the buffer does not hold a run automaton record.
+     */
+    public static RunAutomaton decodeRun(ByteBuffer buffer)
+            throws IOException {
+        Decoder in = new Decoder(buffer, KIND_RUN);
+        try {
+            RunAutomaton automaton = new RunAutomaton();
+            boolean tableize = in.readByte() != 0;
+            automaton.size = in.readCount();
+            automaton.initial = in.readState(automaton.size);
+
+            // read interval start points
+            automaton.points = new char[in.readCount()];
+            int previous = 0;
+            for (int i = 0; i < automaton.points.length; i++) {
+                previous += in.readUnsigned();
+                automaton.points[i] = (char) previous;
+            }
+
+            // read accept states
+            automaton.accept = new boolean[automaton.size];
+            for (int s = 0; s < automaton.size; s += 8) {
+                int bits = in.readByte();
+                for (int b = 0; b < 8 && s + b < automaton.size; b++) {
+                    automaton.accept[s + b] = (bits & (1 << b)) != 0;
+                }
+            }
+
+            // read transition table
+            int tableSize = automaton.size * automaton.points.length;
+            automaton.transitions = new int[tableSize];
+            for (int i = 0; i < tableSize; i++) {
+                automaton.transitions[i] = in.readState(automaton.size + 1) - 1;
+            }
+            if (tableize) {
+                automaton.setAlphabet();
+            }
+            return in.finish(automaton);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated automaton record");
+        }
+    }
+
+    /**
+     * Writes a record to a channel.
+     *
+     * @param record
+     *         A record from one of the encode methods.
+     */
+    public static void write(ByteBuffer record, WritableByteChannel channel)
+            throws IOException {
+        ByteBuffer remaining = record.duplicate();
+        while (remaining.hasRemaining()) {
+            channel.write(remaining);
+        }
+    }
+
+    /**
+     * Reads the next record from a channel, so it can be decoded with the
+     * decode method for its kind.
+     *
+     * @return The record, positioned at its start.
+     *
+     * @throws EOFException
+     *         if the channel ends before a whole record is read.
+     */
+    public static ByteBuffer read(ReadableByteChannel channel)
+            throws IOException {
+
+        // read header for body length
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(channel, header);
+        header.flip();
+        int bodyLength = checkHeader(header, (byte) 0);
+
+        // read header and body into one record
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + bodyLength);
+        header.rewind();
+        record.put(header);
+        readFully(channel, record);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Maps a file holding a record at its start into memory, so the record
+     * can be decoded without copying it onto the heap first.
+     *
+     * @return The mapped record, positioned at its start.
+     */
+    public static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated automaton record");
+            }
+        }
+    }
+
+    /**
+     * Checks the header at the position of the buffer, leaving the buffer
+     * positioned at the body.
+     *
+     * @param kind
+     *         The expected kind, or 0 for any kind.
+     *
+     * @return The body length.
+     */
+    private static int checkHeader(ByteBuffer buffer, byte kind)
+            throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an automaton record");
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported automaton record version " +
+                                  version);
+        }
+        byte recordKind = buffer.get();
+        if (kind != 0 && recordKind != kind) {
+            throw new IOException("Unexpected automaton record kind " +
+                                  recordKind);
+        }
+        int bodyLength = buffer.getInt();
+        if (bodyLength < 0) {
+            throw new IOException("Invalid automaton record length");
+        }
+        return bodyLength;
+    }
+
+    private static <S> void number(S state, List<S> states, Map<S, Integer> numbers) {
+        if (!numbers.containsKey(state)) {
+            numbers.put(state, states.size());
+            states.add(state);
+        }
+    }
+
+    /**
+     * Writes a record into a growing heap buffer.
+     */
+    private static class Encoder {
+
+        private ByteBuffer buffer;
+
+        Encoder(byte kind) {
+            buffer = ByteBuffer.allocate(256);
+            buffer.putInt(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.put(kind);
+
+            // body length is filled in when finished
+            buffer.putInt(0);
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes an unsigned value seven bits at a time, low bits first.
+         */
+        void writeUnsigned(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes a signed value with zig-zag encoding, so small negative
+         * values stay short.
+         */
+        void writeSigned(int value) {
+            writeUnsigned((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String string) {
+            writeUnsigned(string.length());
+            for (int i = 0; i < string.length(); i++) {
+                writeUnsigned(string.charAt(i));
+            }
+        }
+
+        /**
+         * Writes a weight, nothing if the weight is missing.
+         */
+        void writeFraction(Fraction fraction) {
+            if (fraction != null) {
+                writeSigned(fraction.getNumerator());
+                writeUnsigned(fraction.getDenominator());
+            }
+        }
+
+        ByteBuffer finish() {
+            buffer.putInt(6, buffer.position() - HEADER_LENGTH);
+            buffer.flip();
+            return buffer;
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                int capacity = Math.max(2 * buffer.capacity(),
+                                        buffer.position() + bytes);
+                ByteBuffer larger = ByteBuffer.allocate(capacity);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    /**
+     * Reads the body of a record, checking that reads stay in the body.
+     */
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+        private final int end;
+
+        Decoder(ByteBuffer buffer, byte kind) throws IOException {
+            int bodyLength = checkHeader(buffer, kind);
+            if (bodyLength > buffer.remaining()) {
+                throw new EOFException("Truncated automaton record");
+            }
+            this.buffer = buffer;
+            this.end = buffer.position() + bodyLength;
+        }
+
+        int readByte() {
+            check(1);
+            return buffer.get() & 0xFF;
+        }
+
+        int readUnsigned() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable length integer");
+        }
+
+        int readSigned() throws IOException {
+            int value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        char readChar() throws IOException {
+            int value = readUnsigned();
+            if (value > Character.MAX_VALUE) {
+                throw new IOException("Invalid character " + value);
+            }
+            return (char) value;
+        }
+
+        /**
+         * Reads a count, which must fit in the rest of the body since every
+         * counted item takes at least one byte.
+         */
+        int readCount() throws IOException {
+            int count = readUnsigned();
+            if (count < 0 || count > end - buffer.position()) {
+                throw new IOException("Invalid count " + count);
+            }
+            return count;
+        }
+
+        int readState(int stateCount) throws IOException {
+            int state = readUnsigned();
+            if (state < 0 || state >= stateCount) {
+                throw new IOException("Invalid state " + state);
+            }
+            return state;
+        }
+
+        String readString() throws IOException {
+            char[] chars = new char[readCount()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = readChar();
+            }
+            return new String(chars);
+        }
+
+        /**
+         * Reads a weight if the flags say it is present.
+         */
+        Fraction readFraction(int flags) throws IOException {
+            if ((flags & HAS_WEIGHT) == 0) {
+                return null;
+            }
+            int numerator = readSigned();
+            int denominator = readUnsigned();
+            if (denominator <= 0) {
+                throw new IOException("Invalid weight denominator " +
+                                      denominator);
+            }
+            return new Fraction(numerator, denominator);
+        }
+
+        <T> T finish(T automaton) throws IOException {
+            if (buffer.position() != end) {
+                throw new IOException("Automaton record has trailing bytes");
+            }
+            return automaton;
+        }
+
+        private void check(int bytes) {
+            if (end - buffer.position() < bytes) {
+                throw new BufferUnderflowException();
+            }
+        }
+    }
+}
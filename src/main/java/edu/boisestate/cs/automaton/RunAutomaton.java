@@ -74,8 +74,8 @@ public class RunAutomaton
         return size;
     }
 
-    @SuppressWarnings("unused")
-    private RunAutomaton() {
+    // used by the codec, which fills in the fields
+    RunAutomaton() {
     }
 
     /**
@@ -117,9 +117,10 @@ public class RunAutomaton
             int n = s.getNumber();
             accept[n] = s.isAccept();
             for (int c = 0; c < points.length; c++) {
-                WeightedState q = s.step(points[c]).getState();
+                StateWeight q = s.step(points[c]);
                 if (q != null) {
-                    transitions[n * points.length + c] = q.getNumber();
+                    transitions[n * points.length + c] =
+                            q.getState().getNumber();
                 }
             }
         }
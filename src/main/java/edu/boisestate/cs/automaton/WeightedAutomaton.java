@@ -31,6 +31,8 @@ package edu.boisestate.cs.automaton;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
 /**
@@ -539,6 +541,21 @@ public class WeightedAutomaton
         return (WeightedAutomaton) s.readObject();
     }
 
+    /**
+     * Reads the next automaton written by {@link
+     * #store(WritableByteChannel)} from a channel.
+     *
+     * @param channel
+     *         input channel with encoded automaton
+     *
+     * @throws IOException
+     *         if the channel does not hold an encoded automaton
+     */
+    public static WeightedAutomaton load(ReadableByteChannel channel)
+            throws IOException {
+        return AutomatonCodec.decodeWeighted(AutomatonCodec.read(channel));
+    }
+
     /**
      * See {@link BasicWeightedAutomata#makeAnyChar()}.
      */
@@ -1170,6 +1187,21 @@ public class WeightedAutomaton
         s.flush();
     }
 
+    /**
+     * Writes this <code>Automaton</code> to the given channel in the compact
+     * binary format of {@link AutomatonCodec}.
+     *
+     * @param channel
+     *         output channel for encoded automaton
+     *
+     * @throws IOException
+     *         if input/output related exception occurs
+     */
+    public void store(WritableByteChannel channel)
+            throws IOException {
+        AutomatonCodec.write(AutomatonCodec.encode(this), channel);
+    }
+
     /**
      * See {@link BasicWeightedOperations#subsetOf(WeightedAutomaton,
      * WeightedAutomaton)}.
@@ -0,0 +1,191 @@
+package edu.boisestate.cs.automaton;
+
+import java.util.*;
+
+/**
+ * A weighted automaton compiled for repeated membership tests. Weights are
+ * not kept. Deterministic automata are stepped on a table of the next state
+ * for each state and character class. Other automata are stepped on a table
+ * of destination states for each state and character class, with the current
+ * states held in bit sets that are reused between runs. Running either
+ * allocates nothing, unlike {@link WeightedAutomaton#run(String)}, which
+ * creates state weights and lists for every character of a nondeterministic
+ * automaton.
+ * <p>
+ * The automaton is copied when compiled, so later changes to it are not
+ * seen.
+ */
+public class WeightedRunAutomaton {
+
+    private final String singleton;
+    private final char[] points;
+    private final boolean[] accept;
+    private final int initial;
+
+    // next state of a deterministic state n on character class c is
+    // steps[n * points.length + c], -1 if there is none
+    private final int[] steps;
+
+    // destinations of state n on character class c are targets from
+    // offsets[n * points.length + c] up to the next offset
+    private final int[] offsets;
+    private final int[] targets;
+    private long[] current;
+    private long[] next;
+
+    /**
+     * Compiles an automaton.
+     *
+     * @param a
+     *         The automaton, which is not changed.
+     */
+    public WeightedRunAutomaton(WeightedAutomaton a) {
+
+        // keep singleton string, compared directly when run
+        if (a.isSingleton()) {
+            this.singleton = a.getSingleton();
+            this.points = null;
+            this.accept = null;
+            this.initial = -1;
+            this.steps = null;
+            this.offsets = null;
+            this.targets = null;
+            return;
+        }
+        this.singleton = null;
+
+        // number states without changing the numbers held by the automaton
+        Set<WeightedState> states = a.getStates();
+        WeightedState[] ordered =
+                states.toArray(new WeightedState[states.size()]);
+        Map<WeightedState, Integer> numbers = new IdentityHashMap<>();
+        for (WeightedState state : ordered) {
+            numbers.put(state, numbers.size());
+        }
+        int size = ordered.length;
+        this.points = a.getStartPoints();
+        this.accept = new boolean[size];
+        this.initial = numbers.get(a.getInitialState());
+        for (int n = 0; n < size; n++) {
+            accept[n] = ordered[n].isAccept();
+        }
+
+        // tabulate the next state of each deterministic state on each
+        // character class, the destination of the transition holding its
+        // start point
+        if (a.isDeterministic()) {
+            this.steps = new int[size * points.length];
+            Arrays.fill(steps, -1);
+            for (int n = 0; n < size; n++) {
+                for (WeightedTransition t : ordered[n].getTransitions()) {
+                    int dest = numbers.get(t.getDest());
+                    for (int c = 0; c < points.length; c++) {
+                        char point = points[c];
+                        if (t.getMin() <= point && point <= t.getMax()) {
+                            steps[n * points.length + c] = dest;
+                        }
+                    }
+                }
+            }
+            this.offsets = null;
+            this.targets = null;
+            return;
+        }
+        this.steps = null;
+
+        // tabulate destinations of each state on each character class, the
+        // transitions of a class are those holding its start point
+        this.offsets = new int[size * points.length + 1];
+        List<Integer> destinations = new ArrayList<>();
+        for (int n = 0; n < size; n++) {
+            for (int c = 0; c < points.length; c++) {
+                offsets[n * points.length + c] = destinations.size();
+                for (WeightedTransition t : ordered[n].getTransitions()) {
+                    if (t.getMin() <= points[c] && points[c] <= t.getMax()) {
+                        destinations.add(numbers.get(t.getDest()));
+                    }
+                }
+            }
+        }
+        offsets[size * points.length] = destinations.size();
+        this.targets = new int[destinations.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = destinations.get(i);
+        }
+        this.current = new long[(size + 63) >>> 6];
+        this.next = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * @return True if the string is accepted by the automaton.
+     */
+    public boolean run(String s) {
+        if (singleton != null) {
+            return s.equals(singleton);
+        }
+        if (steps != null) {
+            return runDeterministic(s);
+        }
+        return runNondeterministic(s);
+    }
+
+    private boolean runDeterministic(String s) {
+
+        // follow the single next state of each character
+        int state = initial;
+        for (int i = 0; i < s.length(); i++) {
+            int c = SpecialWeightedOperations.findIndex(s.charAt(i), points);
+            state = steps[state * points.length + c];
+            if (state < 0) {
+                return false;
+            }
+        }
+        return accept[state];
+    }
+
+    private synchronized boolean runNondeterministic(String s) {
+
+        // start from the initial state
+        Arrays.fill(current, 0);
+        current[initial >>> 6] |= 1L << initial;
+        for (int i = 0; i < s.length(); i++) {
+            int c = SpecialWeightedOperations.findIndex(s.charAt(i), points);
+
+            // step each current state on the character class
+            Arrays.fill(next, 0);
+            boolean reached = false;
+            for (int w = 0; w < current.length; w++) {
+                long bits = current[w];
+                while (bits != 0) {
+                    int n = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int cell = n * points.length + c;
+                    for (int e = offsets[cell]; e < offsets[cell + 1]; e++) {
+                        int q = targets[e];
+                        next[q >>> 6] |= 1L << q;
+                        reached = true;
+                    }
+                }
+            }
+            if (!reached) {
+                return false;
+            }
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        // accept if any current state accepts
+        for (int w = 0; w < current.length; w++) {
+            long bits = current[w];
+            while (bits != 0) {
+                int n = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (accept[n]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -31,6 +31,7 @@ package edu.boisestate.cs.automaton;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.math3.fraction.Fraction;
 
 /** 
@@ -53,7 +54,7 @@ public class WeightedState
 	}
 
 	private int id;
-	private static int next_id;
+	private static final AtomicInteger next_id = new AtomicInteger();
 
 	public void setNumber(int number) {
 		this.number = number;
@@ -77,7 +78,7 @@ public class WeightedState
 	 */
 	public WeightedState() {
 		resetTransitions();
-		id = next_id++;
+		id = next_id.getAndIncrement();
 		w = new Fraction(1,1);
 	}
 	
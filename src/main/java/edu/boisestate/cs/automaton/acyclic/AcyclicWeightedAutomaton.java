@@ -1,7 +1,10 @@
 package edu.boisestate.cs.automaton.acyclic;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -12,6 +15,7 @@ import java.util.Set;
 
 import org.apache.commons.math3.fraction.Fraction;
 
+import edu.boisestate.cs.automaton.AutomatonCodec;
 import edu.boisestate.cs.util.DotToGraph;
 
 public class AcyclicWeightedAutomaton implements Serializable, Cloneable{
@@ -91,6 +95,27 @@ public class AcyclicWeightedAutomaton implements Serializable, Cloneable{
 		return BasicAcyclicWeightedOperations.union(this, other);
 	} 
 	
+	/**
+	 * Writes this automaton to a channel in the binary
+	 * format of {@link AutomatonCodec}
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void store(WritableByteChannel channel) throws IOException{
+		AutomatonCodec.write(AutomatonCodec.encode(this), channel);
+	}
+	
+	/**
+	 * Reads the next automaton written by {@link #store(WritableByteChannel)}
+	 * from a channel
+	 * @param channel
+	 * @return
+	 * @throws IOException
+	 */
+	public static AcyclicWeightedAutomaton load(ReadableByteChannel channel) throws IOException{
+		return AutomatonCodec.decodeAcyclic(AutomatonCodec.read(channel));
+	}
+	
 	@Override
 	public AcyclicWeightedAutomaton clone(){
 		try{
@@ -3,6 +3,7 @@ package edu.boisestate.cs.automaton.acyclic;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.math3.fraction.Fraction;
 
@@ -26,7 +27,7 @@ public class WeightedState implements Serializable, Comparable<WeightedState>{
 	/* state id */
 	private int id;
 	/* what id to use for the new state */
-	private static int nextId;
+	private static final AtomicInteger nextId = new AtomicInteger();
 
 	public WeightedState(){
 		this(new Fraction(1,1), false);
@@ -34,7 +35,7 @@ public class WeightedState implements Serializable, Comparable<WeightedState>{
 
 	public WeightedState(Fraction weight, boolean isFinal){
 		resetTransitions();
-		id = nextId++;
+		id = nextId.getAndIncrement();
 		w = weight;
 		this.accept = isFinal;
 	}
@@ -16,6 +16,8 @@ import edu.boisestate.cs.util.DotToGraph;
 import edu.boisestate.cs.automaton.acyclic.AcyclicWeightedAutomaton;
 import edu.boisestate.cs.automaton.acyclic.BasicAcyclicWeightedAutomaton;
 import edu.boisestate.cs.automaton.acyclic.BasicAcyclicWeightedOperations;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
+import edu.boisestate.cs.automatonModel.operations.CountingGraph;
 
 public class AcyclicWeightedAutomatonModel extends AutomatonModel<AcyclicWeightedAutomatonModel>{
 
@@ -650,6 +652,18 @@ public class AcyclicWeightedAutomatonModel extends AutomatonModel<AcyclicWeighte
 		return null;
 	}
 
+	@Override
+	public UniformStringSampler getSampler(long seed) {
+		UniformStringSampler sampler = new UniformStringSampler(seed);
+		sampler.add(automaton);
+		return sampler;
+	}
+
+	@Override
+	protected CountingGraph[] getCountingGraphs() {
+		return new CountingGraph[] {CountingGraph.of(automaton)};
+	}
+
 	@Override
 	public BigInteger modelCount() {
 		return automaton.getStringCount();
@@ -950,5 +964,14 @@ public class AcyclicWeightedAutomatonModel extends AutomatonModel<AcyclicWeighte
 		return automaton.toString();
 	}
 
+	@Override
+	public int getStateCount() {
+		return automaton.getStates().size();
+	}
+
+	static AcyclicWeightedAutomaton getAutomatonFromAcyclicModel(AutomatonModel model) {
+		return ((AcyclicWeightedAutomatonModel) model).automaton;
+	}
+
 
 }
@@ -5,6 +5,7 @@ import dk.brics.automaton.BasicAutomata;
 import dk.brics.string.stringoperations.*;
 import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.automatonModel.operations.*;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
 import edu.boisestate.cs.util.Tuple;
 
 import java.math.BigInteger;
@@ -783,6 +784,26 @@ public class AggregateAutomataModel
         return new AggregateAutomataModel(results.get1(), this.alphabet, newBoundLength, results.get2());
     }
 
+    @Override
+    public UniformStringSampler getSampler(long seed) {
+        // count the strings of each automaton by its factor
+        UniformStringSampler sampler = new UniformStringSampler(seed);
+        for (int i = 0; i < automata.length; i++) {
+            sampler.add(automata[i], BigInteger.valueOf(factors[i]));
+        }
+        return sampler;
+    }
+
+    @Override
+    protected CountingGraph[] getCountingGraphs() {
+        // count the strings of each automaton by its factor
+        CountingGraph[] graphs = new CountingGraph[automata.length];
+        for (int i = 0; i < automata.length; i++) {
+            graphs[i] = CountingGraph.of(automata[i], BigInteger.valueOf(factors[i]));
+        }
+        return graphs;
+    }
+
     @Override
     public BigInteger modelCount() {
         // initialize total model count as big integer
@@ -982,10 +1003,14 @@ public class AggregateAutomataModel
         }
     }
 
-    private Automaton[] getAutomataFromAggregateModel(AutomatonModel model) {
+    static Automaton[] getAutomataFromAggregateModel(AutomatonModel model) {
             return ((AggregateAutomataModel) model).automata;
     }
 
+    static int[] getFactorsFromAggregateModel(AutomatonModel model) {
+        return ((AggregateAutomataModel) model).factors;
+    }
+
     private Automaton mergeAutomata(Automaton[] automata) {
         Automaton result = BasicAutomata.makeEmpty();
         for (Automaton automaton : automata) {
@@ -1097,4 +1122,13 @@ public class AggregateAutomataModel
 	public String getAutomaton() {
 		return automata.toString();
 	}
+
+	@Override
+	public int getStateCount() {
+		int count = 0;
+		for (Automaton automaton : automata) {
+			count += automaton.getNumberOfStates();
+		}
+		return count;
+	}
 }
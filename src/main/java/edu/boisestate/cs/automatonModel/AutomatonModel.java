@@ -7,9 +7,17 @@ import dk.brics.automaton.Transition;
 import dk.brics.string.stringoperations.UnaryOperation;
 import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.MinMaxPair;
+import edu.boisestate.cs.automatonModel.operations.ApproximateModelCounter;
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
+import edu.boisestate.cs.automatonModel.operations.CountingGraph;
+import edu.boisestate.cs.automatonModel.operations.StringModelCounter;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -119,6 +127,97 @@ public abstract class AutomatonModel<T extends AutomatonModel>
 
     public abstract BigInteger modelCount();
 
+    /**
+     * Gets a sampler that draws strings of the model uniformly at random,
+     * counting strings as many times as the model count does.
+     *
+     * @param seed
+     *         The seed of the random source.
+     */
+    public abstract UniformStringSampler getSampler(long seed);
+
+    /**
+     * Estimates the model count in floating point, falling back to the exact
+     * model count when the error bound of the estimate is too wide.
+     *
+     * @param epsilon
+     *         The largest relative error accepted.
+     * @param delta
+     *         The largest probability of exceeding epsilon accepted.
+     */
+    public CountEstimate estimateModelCount(double epsilon, double delta) {
+        CountEstimate estimate = approximateModelCount();
+        if (estimate.getRelativeError() > epsilon || estimate.getDelta() > delta) {
+            return CountEstimate.exact(modelCount());
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the model count with a bound on the relative error.
+     */
+    protected CountEstimate approximateModelCount() {
+        CountEstimate total = CountEstimate.ZERO;
+        for (CountingGraph graph : getCountingGraphs()) {
+            total = total.add(ApproximateModelCounter.count(graph,
+                                                            getCountingLength()));
+        }
+        return total;
+    }
+
+    /**
+     * Gets the model count of each string length, so that a single count at
+     * a bound gives the counts of every shorter bound.
+     *
+     * @param precision
+     *         How the counts are computed.
+     *
+     * @return The counts indexed by length, up to the longest counted
+     * string.
+     */
+    public CountEstimate[] modelCountByLength(CountPrecision precision) {
+
+        // sum the counts of each automaton by length
+        List<CountEstimate> counts = new ArrayList<>();
+        for (CountingGraph graph : getCountingGraphs()) {
+            CountEstimate[] graphCounts;
+            if (precision == CountPrecision.DOUBLE) {
+                graphCounts = ApproximateModelCounter.countByLength(graph,
+                                                                    getCountingLength());
+            } else {
+                BigInteger[] exact =
+                        StringModelCounter.ModelCountByLength(graph,
+                                                              getCountingLength());
+                graphCounts = new CountEstimate[exact.length];
+                for (int i = 0; i < exact.length; i++) {
+                    graphCounts[i] = CountEstimate.exact(exact[i]);
+                }
+            }
+            for (int length = 0; length < graphCounts.length; length++) {
+                if (length == counts.size()) {
+                    counts.add(graphCounts[length]);
+                } else {
+                    counts.set(length, counts.get(length).add(graphCounts[length]));
+                }
+            }
+        }
+        return counts.toArray(new CountEstimate[counts.size()]);
+    }
+
+    /**
+     * Copies the automata of the model into counting graphs, whose weighted
+     * strings together make up the model count.
+     */
+    protected abstract CountingGraph[] getCountingGraphs();
+
+    /**
+     * @return The greatest length of a counted string, or -1 if the automata
+     * are acyclic and every string is counted.
+     */
+    protected int getCountingLength() {
+        return -1;
+    }
+
     public abstract T replace(char find, char replace);
 
     public abstract T replace(String find, String replace);
@@ -246,4 +345,9 @@ public abstract class AutomatonModel<T extends AutomatonModel>
     }
     
     public abstract String getAutomaton();
+
+    /**
+     * @return The number of states of the automata of the model.
+     */
+    public abstract int getStateCount();
 }
@@ -11,7 +11,7 @@ public abstract class AutomatonModelManager {
         return this.alphabet;
     }
 
-    static public AutomatonModelManager getInstance(Alphabet alphabet,
+    static synchronized public AutomatonModelManager getInstance(Alphabet alphabet,
                                                     int modelVersion,
                                                     int initialBoundLength) {
 
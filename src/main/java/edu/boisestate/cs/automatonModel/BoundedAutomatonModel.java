@@ -5,6 +5,7 @@ import dk.brics.automaton.BasicAutomata;
 import dk.brics.string.stringoperations.*;
 import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.automatonModel.operations.*;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
 
 import java.math.BigInteger;
 import java.util.Set;
@@ -19,6 +20,11 @@ public class BoundedAutomatonModel
 		return automaton.toString();
 	}
 
+	@Override
+	public int getStateCount() {
+		return automaton.getNumberOfStates();
+	}
+
     BoundedAutomatonModel(Automaton automaton,
                           Alphabet alphabet,
                           int boundLength) {
@@ -35,7 +41,7 @@ public class BoundedAutomatonModel
         this.automaton = automaton;
     }
 
-    private static Automaton getAutomatonFromBoundedModel(AutomatonModel model) {
+    static Automaton getAutomatonFromBoundedModel(AutomatonModel model) {
         return ((BoundedAutomatonModel)model).automaton;
     }
 
@@ -630,6 +636,18 @@ public class BoundedAutomatonModel
                strings.iterator().next() != null;
     }
 
+    @Override
+    public UniformStringSampler getSampler(long seed) {
+        UniformStringSampler sampler = new UniformStringSampler(seed);
+        sampler.add(automaton);
+        return sampler;
+    }
+
+    @Override
+    protected CountingGraph[] getCountingGraphs() {
+        return new CountingGraph[] {CountingGraph.of(automaton, BigInteger.ONE)};
+    }
+
     @Override
     public BigInteger modelCount() {
         // return model count of automaton
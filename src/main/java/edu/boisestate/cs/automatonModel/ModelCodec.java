@@ -0,0 +1,159 @@
+package edu.boisestate.cs.automatonModel;
+
+import dk.brics.automaton.Automaton;
+import edu.boisestate.cs.Alphabet;
+import edu.boisestate.cs.automaton.AutomatonCodec;
+import edu.boisestate.cs.automaton.WeightedAutomaton;
+import edu.boisestate.cs.automaton.acyclic.AcyclicWeightedAutomaton;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of automaton models of every version. A model is written
+ * as its model version, bound length and number of automata, the factors of
+ * an aggregate model, and then each of its automata as an {@link
+ * AutomatonCodec} record. The alphabet is not written, models are decoded
+ * with the alphabet of the solver that reads them.
+ */
+public class ModelCodec {
+
+    private static final int VERSION = 1;
+
+    private ModelCodec() {
+    }
+
+    /**
+     * Encodes a model.
+     *
+     * @return The encoded model, positioned at its start.
+     */
+    public static ByteBuffer encode(AutomatonModel model) {
+
+        // encode automata and factors of the model version
+        int version;
+        List<ByteBuffer> records = new ArrayList<>();
+        int[] factors = new int[0];
+        if (model instanceof UnboundedAutomatonModel) {
+            version = 1;
+            records.add(AutomatonCodec.encode(
+                    UnboundedAutomatonModel.getAutomatonFromUnboundedModel(model)));
+        } else if (model instanceof BoundedAutomatonModel) {
+            version = 2;
+            records.add(AutomatonCodec.encode(
+                    BoundedAutomatonModel.getAutomatonFromBoundedModel(model)));
+        } else if (model instanceof AggregateAutomataModel) {
+            version = 3;
+            for (Automaton automaton :
+                    AggregateAutomataModel.getAutomataFromAggregateModel(model)) {
+                records.add(AutomatonCodec.encode(automaton));
+            }
+            factors = AggregateAutomataModel.getFactorsFromAggregateModel(model);
+        } else if (model instanceof WeightedAutomatonModel) {
+            version = 4;
+            for (WeightedAutomaton automaton :
+                    WeightedAutomatonModel.getAutomataFromWeightedModel(model)) {
+                records.add(AutomatonCodec.encode(automaton));
+            }
+        } else if (model instanceof AcyclicWeightedAutomatonModel) {
+            version = 5;
+            records.add(AutomatonCodec.encode(
+                    AcyclicWeightedAutomatonModel.getAutomatonFromAcyclicModel(model)));
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported automaton model " + model.getClass().getName());
+        }
+
+        // write header, factors and automaton records
+        int length = 10 + 4 * factors.length;
+        for (ByteBuffer record : records) {
+            length += record.remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) version);
+        buffer.putInt(model.getBoundLength());
+        buffer.putInt(records.size());
+        for (int factor : factors) {
+            buffer.putInt(factor);
+        }
+        for (ByteBuffer record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a model at the position of the buffer, leaving the buffer
+     * positioned after the model.
+     *
+     * @param alphabet
+     *         The alphabet of the decoded model.
+     *
+     * @throws IOException
+     *         if the buffer does not hold an encoded model.
+     */
+    public static AutomatonModel decode(ByteBuffer buffer, Alphabet alphabet)
+            throws IOException {
+        try {
+
+            // read header
+            int codecVersion = buffer.get();
+            if (codecVersion != VERSION) {
+                throw new IOException("Unsupported model encoding version " +
+                                      codecVersion);
+            }
+            int version = buffer.get();
+            int boundLength = buffer.getInt();
+            int count = buffer.getInt();
+            if (count < 1 || count > buffer.remaining()) {
+                throw new IOException("Invalid automaton count " + count);
+            }
+
+            // read automata of the model version
+            if (version == 1 || version == 2) {
+                Automaton automaton = AutomatonCodec.decodeAutomaton(buffer);
+                if (version == 1) {
+                    return new UnboundedAutomatonModel(automaton,
+                                                       alphabet,
+                                                       boundLength);
+                }
+                return new BoundedAutomatonModel(automaton, alphabet, boundLength);
+            } else if (version == 3) {
+                int[] factors = new int[count];
+                for (int i = 0; i < count; i++) {
+                    factors[i] = buffer.getInt();
+                }
+                Automaton[] automata = new Automaton[count];
+                for (int i = 0; i < count; i++) {
+                    automata[i] = AutomatonCodec.decodeAutomaton(buffer);
+                }
+                return new AggregateAutomataModel(automata,
+                                                  alphabet,
+                                                  boundLength,
+                                                  factors);
+            } else if (version == 4) {
+                WeightedAutomaton[] automata = new WeightedAutomaton[count];
+                for (int i = 0; i < count; i++) {
+                    automata[i] = AutomatonCodec.decodeWeighted(buffer);
+                }
+                return new WeightedAutomatonModel(automata, alphabet, boundLength);
+            } else if (version == 5) {
+                AcyclicWeightedAutomaton automaton =
+                        AutomatonCodec.decodeAcyclic(buffer);
+                return new AcyclicWeightedAutomatonModel(automaton,
+                                                         alphabet,
+                                                         boundLength);
+            }
+            throw new IOException("Unsupported automaton model version " +
+                                  version);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated automaton model");
+        }
+    }
+}
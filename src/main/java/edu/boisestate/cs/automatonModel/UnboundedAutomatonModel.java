@@ -5,6 +5,7 @@ import dk.brics.automaton.BasicAutomata;
 import dk.brics.string.stringoperations.*;
 import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.automatonModel.operations.*;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
 
 import java.math.BigInteger;
 import java.util.Set;
@@ -18,6 +19,11 @@ public class UnboundedAutomatonModel
         return this.automaton.toString();
     }
 
+    @Override
+    public int getStateCount() {
+        return this.automaton.getNumberOfStates();
+    }
+
     UnboundedAutomatonModel(Automaton automaton,
                             Alphabet alphabet,
                             int initialBoundLength) {
@@ -51,7 +57,7 @@ public class UnboundedAutomatonModel
         return new UnboundedAutomatonModel(result, this.alphabet, this.boundLength);
     }
 
-    private static Automaton getAutomatonFromUnboundedModel(AutomatonModel model) {
+    static Automaton getAutomatonFromUnboundedModel(AutomatonModel model) {
         return ((UnboundedAutomatonModel)model).automaton;
     }
 
@@ -605,6 +611,23 @@ public class UnboundedAutomatonModel
                strings.iterator().next() != null;
     }
 
+    @Override
+    public UniformStringSampler getSampler(long seed) {
+        UniformStringSampler sampler = new UniformStringSampler(seed);
+        sampler.add(automaton);
+        return sampler;
+    }
+
+    @Override
+    protected CountingGraph[] getCountingGraphs() {
+        return new CountingGraph[] {CountingGraph.of(automaton, BigInteger.ONE)};
+    }
+
+    @Override
+    protected int getCountingLength() {
+        return this.boundLength;
+    }
+
     @Override
     public BigInteger modelCount() {
 
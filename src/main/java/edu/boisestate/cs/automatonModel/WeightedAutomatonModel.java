@@ -4,9 +4,11 @@ import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.MinMaxPair;
 import edu.boisestate.cs.automaton.*;
 import edu.boisestate.cs.automatonModel.operations.BinaryWeightedAutomatonOp;
+import edu.boisestate.cs.automatonModel.operations.CountingGraph;
 import edu.boisestate.cs.automatonModel.operations.StringModelCounter;
 import edu.boisestate.cs.automatonModel.operations.UnaryWeightedAutomatonOp;
 import edu.boisestate.cs.automatonModel.operations.weighted.*;
+import edu.boisestate.cs.stringRandom.UniformStringSampler;
 import edu.boisestate.cs.util.DotToGraph;
 
 import java.math.BigInteger;
@@ -47,6 +49,9 @@ public class WeightedAutomatonModel extends AutomatonModel {
 
     private WeightedAutomaton[] automata;
 
+    // compiled automata for membership tests, built on first use
+    private WeightedRunAutomaton[] runAutomata;
+
     private void setAutomata(WeightedAutomaton[] automataArray) {
         for (int i = 0; i < automataArray.length; i++) {
             WeightedAutomaton clone = automataArray[i].clone();
@@ -63,7 +68,7 @@ public class WeightedAutomatonModel extends AutomatonModel {
         this.modelManager = new WeightedAutomatonModelManager(alphabet, initialBoundLength);
     }
 
-    private static WeightedAutomaton[] getAutomataFromWeightedModel(AutomatonModel model) {
+    static WeightedAutomaton[] getAutomataFromWeightedModel(AutomatonModel model) {
         return ((WeightedAutomatonModel)model).automata;
     }
 
@@ -669,8 +674,18 @@ public class WeightedAutomatonModel extends AutomatonModel {
 
     @Override
     public boolean containsString(String actualValue) {
+        // compile automata, which are not changed once the model is created
+        WeightedRunAutomaton[] compiled = this.runAutomata;
+        if (compiled == null) {
+            compiled = new WeightedRunAutomaton[this.automata.length];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = new WeightedRunAutomaton(this.automata[i]);
+            }
+            this.runAutomata = compiled;
+        }
+
         // check automata
-        for (WeightedAutomaton automaton : this.automata) {
+        for (WeightedRunAutomaton automaton : compiled) {
             // return true if string is contained
             if (automaton.run(actualValue)) {
                 return true;
@@ -777,6 +792,24 @@ public class WeightedAutomatonModel extends AutomatonModel {
         return new WeightedAutomatonModel(results, this.alphabet, boundLength);
     }
 
+    @Override
+    public UniformStringSampler getSampler(long seed) {
+        UniformStringSampler sampler = new UniformStringSampler(seed);
+        for (WeightedAutomaton automaton : this.automata) {
+            sampler.add(automaton);
+        }
+        return sampler;
+    }
+
+    @Override
+    protected CountingGraph[] getCountingGraphs() {
+        CountingGraph[] graphs = new CountingGraph[automata.length];
+        for (int i = 0; i < automata.length; i++) {
+            graphs[i] = CountingGraph.of(automata[i]);
+        }
+        return graphs;
+    }
+
     @Override
     public BigInteger modelCount() {
         // initialize total model count as big integer
@@ -1220,4 +1253,13 @@ public class WeightedAutomatonModel extends AutomatonModel {
 		
 		return automata.toString();
 	}
+
+	@Override
+	public int getStateCount() {
+		int count = 0;
+		for (WeightedAutomaton automaton : automata) {
+			count += automaton.getNumberOfStates();
+		}
+		return count;
+	}
 }
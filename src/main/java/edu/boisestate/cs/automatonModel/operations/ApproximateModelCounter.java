@@ -0,0 +1,224 @@
+package edu.boisestate.cs.automatonModel.operations;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates model counts with floating point arithmetic over the length
+ * layers of an automaton. Where the exact counter follows every path of the
+ * automaton with big integers, this counter keeps only the weighted number of
+ * paths of the current length into each state, so it runs in time linear in
+ * the bound times the number of transitions and in memory linear in the
+ * number of states. Each count is a double significand with its own binary
+ * exponent, which keeps counts of very different sizes from underflowing.
+ * Every rounding is accounted for, so the estimate carries a guaranteed bound
+ * on its relative error and a delta of 0. Doubles hold integers below 2^53
+ * exactly, so while every count stays below that limit nothing is rounded
+ * and the count is returned as an exact count.
+ */
+public class ApproximateModelCounter {
+
+    /**
+     * Estimates the weighted number of strings of an automaton.
+     *
+     * @param graph
+     *         The automaton as a counting graph.
+     * @param maxLength
+     *         The greatest length of a counted string, or -1 to count every
+     *         string of an acyclic automaton.
+     *
+     * @return The estimate.
+     */
+    public static CountEstimate count(CountingGraph graph, int maxLength) {
+        CountEstimate total = CountEstimate.ZERO;
+        for (CountEstimate count : countByLength(graph, maxLength)) {
+            total = total.add(count);
+        }
+        return total;
+    }
+
+    /**
+     * Estimates the weighted number of strings of each length of an
+     * automaton, each layer of the count giving the strings of one length.
+     *
+     * @param graph
+     *         The automaton as a counting graph.
+     * @param maxLength
+     *         The greatest length of a counted string, or -1 to count every
+     *         string of an acyclic automaton.
+     *
+     * @return The estimates indexed by length, up to the bound or the
+     * longest path of the automaton.
+     */
+    public static CountEstimate[] countByLength(CountingGraph graph, int maxLength) {
+        if (maxLength < -1) {
+            return new CountEstimate[0];
+        }
+        int stateCount = graph.getStateCount();
+        double u = CountEstimate.UNIT_ROUNDOFF;
+
+        // transition and accept weights as doubles, fractional weights are
+        // divided by their denominators
+        int transitionCount = graph.getTransitionEnd(stateCount - 1);
+        double[] choices = new double[transitionCount];
+        double weightError = 0;
+        for (int t = 0; t < transitionCount; t++) {
+            BigInteger c = graph.getChoices(t);
+            choices[t] = c.doubleValue() / graph.getTransitionDenominator();
+            if (c.bitLength() > 53 || graph.getTransitionDenominator() != 1) {
+                weightError = 2 * u;
+            }
+        }
+        double[] accept = new double[stateCount];
+        double acceptError = 0;
+        for (int s = 0; s < stateCount; s++) {
+            BigInteger a = graph.getAcceptWeight(s);
+            accept[s] = a.doubleValue() / graph.getAcceptDenominator();
+            if (a.bitLength() > 53 || graph.getAcceptDenominator() != 1) {
+                acceptError = 2 * u;
+            }
+        }
+
+        // integers below this are exact in a double
+        int exactExponent = 53;
+
+        // the most additions into a single state bounds the rounding of a
+        // layer
+        int[] incoming = new int[stateCount];
+        int maxIncoming = 0;
+        for (int t = 0; t < transitionCount; t++) {
+            maxIncoming = Math.max(maxIncoming, ++incoming[graph.getDest(t)]);
+        }
+        double layerError = Math.log1p(weightError) + (maxIncoming + 1) * Math.log1p(u);
+
+        // paths of length 0 end in the initial state
+        double[] significands = new double[stateCount];
+        int[] exponents = new int[stateCount];
+        double[] nextSignificands = new double[stateCount];
+        int[] nextExponents = new int[stateCount];
+        significands[0] = 1;
+
+        List<CountEstimate> counts = new ArrayList<>();
+        BigInteger factor = graph.getFactor();
+        double error = 0;
+        for (int length = 0; ; length++) {
+
+            // count strings accepted at this length
+            double sum = 0;
+            int sumExponent = 0;
+            boolean live = false;
+            for (int s = 0; s < stateCount; s++) {
+                if (significands[s] == 0) {
+                    continue;
+                }
+                live = true;
+                if (accept[s] != 0) {
+                    double term = significands[s] * accept[s];
+                    if (sum == 0 || exponents[s] > sumExponent) {
+                        sum = Math.scalb(sum, sumExponent - exponents[s]) + term;
+                        sumExponent = exponents[s];
+                    } else {
+                        sum += Math.scalb(term, exponents[s] - sumExponent);
+                    }
+                }
+            }
+            if (!live) {
+                break;
+            }
+            CountEstimate count = CountEstimate.ZERO;
+            if (sum != 0) {
+                int exponent = sumExponent + Math.getExponent(sum);
+                if (error == 0 && acceptError == 0 && exponent < exactExponent) {
+
+                    // no rounding yet, keep the count exact
+                    long term = (long) Math.scalb(sum, sumExponent);
+                    count = CountEstimate.exact(BigInteger.valueOf(term));
+                } else {
+                    double termError = Math.expm1(error +
+                                                  Math.log1p(acceptError) +
+                                                  stateCount * Math.log1p(u));
+                    count = CountEstimate.approximate(sum,
+                                                      sumExponent,
+                                                      termError,
+                                                      0);
+                }
+            }
+
+            // count every string by the factor of the graph
+            counts.add(count.multiply(factor));
+            if (length == maxLength) {
+                break;
+            }
+            if (maxLength == -1 && length > stateCount) {
+                throw new IllegalArgumentException(
+                        "Automaton with a cycle needs a bound to be counted");
+            }
+
+            // extend every path by one transition
+            for (int s = 0; s < stateCount; s++) {
+                nextSignificands[s] = 0;
+                nextExponents[s] = 0;
+            }
+            for (int s = 0; s < stateCount; s++) {
+                if (significands[s] == 0) {
+                    continue;
+                }
+                for (int t = graph.getTransitionStart(s); t < graph.getTransitionEnd(s); t++) {
+                    add(nextSignificands,
+                        nextExponents,
+                        graph.getDest(t),
+                        significands[s] * choices[t],
+                        exponents[s]);
+                }
+            }
+            double[] swapSignificands = significands;
+            significands = nextSignificands;
+            nextSignificands = swapSignificands;
+            int[] swapExponents = exponents;
+            exponents = nextExponents;
+            nextExponents = swapExponents;
+
+            // the layer was rounded if a weight or a new count is inexact
+            int maxExponent = 0;
+            for (int s = 0; s < stateCount; s++) {
+                if (significands[s] != 0) {
+                    maxExponent = Math.max(maxExponent, exponents[s]);
+                }
+            }
+            if (weightError != 0 || maxExponent >= exactExponent) {
+                error += layerError;
+            }
+        }
+
+        return counts.toArray(new CountEstimate[counts.size()]);
+    }
+
+    /**
+     * Adds value * 2^exponent to a state, keeping its significand in [1, 2).
+     */
+    private static void add(double[] significands,
+                            int[] exponents,
+                            int state,
+                            double value,
+                            int exponent) {
+        if (value == 0) {
+            return;
+        }
+        double sum;
+        if (significands[state] == 0) {
+            sum = value;
+            exponents[state] = exponent;
+        } else if (exponents[state] >= exponent) {
+            sum = significands[state] +
+                  Math.scalb(value, exponent - exponents[state]);
+        } else {
+            sum = Math.scalb(significands[state], exponents[state] - exponent) +
+                  value;
+            exponents[state] = exponent;
+        }
+        int shift = Math.getExponent(sum);
+        significands[state] = Math.scalb(sum, -shift);
+        exponents[state] += shift;
+    }
+}
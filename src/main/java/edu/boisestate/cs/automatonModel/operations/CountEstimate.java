@@ -0,0 +1,226 @@
+package edu.boisestate.cs.automatonModel.operations;
+
+import java.math.BigInteger;
+
+/**
+ * A model count that is either exact or an estimate with a bound on its
+ * relative error. Estimates are kept as a double significand and a binary
+ * exponent, so counts far beyond the range of a double can be represented.
+ * The delta of an estimate is the probability that its error exceeds the
+ * bound, 0 for estimates computed without randomness.
+ */
+public class CountEstimate {
+
+    public static final CountEstimate ZERO = exact(BigInteger.ZERO);
+
+    // unit roundoff of double arithmetic
+    static final double UNIT_ROUNDOFF = Math.ulp(1.0) / 2;
+
+    private static final double LOG10_2 = Math.log10(2);
+
+    private final BigInteger exact;
+    private final double significand;
+    private final long exponent;
+    private final double relativeError;
+    private final double delta;
+
+    private CountEstimate(BigInteger exact,
+                          double significand,
+                          long exponent,
+                          double relativeError,
+                          double delta) {
+        this.exact = exact;
+        this.significand = significand;
+        this.exponent = exponent;
+        this.relativeError = relativeError;
+        this.delta = delta;
+    }
+
+    public static CountEstimate exact(BigInteger count) {
+        return new CountEstimate(count, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates an estimate of significand * 2^exponent.
+     */
+    public static CountEstimate approximate(double significand,
+                                            long exponent,
+                                            double relativeError,
+                                            double delta) {
+
+        // keep significand in [1, 2) so estimates compare by exponent
+        if (significand == 0) {
+            return new CountEstimate(null, 0, 0, relativeError, delta);
+        }
+        int shift = Math.getExponent(significand);
+        return new CountEstimate(null,
+                                 Math.scalb(significand, -shift),
+                                 exponent + shift,
+                                 relativeError,
+                                 delta);
+    }
+
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    /**
+     * @return The bound on the relative error, 0 for exact counts.
+     */
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return The base 2 logarithm of the count, negative infinity for 0.
+     */
+    public double log2() {
+        if (exact != null) {
+            if (exact.signum() == 0) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            int shift = Math.max(0, exact.bitLength() - 63);
+            return shift + Math.log(exact.shiftRight(shift).doubleValue()) / Math.log(2);
+        }
+        if (significand == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return exponent + Math.log(significand) / Math.log(2);
+    }
+
+    /**
+     * @return The count as a double, infinite when out of range.
+     */
+    public double doubleValue() {
+        if (exact != null) {
+            return exact.doubleValue();
+        }
+        if (exponent > Double.MAX_EXPONENT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.scalb(significand, (int) Math.max(exponent, Integer.MIN_VALUE));
+    }
+
+    /**
+     * @return The count as a long, the low bits of exact counts as with
+     * {@link BigInteger#longValue()} and estimates rounded and limited to
+     * the range of a long.
+     */
+    public long longValue() {
+        if (exact != null) {
+            return exact.longValue();
+        }
+        return Math.round(doubleValue());
+    }
+
+    /**
+     * @return The exact count or the estimate rounded to an integer.
+     */
+    public BigInteger toBigInteger() {
+        if (exact != null) {
+            return exact;
+        }
+        if (exponent < 53) {
+            return BigInteger.valueOf(Math.round(doubleValue()));
+        }
+        return BigInteger.valueOf((long) Math.scalb(significand, 52))
+                         .shiftLeft((int) (exponent - 52));
+    }
+
+    /**
+     * @return The sum of the counts, exact if both counts are exact.
+     */
+    public CountEstimate add(CountEstimate other) {
+        if (exact != null && other.exact != null) {
+            return exact(exact.add(other.exact));
+        }
+        CountEstimate a = toApproximate();
+        CountEstimate b = other.toApproximate();
+        if (a.significand == 0) {
+            return b;
+        }
+        if (b.significand == 0) {
+            return a;
+        }
+
+        // align the smaller count to the larger, a sum of positive counts
+        // is at most as far off as its worst term plus one rounding
+        CountEstimate large = a.exponent >= b.exponent ? a : b;
+        CountEstimate small = large == a ? b : a;
+        long shift = Math.max(small.exponent - large.exponent, -2000);
+        double sum = large.significand + Math.scalb(small.significand, (int) shift);
+        double error = (1 + Math.max(a.relativeError, b.relativeError)) *
+                       (1 + UNIT_ROUNDOFF) - 1;
+        return approximate(sum,
+                           large.exponent,
+                           error,
+                           Math.min(1, a.delta + b.delta));
+    }
+
+    /**
+     * @return The sum of the counts, exact if every count is exact.
+     */
+    public static CountEstimate sum(CountEstimate[] counts) {
+        CountEstimate total = ZERO;
+        for (CountEstimate count : counts) {
+            total = total.add(count);
+        }
+        return total;
+    }
+
+    /**
+     * @return The count multiplied by a factor, exact if this count is exact.
+     */
+    public CountEstimate multiply(BigInteger factor) {
+        if (exact != null) {
+            return exact(exact.multiply(factor));
+        }
+        CountEstimate f = exact(factor).toApproximate();
+        double error = (1 + relativeError) *
+                       (1 + f.relativeError) *
+                       (1 + UNIT_ROUNDOFF) - 1;
+        return approximate(significand * f.significand,
+                           exponent + f.exponent,
+                           error,
+                           delta);
+    }
+
+    private CountEstimate toApproximate() {
+        if (exact == null) {
+            return this;
+        }
+
+        // keep the top 63 bits, rounding once if any bits are dropped
+        int shift = Math.max(0, exact.bitLength() - 63);
+        double value = exact.shiftRight(shift).doubleValue();
+        double error = exact.bitLength() > 53 ? 2 * UNIT_ROUNDOFF : 0;
+        return approximate(value, shift, error, 0);
+    }
+
+    /**
+     * @return The exact count, or the estimate as an integer when it fits in
+     * 15 digits and in scientific notation otherwise.
+     */
+    @Override
+    public String toString() {
+        if (exact != null) {
+            return exact.toString();
+        }
+        double log10 = log2() * LOG10_2;
+        if (log10 < 15) {
+            return String.valueOf(Math.round(doubleValue()));
+        }
+        long decimalExponent = (long) Math.floor(log10);
+        double decimalSignificand = Math.pow(10, log10 - decimalExponent);
+        if (decimalSignificand >= 9.999995) {
+            // would round up to 10 in the printed digits
+            decimalSignificand = 1;
+            decimalExponent++;
+        }
+        return String.format("%.5fe+%d", decimalSignificand, decimalExponent);
+    }
+}
@@ -0,0 +1,18 @@
+package edu.boisestate.cs.automatonModel.operations;
+
+/**
+ * How a model count is computed.
+ */
+public enum CountPrecision {
+
+    /**
+     * Counted exactly with big integers.
+     */
+    EXACT,
+
+    /**
+     * Counted in doubles with a bound on the relative error, falling back to
+     * an exact count when the bound grows too wide.
+     */
+    DOUBLE
+}
@@ -0,0 +1,274 @@
+package edu.boisestate.cs.automatonModel.operations;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+import edu.boisestate.cs.automaton.WeightedAutomaton;
+import edu.boisestate.cs.automaton.WeightedState;
+import edu.boisestate.cs.automaton.WeightedTransition;
+import edu.boisestate.cs.automaton.acyclic.AcyclicWeightedAutomaton;
+import org.apache.commons.math3.fraction.Fraction;
+import org.apache.commons.math3.util.ArithmeticUtils;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A copy of an automaton as numbered states and transitions, state 0 being
+ * the initial state, used by the counters and samplers that walk the
+ * automaton one length at a time. Each transition records the weighted number
+ * of characters it stands for, each state the weight of accepting there, and
+ * the graph the factor every string is counted by, so the weighted number of
+ * strings matches the model counts of the automaton. Fractional weights of
+ * acyclic automata are stored as integers over a common denominator.
+ */
+public class CountingGraph {
+
+    private final BigInteger factor;
+    private final BigInteger[] accept;
+    private final int[] firstTransition;
+    private char[] min;
+    private char[] max;
+    private BigInteger[] weight;
+    private int[] dest;
+    private int stateCount;
+    private int transitionCount;
+    private int transitionDenominator;
+    private int acceptDenominator;
+
+    private CountingGraph(int states, BigInteger factor) {
+        this.factor = factor;
+        this.accept = new BigInteger[states];
+        this.firstTransition = new int[states + 1];
+        this.min = new char[16];
+        this.max = new char[16];
+        this.weight = new BigInteger[16];
+        this.dest = new int[16];
+        this.transitionDenominator = 1;
+        this.acceptDenominator = 1;
+    }
+
+    /**
+     * Copies an automaton, counting each of its strings factor times.
+     */
+    public static CountingGraph of(Automaton automaton, BigInteger factor) {
+
+        // number states in breadth first order
+        List<State> states = new ArrayList<>();
+        Map<State, Integer> numbers = new IdentityHashMap<>();
+        number(automaton.getInitialState(), states, numbers);
+        for (int i = 0; i < states.size(); i++) {
+            for (Transition t : states.get(i).getTransitions()) {
+                number(t.getDest(), states, numbers);
+            }
+        }
+
+        // copy states and transitions
+        CountingGraph graph = new CountingGraph(states.size(), factor);
+        for (State state : states) {
+            graph.addState(state.isAccept() ? BigInteger.ONE : BigInteger.ZERO);
+            for (Transition t : state.getTransitions()) {
+                graph.addTransition(t.getMin(),
+                                    t.getMax(),
+                                    BigInteger.ONE,
+                                    numbers.get(t.getDest()));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Copies a weighted automaton, counting the empty string, transition
+     * weights and initial factor as the model counter does.
+     */
+    public static CountingGraph of(WeightedAutomaton automaton) {
+
+        // number states in breadth first order
+        WeightedState initial = automaton.getInitialState();
+        List<WeightedState> states = new ArrayList<>();
+        Map<WeightedState, Integer> numbers = new IdentityHashMap<>();
+        number(initial, states, numbers);
+        for (int i = 0; i < states.size(); i++) {
+            for (WeightedTransition t : states.get(i).getTransitions()) {
+                number(t.getDest(), states, numbers);
+            }
+        }
+
+        // copy states and transitions
+        BigInteger factor = BigInteger.valueOf(automaton.getInitialFactor());
+        CountingGraph graph = new CountingGraph(states.size(), factor);
+        for (WeightedState state : states) {
+            BigInteger accept = BigInteger.ZERO;
+            if (state == initial && state.isAccept()) {
+                accept = BigInteger.valueOf(automaton.getNumEmptyStrings());
+            } else if (state.isAccept()) {
+                accept = BigInteger.ONE;
+            }
+            graph.addState(accept);
+            for (WeightedTransition t : state.getTransitions()) {
+                graph.addTransition(t.getMin(),
+                                    t.getMax(),
+                                    BigInteger.valueOf(t.getWeightInt()),
+                                    numbers.get(t.getDest()));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Copies an acyclic weighted automaton. Fractional weights are scaled to
+     * integers by the common denominator of the transition weights and of the
+     * accept weights, which scales the count of every string of a length by
+     * the same amount.
+     */
+    public static CountingGraph of(AcyclicWeightedAutomaton automaton) {
+
+        // number states in breadth first order
+        List<edu.boisestate.cs.automaton.acyclic.WeightedState> states =
+                new ArrayList<>();
+        Map<edu.boisestate.cs.automaton.acyclic.WeightedState, Integer> numbers =
+                new IdentityHashMap<>();
+        number(automaton.getInitialState(), states, numbers);
+        int transitionDenominator = 1;
+        int acceptDenominator = 1;
+        for (int i = 0; i < states.size(); i++) {
+            edu.boisestate.cs.automaton.acyclic.WeightedState state = states.get(i);
+            if (state.isAccept()) {
+                acceptDenominator = ArithmeticUtils.lcm(acceptDenominator,
+                                                        state.getWeight().getDenominator());
+            }
+            for (edu.boisestate.cs.automaton.acyclic.WeightedTransition t :
+                    state.getTransitions()) {
+                transitionDenominator = ArithmeticUtils.lcm(transitionDenominator,
+                                                            t.getWeight().getDenominator());
+                number(t.getToState(), states, numbers);
+            }
+        }
+
+        // copy states and transitions with scaled weights
+        CountingGraph graph = new CountingGraph(states.size(), BigInteger.ONE);
+        graph.transitionDenominator = transitionDenominator;
+        graph.acceptDenominator = acceptDenominator;
+        for (edu.boisestate.cs.automaton.acyclic.WeightedState state : states) {
+            BigInteger accept = BigInteger.ZERO;
+            if (state.isAccept()) {
+                accept = scale(state.getWeight(), acceptDenominator);
+            }
+            graph.addState(accept);
+            for (edu.boisestate.cs.automaton.acyclic.WeightedTransition t :
+                    state.getTransitions()) {
+                graph.addTransition(t.getSymb(),
+                                    t.getSymb(),
+                                    scale(t.getWeight(), transitionDenominator),
+                                    numbers.get(t.getToState()));
+            }
+        }
+        return graph;
+    }
+
+    private static BigInteger scale(Fraction weight, int denominator) {
+        return BigInteger.valueOf(weight.getNumerator())
+                         .multiply(BigInteger.valueOf(denominator /
+                                                      weight.getDenominator()));
+    }
+
+    private static <S> void number(S state, List<S> states, Map<S, Integer> numbers) {
+        if (!numbers.containsKey(state)) {
+            numbers.put(state, states.size());
+            states.add(state);
+        }
+    }
+
+    private void addState(BigInteger acceptWeight) {
+        accept[stateCount] = acceptWeight;
+        stateCount++;
+        firstTransition[stateCount] = transitionCount;
+    }
+
+    private void addTransition(char from, char to, BigInteger w, int destination) {
+        if (transitionCount == dest.length) {
+            int capacity = 2 * transitionCount;
+            min = Arrays.copyOf(min, capacity);
+            max = Arrays.copyOf(max, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+            dest = Arrays.copyOf(dest, capacity);
+        }
+        min[transitionCount] = from;
+        max[transitionCount] = to;
+        weight[transitionCount] = w;
+        dest[transitionCount] = destination;
+        transitionCount++;
+        firstTransition[stateCount] = transitionCount;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return The first transition of the state, the transitions of a state
+     * being numbered consecutively.
+     */
+    public int getTransitionStart(int state) {
+        return firstTransition[state];
+    }
+
+    /**
+     * @return The transition after the last transition of the state.
+     */
+    public int getTransitionEnd(int state) {
+        return firstTransition[state + 1];
+    }
+
+    public char getMin(int transition) {
+        return min[transition];
+    }
+
+    public char getMax(int transition) {
+        return max[transition];
+    }
+
+    public int getDest(int transition) {
+        return dest[transition];
+    }
+
+    /**
+     * @return The weighted number of characters of the transition, scaled by
+     * the transition denominator.
+     */
+    public BigInteger getChoices(int transition) {
+        return weight[transition].multiply(
+                BigInteger.valueOf(max[transition] - min[transition] + 1));
+    }
+
+    /**
+     * @return The weight of accepting in the state, scaled by the accept
+     * denominator.
+     */
+    public BigInteger getAcceptWeight(int state) {
+        return accept[state];
+    }
+
+    /**
+     * @return The number of times every string is counted.
+     */
+    public BigInteger getFactor() {
+        return factor;
+    }
+
+    /**
+     * @return The denominator of the transition weights, 1 unless the
+     * automaton has fractional weights.
+     */
+    public int getTransitionDenominator() {
+        return transitionDenominator;
+    }
+
+    /**
+     * @return The denominator of the accept weights, 1 unless the automaton
+     * has fractional weights.
+     */
+    public int getAcceptDenominator() {
+        return acceptDenominator;
+    }
+}
@@ -8,6 +8,9 @@ import edu.boisestate.cs.automaton.WeightedState;
 import edu.boisestate.cs.automaton.WeightedTransition;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 @SuppressWarnings("Duplicates")
@@ -278,6 +281,65 @@ public class StringModelCounter {
         return returnModelCount;
     }
 
+    // model counts of each length, counting the paths of each length into
+    // each state from the paths one shorter, fractional weights are divided
+    // out of each length and the count is rounded down
+    static public BigInteger[] ModelCountByLength(CountingGraph graph,
+                                                  int maxLength) {
+
+        // paths of length 0 end in the initial state
+        int stateCount = graph.getStateCount();
+        BigInteger[] paths = new BigInteger[stateCount];
+        BigInteger[] nextPaths = new BigInteger[stateCount];
+        Arrays.fill(paths, BigInteger.ZERO);
+        paths[0] = BigInteger.ONE;
+
+        BigInteger factor = graph.getFactor();
+        BigInteger transitionDenominator =
+                BigInteger.valueOf(graph.getTransitionDenominator());
+        BigInteger denominator =
+                BigInteger.valueOf(graph.getAcceptDenominator());
+        List<BigInteger> counts = new ArrayList<>();
+        for (int length = 0; maxLength == -1 || length <= maxLength; length++) {
+
+            // count strings accepted at this length
+            BigInteger count = BigInteger.ZERO;
+            boolean live = false;
+            for (int s = 0; s < stateCount; s++) {
+                if (paths[s].signum() != 0) {
+                    live = true;
+                    count = count.add(paths[s].multiply(graph.getAcceptWeight(s)));
+                }
+            }
+            if (!live) {
+                break;
+            }
+            counts.add(count.multiply(factor).divide(denominator));
+            if (maxLength == -1 && length > stateCount) {
+                throw new IllegalArgumentException(
+                        "Automaton with a cycle needs a bound to be counted");
+            }
+
+            // extend every path by one transition
+            Arrays.fill(nextPaths, BigInteger.ZERO);
+            for (int s = 0; s < stateCount; s++) {
+                if (paths[s].signum() == 0) {
+                    continue;
+                }
+                for (int t = graph.getTransitionStart(s); t < graph.getTransitionEnd(s); t++) {
+                    int dest = graph.getDest(t);
+                    nextPaths[dest] = nextPaths[dest].add(paths[s].multiply(graph.getChoices(t)));
+                }
+            }
+            BigInteger[] swap = paths;
+            paths = nextPaths;
+            nextPaths = swap;
+            denominator = denominator.multiply(transitionDenominator);
+        }
+
+        return counts.toArray(new BigInteger[counts.size()]);
+    }
+
     // recursive model counter algorithm
     static public BigInteger pseudoModelCount(WeightedState state,
                                                int initialCounter,
@@ -0,0 +1,191 @@
+package edu.boisestate.cs.graph;
+
+import java.util.*;
+
+/**
+ * The operations of a compiled graph that repeat an earlier operation, found
+ * by hashing each operation on its function, parameters and sources in
+ * topological order. A duplicate is given a copy of the result of the
+ * earlier operation, its representative, instead of being solved again, and
+ * keeps its own id for reporting.
+ * <p>
+ * Reporters refine the values a predicate is asserted on, and some
+ * operations set their arguments to concrete strings before using them, so
+ * the key of an operation also holds the number of times each source was
+ * changed before it. An operation is only a duplicate of one solved from the
+ * same values of its sources, and only while the result of the earlier
+ * operation has not itself been changed.
+ */
+public class CommonSubexpressions {
+
+    private final int[] representatives;
+    private final int operationCount;
+    private final int duplicateCount;
+
+    private CommonSubexpressions(int[] representatives,
+                                 int operationCount,
+                                 int duplicateCount) {
+        this.representatives = representatives;
+        this.operationCount = operationCount;
+        this.duplicateCount = duplicateCount;
+    }
+
+    /**
+     * Finds the duplicate operations of a graph.
+     *
+     * @param compiled
+     *         The compiled constraint graph.
+     *
+     * @return The duplicate operations and their representatives.
+     */
+    public static CommonSubexpressions eliminate(CompiledGraph compiled) {
+
+        int size = compiled.size();
+        int[] representatives = new int[size];
+        Arrays.fill(representatives, -1);
+        int[] changes = new int[size];
+        String[] setters = new String[size];
+        Map<String, Integer> operations = new HashMap<>();
+        int operationCount = 0;
+        int duplicateCount = 0;
+        for (int v : compiled.getTopologicalOrder()) {
+            PrintConstraint constraint = compiled.getConstraint(v);
+            Opcode opcode = constraint.getOpcode();
+
+            // count the sources of predicates as changed, as they are refined
+            if (compiled.isEnd(v)) {
+                if (opcode.isPredicate()) {
+                    for (int e = compiled.inBegin(v); e < compiled.inEnd(v); e++) {
+                        changes[compiled.inSource(e)]++;
+                        setters[compiled.inSource(e)] = null;
+                    }
+                }
+                continue;
+            }
+
+            // skip roots, which are not operations
+            if (compiled.isRoot(v)) {
+                continue;
+            }
+            operationCount++;
+
+            // count arguments set to concrete strings as changed, unless
+            // last set by the same kind of operation, which sets them to the
+            // same string again
+            if (opcode.setsArguments()) {
+                String setter = constraint.getSplitValue();
+                for (int e = compiled.inBegin(v); e < compiled.inEnd(v); e++) {
+                    int source = compiled.inSource(e);
+                    if (compiled.inType(e) != EdgeType.TARGET &&
+                        !setter.equals(setters[source])) {
+                        changes[source]++;
+                        setters[source] = setter;
+                    }
+                }
+            }
+
+            // ensure operation is known and has a value of its own, init
+            // operations are not merged as they are cheap and write to
+            // standard output when solved
+            if (opcode == Opcode.UNKNOWN ||
+                opcode == Opcode.INIT ||
+                opcode.isPredicate() ||
+                sharesId(compiled, v)) {
+                continue;
+            }
+
+            // merge with an earlier operation on the same values
+            String key = key(compiled, v, changes);
+            Integer representative = operations.get(key);
+            if (representative != null && changes[representative] == 0) {
+                representatives[v] = representative;
+                duplicateCount++;
+            } else {
+                operations.put(key, v);
+            }
+        }
+
+        return new CommonSubexpressions(representatives,
+                                        operationCount,
+                                        duplicateCount);
+    }
+
+    private static boolean sharesId(CompiledGraph compiled, int v) {
+
+        // vertices with the same id have adjacent indices
+        int id = compiled.getId(v);
+        return (v > 0 && compiled.getId(v - 1) == id) ||
+               (v + 1 < compiled.size() && compiled.getId(v + 1) == id);
+    }
+
+    private static String key(CompiledGraph compiled, int v, int[] changes) {
+
+        // the index arguments of these operations are only read as numbers
+        // from their actual values, so equal indices match by value
+        PrintConstraint constraint = compiled.getConstraint(v);
+        Opcode opcode = constraint.getOpcode();
+        boolean indexArguments = opcode == Opcode.SUBSTRING ||
+                                 opcode == Opcode.DELETE ||
+                                 opcode == Opcode.DELETE_CHAR_AT ||
+                                 opcode == Opcode.SET_LENGTH;
+
+        // sort sources so the order of incoming edges does not matter
+        List<String> sources = new ArrayList<>();
+        for (int e = compiled.inBegin(v); e < compiled.inEnd(v); e++) {
+            int source = compiled.inSource(e);
+            String label = compiled.inType(e).getLabel();
+            if (indexArguments && compiled.inType(e) != EdgeType.TARGET) {
+                sources.add(label +
+                            "=" +
+                            compiled.getConstraint(source).getActualVal());
+            } else {
+                sources.add(label + ":" + source + ":" + changes[source]);
+            }
+        }
+        Collections.sort(sources);
+
+        // key on function, parameters and sources
+        StringBuilder key = new StringBuilder();
+        key.append(constraint.getSplitValue());
+        for (String source : sources) {
+            key.append('\0').append(source);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return True if the operation of a vertex repeats an earlier operation.
+     */
+    public boolean isDuplicate(int v) {
+        return representatives[v] >= 0;
+    }
+
+    /**
+     * @return The vertex of the earlier operation repeated by a vertex, or
+     * -1 if it is not a duplicate.
+     */
+    public int getRepresentative(int v) {
+        return representatives[v];
+    }
+
+    /**
+     * @return The number of operations in the graph.
+     */
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    /**
+     * @return The number of operations that repeat an earlier operation.
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return The fraction of operations that repeat an earlier operation.
+     */
+    public double getDuplicationRate() {
+        return operationCount == 0 ? 0 : (double) duplicateCount / operationCount;
+    }
+}
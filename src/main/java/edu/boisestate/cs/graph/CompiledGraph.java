@@ -0,0 +1,312 @@
+package edu.boisestate.cs.graph;
+
+import org.jgrapht.DirectedGraph;
+
+import java.util.*;
+
+/**
+ * An immutable, array based snapshot of a constraint graph used for
+ * traversal. Vertices are given dense indices in increasing id order (graph
+ * files may contain more than one vertex with the same id, these are kept as
+ * separate vertices with adjacent indices), adjacency is stored in
+ * compressed sparse row form and the topological order used by the
+ * reporters is computed once when the graph is compiled.
+ */
+public class CompiledGraph {
+
+    private final PrintConstraint[] constraints;
+    private final int[] ids;
+    private final int maxId;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final EdgeType[] inTypes;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] targets;
+    private final int[] order;
+
+    private CompiledGraph(PrintConstraint[] constraints,
+                          int[] ids,
+                          int[] inOffsets,
+                          int[] inSources,
+                          EdgeType[] inTypes,
+                          int[] outOffsets,
+                          int[] outTargets,
+                          int[] targets,
+                          int[] order) {
+
+        this.constraints = constraints;
+        this.ids = ids;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inTypes = inTypes;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.targets = targets;
+        this.order = order;
+        this.maxId = ids.length == 0 ? 0 : Math.max(0, ids[ids.length - 1]);
+    }
+
+    /**
+     * Compiles a constraint graph. As a side effect the source map of each
+     * constraint is set from its incoming edges, so that the parser can look
+     * up operands without the traversal building maps per vertex.
+     *
+     * @param graph
+     *         The constraint graph to compile.
+     *
+     * @return The compiled graph.
+     */
+    public static CompiledGraph compile(DirectedGraph<PrintConstraint,
+            SymbolicEdge> graph) {
+
+        // assign dense indices in id order
+        int size = graph.vertexSet().size();
+        PrintConstraint[] constraints =
+                graph.vertexSet().toArray(new PrintConstraint[size]);
+        Arrays.sort(constraints, new PrintConstraintComparator());
+        int[] ids = new int[size];
+        Map<PrintConstraint, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++) {
+            ids[i] = constraints[i].getId();
+            indices.put(constraints[i], i);
+        }
+
+        // build incoming and outgoing offsets from vertex degrees
+        int[] inOffsets = new int[size + 1];
+        int[] outOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            inOffsets[i + 1] = inOffsets[i] + graph.inDegreeOf(constraints[i]);
+            outOffsets[i + 1] =
+                    outOffsets[i] + graph.outDegreeOf(constraints[i]);
+        }
+
+        // fill incoming edge arrays and the target of each vertex
+        int[] inSources = new int[inOffsets[size]];
+        EdgeType[] inTypes = new EdgeType[inOffsets[size]];
+        int[] targets = new int[size];
+        for (int i = 0; i < size; i++) {
+            targets[i] = -1;
+            int e = inOffsets[i];
+            Map<String, Integer> sourceMap = new HashMap<>();
+            for (SymbolicEdge edge : graph.incomingEdgesOf(constraints[i])) {
+                PrintConstraint source = (PrintConstraint) edge.getASource();
+                EdgeType type = EdgeType.fromLabel(edge.getType());
+                inSources[e] = indices.get(source);
+                inTypes[e] = type;
+                if (type == EdgeType.TARGET) {
+                    targets[i] = inSources[e];
+                }
+                sourceMap.put(type.getLabel(), source.getId());
+                e++;
+            }
+
+            // leave an equal source map in place, so compiling a slice of a
+            // graph shared between threads does not change its constraints
+            if (!sourceMap.equals(constraints[i].getSourceMap())) {
+                constraints[i].setSourceMap(sourceMap);
+            }
+        }
+
+        // fill outgoing edge arrays
+        int[] outTargets = new int[outOffsets[size]];
+        for (int i = 0; i < size; i++) {
+            int e = outOffsets[i];
+            for (SymbolicEdge edge : graph.outgoingEdgesOf(constraints[i])) {
+                PrintConstraint target = (PrintConstraint) edge.getATarget();
+                outTargets[e++] = indices.get(target);
+            }
+        }
+
+        // compute topological order, always choosing the lowest ready id
+        int[] order = new int[size];
+        int[] remaining = new int[size];
+        Queue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            remaining[i] = inOffsets[i + 1] - inOffsets[i];
+            if (remaining[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int count = 0;
+        while (!ready.isEmpty()) {
+            int v = ready.poll();
+            order[count++] = v;
+            for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                int w = outTargets[e];
+                remaining[w]--;
+                if (remaining[w] == 0) {
+                    ready.add(w);
+                }
+            }
+        }
+        if (count != size) {
+            throw new IllegalArgumentException("Constraint graph has a cycle");
+        }
+
+        return new CompiledGraph(constraints,
+                                 ids,
+                                 inOffsets,
+                                 inSources,
+                                 inTypes,
+                                 outOffsets,
+                                 outTargets,
+                                 targets,
+                                 order);
+    }
+
+    /**
+     * @return The number of vertices in the graph.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return The largest constraint id in the graph.
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    public PrintConstraint getConstraint(int v) {
+        return constraints[v];
+    }
+
+    public int getId(int v) {
+        return ids[v];
+    }
+
+    /**
+     * Gets the dense index of a constraint id.
+     *
+     * @param id
+     *         The constraint id.
+     *
+     * @return The index of a vertex with the id, or a negative value if the id
+     * is not in the graph.
+     */
+    public int indexOf(int id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    /**
+     * Gets the vertex at the specified position of the topological order.
+     *
+     * @param position
+     *         The position in the traversal, from 0 to size() - 1.
+     *
+     * @return The index of the vertex.
+     */
+    public int vertexAt(int position) {
+        return order[position];
+    }
+
+    /**
+     * @return A copy of the topological order, lowest ready id first.
+     */
+    public int[] getTopologicalOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Labels each vertex with its weakly connected component. Components are
+     * numbered in the order their first vertex appears in the topological
+     * order.
+     *
+     * @return The component label of each vertex.
+     */
+    public int[] findComponents() {
+
+        // union vertices connected by an edge
+        int size = ids.length;
+        int[] parent = new int[size];
+        for (int v = 0; v < size; v++) {
+            parent[v] = v;
+        }
+        for (int v = 0; v < size; v++) {
+            for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                int a = findRoot(parent, v);
+                int b = findRoot(parent, outTargets[e]);
+                if (a != b) {
+                    parent[a] = b;
+                }
+            }
+        }
+
+        // assign labels in traversal order
+        int[] labels = new int[size];
+        int[] rootLabels = new int[size];
+        Arrays.fill(rootLabels, -1);
+        int count = 0;
+        for (int v : order) {
+            int root = findRoot(parent, v);
+            if (rootLabels[root] < 0) {
+                rootLabels[root] = count++;
+            }
+            labels[v] = rootLabels[root];
+        }
+
+        return labels;
+    }
+
+    private static int findRoot(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    public int inBegin(int v) {
+        return inOffsets[v];
+    }
+
+    public int inEnd(int v) {
+        return inOffsets[v + 1];
+    }
+
+    public int inSource(int e) {
+        return inSources[e];
+    }
+
+    public EdgeType inType(int e) {
+        return inTypes[e];
+    }
+
+    public int outBegin(int v) {
+        return outOffsets[v];
+    }
+
+    public int outEnd(int v) {
+        return outOffsets[v + 1];
+    }
+
+    public int outTarget(int e) {
+        return outTargets[e];
+    }
+
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    public int outDegree(int v) {
+        return outOffsets[v + 1] - outOffsets[v];
+    }
+
+    /**
+     * @return The index of the vertex connected to v by a target edge, or -1
+     * if there is none.
+     */
+    public int getTarget(int v) {
+        return targets[v];
+    }
+
+    public boolean isRoot(int v) {
+        return inOffsets[v + 1] == inOffsets[v];
+    }
+
+    public boolean isEnd(int v) {
+        return outOffsets[v + 1] == outOffsets[v];
+    }
+}
@@ -0,0 +1,51 @@
+package edu.boisestate.cs.graph;
+
+/**
+ * The role a source vertex plays for the operation or predicate it flows
+ * into, replacing the "t", "s1", "s2", ... labels stored on each {@link
+ * SymbolicEdge}.
+ */
+public enum EdgeType {
+    TARGET("t"),
+    S1("s1"),
+    S2("s2"),
+    S3("s3"),
+    S4("s4"),
+    S5("s5");
+
+    private final String label;
+
+    EdgeType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The label used for this edge type in graph files and source
+     * maps.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the edge type for a label read from a graph file.
+     *
+     * @param label
+     *         The edge label, e.g. "t" or "s1".
+     *
+     * @return The matching edge type.
+     */
+    public static EdgeType fromLabel(String label) {
+        for (EdgeType type : values()) {
+            if (type.label.equals(label)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown edge type: " + label);
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,157 @@
+package edu.boisestate.cs.graph;
+
+import java.util.Arrays;
+
+/**
+ * Records, for a given traversal schedule of a compiled graph, the position
+ * after which each vertex's symbolic value is no longer read. Similar to
+ * register allocation, the vertices to release after each step are stored
+ * in a compressed list so the reporter can free values as soon as their
+ * final consumer finishes.
+ */
+public class LastUseIndex {
+
+    private final int[] lastUse;
+    private final int[] releaseOffsets;
+    private final int[] releases;
+
+    private LastUseIndex(int[] lastUse,
+                         int[] releaseOffsets,
+                         int[] releases) {
+        this.lastUse = lastUse;
+        this.releaseOffsets = releaseOffsets;
+        this.releases = releases;
+    }
+
+    /**
+     * Computes the last use of every vertex for a schedule.
+     *
+     * @param graph
+     *         The compiled graph.
+     * @param schedule
+     *         The vertex indices in the order they will be processed. This
+     *         must be a topological order of the graph, or of a set of its
+     *         weakly connected components.
+     *
+     * @return The last use index for the schedule.
+     */
+    public static LastUseIndex compute(CompiledGraph graph, int[] schedule) {
+        return compute(graph, schedule, null);
+    }
+
+    /**
+     * Computes the last use of every vertex for a schedule, where duplicate
+     * operations also read the value of their representatives.
+     *
+     * @param graph
+     *         The compiled graph.
+     * @param schedule
+     *         The vertex indices in the order they will be processed.
+     * @param duplicates
+     *         The duplicate operations of the graph, or null if none are
+     *         merged.
+     *
+     * @return The last use index for the schedule.
+     */
+    public static LastUseIndex compute(CompiledGraph graph,
+                                       int[] schedule,
+                                       CommonSubexpressions duplicates) {
+
+        int size = graph.size();
+        int length = schedule.length;
+
+        // get the position of each scheduled vertex, -1 if not scheduled
+        int[] position = new int[size];
+        Arrays.fill(position, -1);
+        for (int p = 0; p < length; p++) {
+            position[schedule[p]] = p;
+        }
+
+        // last use is the latest position of any consumer, or the vertex
+        // itself when nothing reads its value
+        int[] lastUse = new int[size];
+        for (int v = 0; v < size; v++) {
+            int last = position[v];
+            for (int e = graph.outBegin(v); e < graph.outEnd(v); e++) {
+                int p = position[graph.outTarget(e)];
+                if (p > last) {
+                    last = p;
+                }
+            }
+            lastUse[v] = last;
+        }
+
+        // a duplicate copies the value of its representative
+        if (duplicates != null) {
+            for (int v = 0; v < size; v++) {
+                int representative = duplicates.getRepresentative(v);
+                if (representative >= 0 && position[v] > lastUse[representative]) {
+                    lastUse[representative] = position[v];
+                }
+            }
+        }
+
+        // vertices sharing an id share a value, so extend their last use to
+        // the latest of the group and release the id once
+        boolean[] released = new boolean[size];
+        int[] counts = new int[length + 1];
+        int start = 0;
+        while (start < size) {
+            int end = start + 1;
+            int last = lastUse[start];
+            while (end < size && graph.getId(end) == graph.getId(start)) {
+                last = Math.max(last, lastUse[end]);
+                end++;
+            }
+            int first = -1;
+            for (int v = start; v < end; v++) {
+                lastUse[v] = last;
+                if (first < 0 && position[v] >= 0) {
+                    first = v;
+                }
+            }
+            if (first >= 0) {
+                released[first] = true;
+                counts[last + 1]++;
+            }
+            start = end;
+        }
+
+        // build release lists grouped by position
+        int[] releaseOffsets = new int[length + 1];
+        for (int p = 0; p < length; p++) {
+            releaseOffsets[p + 1] = releaseOffsets[p] + counts[p + 1];
+        }
+        int[] fill = new int[length];
+        int[] releases = new int[releaseOffsets[length]];
+        for (int v = 0; v < size; v++) {
+            if (released[v]) {
+                int p = lastUse[v];
+                releases[releaseOffsets[p] + fill[p]] = v;
+                fill[p]++;
+            }
+        }
+
+        return new LastUseIndex(lastUse, releaseOffsets, releases);
+    }
+
+    /**
+     * @return The schedule position of the last step that reads the value of
+     * vertex v.
+     */
+    public int getLastUse(int v) {
+        return lastUse[v];
+    }
+
+    public int releaseBegin(int position) {
+        return releaseOffsets[position];
+    }
+
+    public int releaseEnd(int position) {
+        return releaseOffsets[position + 1];
+    }
+
+    public int releasedVertex(int i) {
+        return releases[i];
+    }
+}
@@ -0,0 +1,226 @@
+package edu.boisestate.cs.graph;
+
+import java.util.*;
+
+/**
+ * A traversal schedule of a compiled graph that keeps few symbolic values
+ * live at once. Of the vertices ready to be solved, it picks the one that
+ * releases the most values less the one it creates, preferring a vertex that
+ * reads the most recently solved value, so a chain of operations is finished
+ * before another is started.
+ * <p>
+ * Predicates refine the values they are asserted on, some operations set
+ * their arguments to concrete strings and vertices with the same id share
+ * a value, so the order of these writes and every other access to the same
+ * value is kept from the topological order. Solving by this schedule then
+ * gives the same results.
+ */
+public class LivenessSchedule {
+
+    /**
+     * Computes the schedule of a graph.
+     *
+     * @param compiled
+     *         The compiled constraint graph.
+     * @param duplicates
+     *         The duplicate operations of the graph, which read the values
+     *         of their representatives, or null if none are merged.
+     *
+     * @return The vertex indices in the order they are to be solved.
+     */
+    public static int[] compute(CompiledGraph compiled,
+                                CommonSubexpressions duplicates) {
+
+        int size = compiled.size();
+        int[] topological = compiled.getTopologicalOrder();
+        int[] position = new int[size];
+        for (int p = 0; p < size; p++) {
+            position[topological[p]] = p;
+        }
+
+        // collect the values read by each vertex, where a duplicate also
+        // reads its representative, and the readers of each value in
+        // topological order
+        int[][] reads = new int[size][];
+        List<List<Integer>> readers = new ArrayList<>(size);
+        for (int v = 0; v < size; v++) {
+            readers.add(new ArrayList<Integer>());
+        }
+        for (int v : topological) {
+            Set<Integer> sources = new LinkedHashSet<>();
+            for (int e = compiled.inBegin(v); e < compiled.inEnd(v); e++) {
+                sources.add(compiled.inSource(e));
+            }
+            if (duplicates != null && duplicates.isDuplicate(v)) {
+                sources.add(duplicates.getRepresentative(v));
+            }
+            reads[v] = new int[sources.size()];
+            int i = 0;
+            for (int u : sources) {
+                reads[v][i++] = u;
+                readers.get(u).add(v);
+            }
+        }
+
+        // depend on reads and on the writes ordered before each vertex
+        List<List<Integer>> successors = new ArrayList<>(size);
+        for (int v = 0; v < size; v++) {
+            successors.add(new ArrayList<Integer>());
+        }
+        int[] waiting = new int[size];
+        for (int v = 0; v < size; v++) {
+            for (int u : reads[v]) {
+                successors.get(u).add(v);
+                waiting[v]++;
+            }
+        }
+        int start = 0;
+        while (start < size) {
+
+            // get vertices sharing the id of the next vertex
+            int end = start + 1;
+            while (end < size && compiled.getId(end) == compiled.getId(start)) {
+                end++;
+            }
+
+            // order the accesses to their value, each member writing it
+            Map<Integer, Boolean> accesses = new HashMap<>();
+            for (int u = start; u < end; u++) {
+                if (end - start > 1) {
+                    accesses.put(u, true);
+                }
+                for (int r : readers.get(u)) {
+                    Boolean writes = accesses.get(r);
+                    accesses.put(r, (writes != null && writes) ||
+                                    writes(compiled, r, u));
+                }
+            }
+            orderWrites(accesses, position, topological, successors, waiting);
+            start = end;
+        }
+
+        // count remaining readers of each value
+        int[] remainingReaders = new int[size];
+        for (int u = 0; u < size; u++) {
+            remainingReaders[u] = readers.get(u).size();
+        }
+
+        // pick vertices from those ready by the values they release
+        int[] schedule = new int[size];
+        int[] scheduled = new int[size];
+        Arrays.fill(scheduled, -1);
+        List<Integer> ready = new ArrayList<>();
+        for (int v = 0; v < size; v++) {
+            if (waiting[v] == 0) {
+                ready.add(v);
+            }
+        }
+        for (int count = 0; count < size; count++) {
+            if (ready.isEmpty()) {
+                throw new IllegalStateException("Schedule has a cycle");
+            }
+            int best = -1;
+            int bestScore = 0;
+            int bestRecent = 0;
+            for (int i = 0; i < ready.size(); i++) {
+                int v = ready.get(i);
+                int score = readers.get(v).isEmpty() ? 0 : -1;
+                int recent = -1;
+                for (int u : reads[v]) {
+                    if (remainingReaders[u] == 1) {
+                        score++;
+                    }
+                    recent = Math.max(recent, scheduled[u]);
+                }
+                if (best < 0 ||
+                    score > bestScore ||
+                    (score == bestScore && recent > bestRecent) ||
+                    (score == bestScore && recent == bestRecent &&
+                     position[v] < position[ready.get(best)])) {
+                    best = i;
+                    bestScore = score;
+                    bestRecent = recent;
+                }
+            }
+
+            // solve picked vertex, readying vertices that wait on it
+            int v = ready.get(best);
+            ready.set(best, ready.get(ready.size() - 1));
+            ready.remove(ready.size() - 1);
+            schedule[count] = v;
+            scheduled[v] = count;
+            for (int u : reads[v]) {
+                remainingReaders[u]--;
+            }
+            for (int w : successors.get(v)) {
+                waiting[w]--;
+                if (waiting[w] == 0) {
+                    ready.add(w);
+                }
+            }
+        }
+
+        return schedule;
+    }
+
+    private static boolean writes(CompiledGraph compiled, int v, int u) {
+
+        // predicates refine their sources when solved as ends
+        Opcode opcode = compiled.getConstraint(v).getOpcode();
+        if (compiled.isEnd(v) && opcode.isPredicate()) {
+            return true;
+        }
+
+        // some operations set their arguments to concrete strings
+        if (opcode.setsArguments()) {
+            for (int e = compiled.inBegin(v); e < compiled.inEnd(v); e++) {
+                if (compiled.inSource(e) == u &&
+                    compiled.inType(e) != EdgeType.TARGET) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void orderWrites(Map<Integer, Boolean> accesses,
+                                    int[] position,
+                                    int[] topological,
+                                    List<List<Integer>> successors,
+                                    int[] waiting) {
+
+        // get accesses in topological order
+        int[] positions = new int[accesses.size()];
+        int i = 0;
+        for (int v : accesses.keySet()) {
+            positions[i++] = position[v];
+        }
+        Arrays.sort(positions);
+
+        // order each write after the accesses since the last write, and
+        // each access after the last write
+        int lastWrite = -1;
+        List<Integer> sinceWrite = new ArrayList<>();
+        for (int p : positions) {
+            int v = topological[p];
+            if (accesses.get(v)) {
+                for (int r : sinceWrite) {
+                    successors.get(r).add(v);
+                    waiting[v]++;
+                }
+                if (sinceWrite.isEmpty() && lastWrite >= 0) {
+                    successors.get(lastWrite).add(v);
+                    waiting[v]++;
+                }
+                sinceWrite.clear();
+                lastWrite = v;
+            } else {
+                if (lastWrite >= 0) {
+                    successors.get(lastWrite).add(v);
+                    waiting[v]++;
+                }
+                sinceWrite.add(v);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package edu.boisestate.cs.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The string operation or predicate of a vertex, parsed once from the
+ * function name of its value so the parser dispatches on a switch instead of
+ * comparing names for every vertex.
+ */
+public enum Opcode {
+    CONCAT(false, "append", "concat", "concatenate"),
+    INIT(false, "<init>"),
+    SUBSTRING(false),
+    SET_LENGTH(false, "setLength"),
+    INSERT(false, "insert"),
+    SET_CHAR_AT(false, "setCharAt"),
+    TRIM(false, "trim"),
+    DELETE(false, "delete"),
+    DELETE_CHAR_AT(false, "deleteCharAt"),
+    REVERSE(false, "reverse"),
+    REPLACE(false),
+    TO_UPPER_CASE(false, "toUpperCase"),
+    TO_LOWER_CASE(false, "toLowerCase"),
+    PROPAGATE(false, "charAt", "intern", "length", "toString", "trimToSize"),
+    VALUE_OF(false, "valueOf"),
+    COPY_VALUE_OF(false, "copyValueOf"),
+    CONTAINS(true, "contains"),
+    ENDS_WITH(true, "endsWith"),
+    STARTS_WITH(true, "startsWith"),
+    EQUALS(true, "contentEquals", "equals"),
+    EQUALS_IGNORE_CASE(true, "equalsIgnoreCase"),
+    IS_EMPTY(true, "isEmpty"),
+    MATCHES(true, "matches"),
+    REGION_MATCHES(true, "regionMatches"),
+    UNKNOWN(false);
+
+    private static final Map<String, Opcode> byName = new HashMap<>();
+
+    static {
+        for (Opcode opcode : values()) {
+            for (String name : opcode.names) {
+                byName.put(name, opcode);
+            }
+        }
+    }
+
+    private final boolean predicate;
+    private final String[] names;
+
+    Opcode(boolean predicate, String... names) {
+        this.predicate = predicate;
+        this.names = names;
+    }
+
+    /**
+     * @return True if the opcode is a boolean function of strings.
+     */
+    public boolean isPredicate() {
+        return predicate;
+    }
+
+    /**
+     * @return True if the operation sets its arguments to concrete strings
+     * from their actual values before using them.
+     */
+    public boolean setsArguments() {
+        return this == CONCAT ||
+               this == INSERT ||
+               this == REPLACE ||
+               this == SET_CHAR_AT;
+    }
+
+    /**
+     * Gets the opcode for a function name read from a graph file.
+     *
+     * @param functionName
+     *         The function name, e.g. "append" or "substring".
+     *
+     * @return The matching opcode, or {@link #UNKNOWN}.
+     */
+    public static Opcode fromFunctionName(String functionName) {
+        Opcode opcode = byName.get(functionName);
+        if (opcode != null) {
+            return opcode;
+        }
+
+        // substring and replace cover every function with their prefix
+        if (functionName.startsWith("substring")) {
+            return SUBSTRING;
+        } else if (functionName.startsWith("replace")) {
+            return REPLACE;
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,121 @@
+package edu.boisestate.cs.graph;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+import java.util.*;
+
+/**
+ * Slices a constraint graph down to the cones of its predicates, the
+ * vertices each predicate is reached from, so solving the slice gives the
+ * same results for the kept predicates while skipping operations no
+ * predicate depends on.
+ * <p>
+ * Reporters refine the values a predicate is asserted on by the observed
+ * branch, so a slice of selected predicates also keeps every other predicate
+ * on a value in the slice, along with its cone. The values reaching the
+ * selected predicates are then refined as they are when solving the whole
+ * graph.
+ */
+public class PredicateSlice {
+
+    /**
+     * Slices a constraint graph to the cones of its predicates.
+     *
+     * @param graph
+     *         The constraint graph to slice, which is not changed.
+     * @param predicateIds
+     *         The ids of the predicates to keep, or null to keep every
+     *         predicate.
+     *
+     * @return A new graph of the kept vertices and the edges between them.
+     */
+    public static DirectedGraph<PrintConstraint, SymbolicEdge> slice(
+            DirectedGraph<PrintConstraint, SymbolicEdge> graph,
+            Set<Integer> predicateIds) {
+
+        // find predicates of the graph
+        List<PrintConstraint> predicates = new ArrayList<>();
+        for (PrintConstraint constraint : graph.vertexSet()) {
+            if (constraint.getOpcode().isPredicate()) {
+                predicates.add(constraint);
+            }
+        }
+
+        // add cones of selected predicates
+        Set<PrintConstraint> kept = Collections.newSetFromMap(
+                new IdentityHashMap<PrintConstraint, Boolean>());
+        List<PrintConstraint> remaining = new ArrayList<>();
+        for (PrintConstraint predicate : predicates) {
+            if (predicateIds == null ||
+                predicateIds.contains(predicate.getId())) {
+                addCone(graph, predicate, kept);
+            } else {
+                remaining.add(predicate);
+            }
+        }
+
+        // add cones of other predicates on kept values until none are added
+        boolean added = true;
+        while (added) {
+            added = false;
+            Iterator<PrintConstraint> iter = remaining.iterator();
+            while (iter.hasNext()) {
+                PrintConstraint predicate = iter.next();
+                if (hasKeptSource(graph, predicate, kept)) {
+                    addCone(graph, predicate, kept);
+                    iter.remove();
+                    added = true;
+                }
+            }
+        }
+
+        // copy kept vertices and their incoming edges, all sources of which
+        // are kept
+        DirectedGraph<PrintConstraint, SymbolicEdge> sliced =
+                new DefaultDirectedGraph<>(SymbolicEdge.class);
+        for (PrintConstraint constraint : graph.vertexSet()) {
+            if (kept.contains(constraint)) {
+                sliced.addVertex(constraint);
+            }
+        }
+        for (PrintConstraint constraint : sliced.vertexSet()) {
+            for (SymbolicEdge edge : graph.incomingEdgesOf(constraint)) {
+                PrintConstraint source = (PrintConstraint) edge.getASource();
+                SymbolicEdge copy = sliced.addEdge(source, constraint);
+                copy.setType(edge.getType());
+            }
+        }
+
+        return sliced;
+    }
+
+    private static void addCone(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
+                                PrintConstraint predicate,
+                                Set<PrintConstraint> kept) {
+
+        // walk incoming edges from the predicate
+        Deque<PrintConstraint> stack = new ArrayDeque<>();
+        stack.push(predicate);
+        while (!stack.isEmpty()) {
+            PrintConstraint constraint = stack.pop();
+            if (!kept.add(constraint)) {
+                continue;
+            }
+            for (SymbolicEdge edge : graph.incomingEdgesOf(constraint)) {
+                stack.push((PrintConstraint) edge.getASource());
+            }
+        }
+    }
+
+    private static boolean hasKeptSource(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
+                                         PrintConstraint predicate,
+                                         Set<PrintConstraint> kept) {
+        for (SymbolicEdge edge : graph.incomingEdgesOf(predicate)) {
+            if (kept.contains((PrintConstraint) edge.getASource())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,6 +6,8 @@
  */
 package edu.boisestate.cs.graph;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 
@@ -23,6 +25,15 @@ public class PrintConstraint implements Serializable,
     private long timeStamp;
     private HashMap<String, Integer> sourceMap;
 
+    // value parsed once into its parts, and base and first argument ids
+    // from the source map, -1 if absent
+    private transient String splitValue;
+    private transient String functionName;
+    private transient String parameters;
+    private transient Opcode opcode;
+    private transient int baseId;
+    private transient int argId;
+
     /**
      * @param value     The name of the vertex (e.g., the symbolic value or
      *                  sting
@@ -38,6 +49,8 @@ public class PrintConstraint implements Serializable,
         id = globalNum++;
         this.actualVal = actualVal;
         timeStamp = System.nanoTime();
+        parseValue();
+        setSourceIds();
     }
 
     /**
@@ -60,6 +73,8 @@ public class PrintConstraint implements Serializable,
         //sourceConstraints.removeFirst();
         //sourceConstraints.add(this);
         sourceConstraints.add(0, this);
+        parseValue();
+        setSourceIds();
 //			if(oldConstraint.type==0&&oldConstraint.sourceConstraints.size()
 // >1){
 //				sourceConstraints.add(oldConstraint.getSource(id));
@@ -80,6 +95,8 @@ public class PrintConstraint implements Serializable,
         this.value = value;
         sourceConstraints = new ArrayList<PrintConstraint>();
         sourceConstraints.add(this);
+        parseValue();
+        setSourceIds();
     }
     
     
@@ -157,6 +174,7 @@ public class PrintConstraint implements Serializable,
      */
     public void setValue(String newValue) {
         this.value = newValue;
+        parseValue();
     }
 
     /**
@@ -166,7 +184,43 @@ public class PrintConstraint implements Serializable,
      * @return The first part of the vertex's value
      */
     public String getSplitValue() {
-        return this.value.split("!:!")[0];
+        return splitValue;
+    }
+
+    /**
+     * @return The function name of the split value, the part before "!!".
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    /**
+     * @return The parameter descriptor of the split value, the part after
+     * "!!", or an empty string if there is none.
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The operation or predicate named by the function name.
+     */
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return The id of the "t" source, or -1 if there is none.
+     */
+    public int getBaseId() {
+        return baseId;
+    }
+
+    /**
+     * @return The id of the "s1" source, or -1 if there is none.
+     */
+    public int getArgId() {
+        return argId;
     }
 
     /**
@@ -258,6 +312,7 @@ public class PrintConstraint implements Serializable,
      */
     public void setSourceMap(Map<String, Integer> sourceMap) {
         this.sourceMap = new HashMap<>(sourceMap);
+        setSourceIds();
     }
 
     /**
@@ -268,4 +323,40 @@ public class PrintConstraint implements Serializable,
     public HashMap<String, Integer> getSourceMap() {
         return sourceMap;
     }
+
+    private void parseValue() {
+        if (value == null) {
+            return;
+        }
+
+        // split value into the same parts as splitting on "!:!" and "!!"
+        int end = value.indexOf("!:!");
+        splitValue = end < 0 ? value : value.substring(0, end);
+        int nameEnd = splitValue.indexOf("!!");
+        if (nameEnd < 0) {
+            functionName = splitValue;
+            parameters = "";
+        } else {
+            functionName = splitValue.substring(0, nameEnd);
+            int paramsEnd = splitValue.indexOf("!!", nameEnd + 2);
+            parameters = paramsEnd < 0 ?
+                         splitValue.substring(nameEnd + 2) :
+                         splitValue.substring(nameEnd + 2, paramsEnd);
+        }
+        opcode = Opcode.fromFunctionName(functionName);
+    }
+
+    private void setSourceIds() {
+        Integer base = sourceMap == null ? null : sourceMap.get("t");
+        Integer arg = sourceMap == null ? null : sourceMap.get("s1");
+        baseId = base == null ? -1 : base;
+        argId = arg == null ? -1 : arg;
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        parseValue();
+        setSourceIds();
+    }
 }
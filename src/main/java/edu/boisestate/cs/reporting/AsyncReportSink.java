@@ -0,0 +1,130 @@
+package edu.boisestate.cs.reporting;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands rows to another sink on a single writer thread, so formatting and
+ * output never block the solver. Rows are written in the order they are
+ * received. At most a fixed number of rows wait for the writer, so a slow
+ * writer holds the solver back instead of letting the queue grow. Any
+ * failure of the writer is thrown by the next write, or when the sink is
+ * closed, which waits for the writer to finish.
+ */
+public class AsyncReportSink implements ReportSink {
+
+    private static final Object[] END = new Object[0];
+
+    // rows waiting for the writer before the solver waits for room
+    private static final int CAPACITY = 1024;
+
+    private final ReportSink sink;
+    private final BlockingQueue<Object[]> queue;
+    private final Thread writer;
+    private volatile Throwable failure;
+
+    public AsyncReportSink(ReportSink sink) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(CAPACITY);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "report-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @Override
+    public void open(ReportColumn[] columns) throws IOException {
+
+        // write header before any row is queued
+        sink.open(columns);
+        writer.start();
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        if (!enqueue(row)) {
+            throw fail(failure);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        // wait for queued rows to be written, the writer stops by itself if
+        // it failed
+        enqueue(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+
+        // flush rows written before any failure
+        Throwable failed = failure;
+        try {
+            sink.close();
+        } catch (IOException | RuntimeException e) {
+            if (failed == null) {
+                throw e;
+            }
+            failed.addSuppressed(e);
+        }
+        if (failed != null) {
+            throw fail(failed);
+        }
+    }
+
+    /**
+     * Queues a row, waiting for room while the writer is running.
+     *
+     * @return False if the writer failed, so the row is not written.
+     */
+    private boolean enqueue(Object[] row) throws IOException {
+        try {
+            while (failure == null) {
+                if (queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private void drain() {
+        try {
+            Object[] row = queue.take();
+            while (row != END) {
+                sink.write(row);
+                row = queue.take();
+            }
+        } catch (InterruptedException e) {
+            failure = new IOException(e);
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    private static IOException fail(Throwable failure) throws IOException {
+
+        // rethrow the failure of the writer as it was thrown
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+}
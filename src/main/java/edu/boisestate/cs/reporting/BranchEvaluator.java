@@ -0,0 +1,189 @@
+package edu.boisestate.cs.reporting;
+
+import edu.boisestate.cs.BasicTimer;
+import edu.boisestate.cs.Parser;
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
+import edu.boisestate.cs.graph.PrintConstraint;
+import edu.boisestate.cs.solvers.ExtendedSolver;
+import edu.boisestate.cs.solvers.ModelCountSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Evaluates the branches of a predicate concurrently. Each branch asserts
+ * its predicates on a private branch of the solver, so no branch needs to
+ * revert the values seen by the others.
+ */
+public class BranchEvaluator {
+
+    /**
+     * The most branches evaluated at once for a predicate, its true, false
+     * and overlap branches.
+     */
+    public static final int MAX_BRANCHES = 3;
+
+    private final ExecutorService executor;
+
+    public BranchEvaluator(int threads) {
+
+        // use daemon threads so an unfinished pool never keeps the jvm alive
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "branch-evaluator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Evaluates branches concurrently, returning when all are finished.
+     *
+     * @param branches
+     *         The branches to evaluate.
+     */
+    public void evaluate(Branch... branches) {
+
+        // gather branches as tasks
+        List<Callable<Branch>> tasks = new ArrayList<>(branches.length);
+        for (Branch branch : branches) {
+            tasks.add(branch);
+        }
+
+        // run tasks and wait for results
+        try {
+            for (Future<Branch> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void shutDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * One branch of a predicate: a sequence of boolean assertions on a
+     * private solver branch followed by a satisfiability check and an
+     * optional model count of the base.
+     */
+    public static class Branch implements Callable<Branch> {
+
+        private final Parser parser;
+        private final PrintConstraint constraint;
+        private final ExtendedSolver solver;
+        private final int base;
+        private final CountPrecision precision;
+        private final boolean[] results;
+        private boolean satisfiable;
+        private boolean countLengths;
+        private CountEstimate modelCount = CountEstimate.ZERO;
+        private CountEstimate[] modelCountByLength = new CountEstimate[0];
+        private long predicateTime;
+        private long modelCountTime;
+
+        /**
+         * @param parser
+         *         The parser used to assert the predicate.
+         * @param constraint
+         *         The predicate constraint.
+         * @param solver
+         *         The private solver branch.
+         * @param base
+         *         The id of the base symbolic string.
+         * @param precision
+         *         How the base is model counted, or null to skip counting.
+         * @param results
+         *         The branch results to assert in order.
+         */
+        public Branch(Parser parser,
+                      PrintConstraint constraint,
+                      ExtendedSolver solver,
+                      int base,
+                      CountPrecision precision,
+                      boolean... results) {
+            this.parser = parser;
+            this.constraint = constraint;
+            this.solver = solver;
+            this.base = base;
+            this.precision = precision;
+            this.results = results;
+        }
+
+        @Override
+        public Branch call() {
+
+            // assert each predicate on the branch
+            for (boolean result : results) {
+                parser.assertBooleanConstraint(result, constraint, solver);
+            }
+            predicateTime = BasicTimer.getRunTime();
+
+            // test if branch is SAT
+            satisfiable = solver.isSatisfiable(base);
+
+            // count base models, once by length if counts of each length
+            // are reported
+            if (precision != null) {
+                ModelCountSolver counter = (ModelCountSolver) solver;
+                if (countLengths) {
+                    modelCountByLength =
+                            counter.estimateModelCountByLength(base, precision);
+                    modelCount = CountEstimate.sum(modelCountByLength);
+                } else {
+                    modelCount = counter.estimateModelCount(base, precision);
+                }
+                modelCountTime = BasicTimer.getRunTime();
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets whether the models of the base are also counted by length.
+         */
+        public void setCountLengths(boolean countLengths) {
+            this.countLengths = countLengths;
+        }
+
+        public ExtendedSolver getSolver() {
+            return solver;
+        }
+
+        public boolean isSatisfiable() {
+            return satisfiable;
+        }
+
+        public long getModelCount() {
+            return modelCount.longValue();
+        }
+
+        public CountEstimate getModelCountEstimate() {
+            return modelCount;
+        }
+
+        public CountEstimate[] getModelCountByLength() {
+            return modelCountByLength;
+        }
+
+        public long getPredicateTime() {
+            return predicateTime;
+        }
+
+        public long getModelCountTime() {
+            return modelCountTime;
+        }
+    }
+}
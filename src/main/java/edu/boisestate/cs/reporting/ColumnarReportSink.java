@@ -0,0 +1,128 @@
+package edu.boisestate.cs.reporting;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a report in a compact columnar binary format. Rows are gathered into
+ * blocks and each block is written one column at a time: integers as zig-zag
+ * variable length numbers, booleans packed eight to a byte and strings as a
+ * length followed by UTF-8 bytes. The format is read by {@link ReportReader}.
+ */
+public class ColumnarReportSink implements ReportSink {
+
+    static final int MAGIC = 0x53434352;
+    static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 1024;
+
+    private final DataOutputStream out;
+    private final Object[][] block;
+    private ReportColumn[] columns;
+    private int blockRows;
+
+    public ColumnarReportSink(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.block = new Object[BLOCK_SIZE][];
+    }
+
+    @Override
+    public void open(ReportColumn[] columns) throws IOException {
+        this.columns = columns;
+
+        // output file header and column schema
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, columns.length);
+        for (ReportColumn column : columns) {
+            writeString(out, column.getName());
+            out.writeByte(column.getType().ordinal());
+        }
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        block[blockRows++] = row;
+        if (blockRows == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeBlock();
+
+        // an empty block marks the end of the report
+        writeVarLong(out, 0);
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockRows == 0) {
+            return;
+        }
+        writeVarLong(out, blockRows);
+        for (int c = 0; c < columns.length; c++) {
+            switch (columns[c].getType()) {
+                case INT:
+                case LONG:
+                    for (int r = 0; r < blockRows; r++) {
+                        long value = ((Number) block[r][c]).longValue();
+                        writeVarLong(out, (value << 1) ^ (value >> 63));
+                    }
+                    break;
+                case BOOLEAN:
+                    for (int r = 0; r < blockRows; r += 8) {
+                        int bits = 0;
+                        for (int b = 0; b < 8 && r + b < blockRows; b++) {
+                            if ((Boolean) block[r + b][c]) {
+                                bits |= 1 << b;
+                            }
+                        }
+                        out.writeByte(bits);
+                    }
+                    break;
+                default:
+                    for (int r = 0; r < blockRows; r++) {
+                        writeString(out, String.valueOf(block[r][c]));
+                    }
+            }
+        }
+        for (int r = 0; r < blockRows; r++) {
+            block[r] = null;
+        }
+        blockRows = 0;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static void writeString(DataOutput out, String value)
+            throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.boisestate.cs.reporting;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes a report as JSON Lines, one object per row keyed by column name.
+ */
+public class JsonLinesReportSink implements ReportSink {
+
+    private final JsonGenerator generator;
+    private ReportColumn[] columns;
+
+    public JsonLinesReportSink(OutputStream out) throws IOException {
+
+        // separate root values with new lines and leave the stream open
+        JsonFactory factory = new JsonFactory();
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator = factory.createGenerator(out, JsonEncoding.UTF8);
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+    }
+
+    @Override
+    public void open(ReportColumn[] columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < row.length; i++) {
+            generator.writeFieldName(columns[i].getName());
+            Object value = row[i];
+            if (value == null) {
+                generator.writeNull();
+                continue;
+            }
+            switch (columns[i].getType()) {
+                case INT:
+                case LONG:
+                    writeNumber(value);
+                    break;
+                case BOOLEAN:
+                    generator.writeBoolean((Boolean) value);
+                    break;
+                default:
+                    generator.writeString(value.toString());
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeNumber(Object value) throws IOException {
+
+        // write numbers as the type they hold, such as exact counts too
+        // large for a long or times in doubles
+        if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).longValue());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        // terminate the last line
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+}
@@ -1,7 +1,5 @@
 package edu.boisestate.cs.reporting;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 
 public class MCDifference {
@@ -17,46 +15,49 @@ public class MCDifference {
 		String f2Path = "./data/correctness/weightedAcyclic/" + fName;
 		
 		try {
-			BufferedReader brF1 = new BufferedReader(new FileReader(f1Path));
-			BufferedReader brF2 = new BufferedReader(new FileReader(f2Path));
+			//reports may be in any sink format, columns are found by name
+			ReportReader rF1 = ReportReader.open(f1Path);
+			ReportReader rF2 = ReportReader.open(f2Path);
+			ReportColumn[] columns1 = rF1.getColumns();
+			ReportColumn[] columns2 = rF2.getColumns();
+			int[] id = columnIndices("ID", columns1, columns2);
+			int[] inCount = columnIndices("IN COUNT", columns1, columns2);
+			int[] tCount = columnIndices("T COUNT", columns1, columns2);
+			int[] fCount = columnIndices("F COUNT", columns1, columns2);
+			int[] prevOps = columnIndices("PREV OPS", columns1, columns2);
 			
-			brF1.readLine();
-			brF2.readLine();
-			//the first line is the header, so read the next one
-			String line1 = brF1.readLine();
-			String line2 = brF2.readLine();
+			Object[] line1 = rF1.readRow();
+			Object[] line2 = rF2.readRow();
 			while(line1 != null && line2 != null){
-				String[] line1Val = line1.split("\t");
-				String[] line2Val = line2.split("\t");
 				//make sure that nodes are the same
-				if(!line1Val[0].equals(line2Val[0])){
-					System.out.println("Lines do not match: " + line1Val[0] + "\t" + line1Val[0]);
+				if(!matches(line1, line2, id)){
+					System.out.println("Lines do not match: " + line1[id[0]] + "\t" + line2[id[1]]);
 					System.exit(2);
 				}
 				String report = "";
 				//check if in count match:
-				if(!line1Val[8].equals(line2Val[8])){
-					report = "InCount does not match " + line1Val[8] + "\t" + line2Val[8];
+				if(!matches(line1, line2, inCount)){
+					report = "InCount does not match " + line1[inCount[0]] + "\t" + line2[inCount[1]];
 				}
 				//check if tCount match
-				if(!line1Val[10].equals(line2Val[10])){
-					report += "\nTCount does not match " + line1Val[10] + "\t" + line2Val[10];
+				if(!matches(line1, line2, tCount)){
+					report += "\nTCount does not match " + line1[tCount[0]] + "\t" + line2[tCount[1]];
 				}
 				//check if fCount match
-				if(!line1Val[13].equals(line2Val[13])){
-					report += "\nFCount does not match " + line1Val[13] + "\t" + line2Val[13];
+				if(!matches(line1, line2, fCount)){
+					report += "\nFCount does not match " + line1[fCount[0]] + "\t" + line2[fCount[1]];
 				}
 				if(!report.isEmpty()){
-					System.out.println(line1Val[0]+"\t" + line1Val[17]);
+					System.out.println(line1[id[0]]+"\t" + line1[prevOps[0]]);
 					System.out.println(report);
 					break;
 				}
 				
-				line1 = brF1.readLine();
-				line2 = brF2.readLine();
+				line1 = rF1.readRow();
+				line2 = rF2.readRow();
 			}
-			brF1.close();
-			brF2.close();
+			rF1.close();
+			rF2.close();
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -64,4 +65,13 @@ public class MCDifference {
 
 	}
 
+	private static int[] columnIndices(String name, ReportColumn[] columns1, ReportColumn[] columns2) {
+		return new int[] {ReportColumn.indexOf(columns1, name), ReportColumn.indexOf(columns2, name)};
+	}
+
+	private static boolean matches(Object[] line1, Object[] line2, int[] column) {
+		//compare as text so typed and tab separated reports can be mixed
+		return String.valueOf(line1[column[0]]).equals(String.valueOf(line2[column[1]]));
+	}
+
 }
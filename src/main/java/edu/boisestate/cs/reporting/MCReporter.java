@@ -4,6 +4,8 @@ import edu.boisestate.cs.BasicTimer;
 import edu.boisestate.cs.Parser;
 import edu.boisestate.cs.automatonModel.AcyclicWeightedAutomatonModel;
 import edu.boisestate.cs.automatonModel.WeightedAutomatonModel;
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
 import edu.boisestate.cs.graph.PrintConstraint;
 import edu.boisestate.cs.graph.SymbolicEdge;
 import edu.boisestate.cs.solvers.ExtendedSolver;
@@ -16,7 +18,40 @@ import java.util.*;
 public class MCReporter
         extends Reporter {
 
+    private static final ReportColumn[] COLUMNS = new ReportColumn[] {
+            new ReportColumn("ID", ReportColumn.Type.INT),
+            new ReportColumn("ACT VAL", ReportColumn.Type.STRING,
+                             "\\\"%s\\\""),
+            new ReportColumn("SING", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("TSAT", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("FSAT", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("DISJOINT", ReportColumn.Type.STRING, "%8s"),
+            new ReportColumn("ACC IN TIME", ReportColumn.Type.LONG),
+            new ReportColumn("IN ID", ReportColumn.Type.INT),
+            new ReportColumn("IN COUNT", ReportColumn.Type.LONG),
+            new ReportColumn("IN TIME", ReportColumn.Type.LONG),
+            new ReportColumn("T COUNT", ReportColumn.Type.LONG),
+            new ReportColumn("T MC TIME", ReportColumn.Type.LONG),
+            new ReportColumn("T PRED TIME", ReportColumn.Type.LONG),
+            new ReportColumn("F COUNT", ReportColumn.Type.LONG),
+            new ReportColumn("F MC TIME", ReportColumn.Type.LONG),
+            new ReportColumn("F PRED TIME", ReportColumn.Type.LONG),
+            new ReportColumn("OVERLAP", ReportColumn.Type.LONG),
+            new ReportColumn("PREV OPS", ReportColumn.Type.STRING)
+    };
+
+    // columns holding model counts, in row order
+    private static final String[] COUNT_COLUMNS = new String[] {
+            "IN COUNT",
+            "T COUNT",
+            "F COUNT",
+            "OVERLAP"
+    };
+
     private final ModelCountSolver modelCountSolver;
+    private BranchEvaluator branchEvaluator;
+    private final CountPrecision[] countPrecisions;
+    private boolean countLengths;
 
     public MCReporter(DirectedGraph<PrintConstraint, SymbolicEdge>
                               graph,
@@ -28,6 +63,10 @@ public class MCReporter
         super(graph, parser, extendedSolver, debug);
 
         this.modelCountSolver = modelCountSolver;
+
+        // count exactly unless set otherwise
+        this.countPrecisions = new CountPrecision[COUNT_COLUMNS.length];
+        Arrays.fill(this.countPrecisions, CountPrecision.EXACT);
     }
 
     @Override
@@ -65,104 +104,166 @@ public class MCReporter
 
         //System.out.printf("Calculating IN MC for Constraint %d\n", base);
 
-        long initialCount = this.modelCountSolver.getModelCount(base);
+        CountEstimate[][] lengthCounts = new CountEstimate[COUNT_COLUMNS.length][];
+        CountEstimate initialCount = count(constraint, base, 0, lengthCounts);
         inMCTime = BasicTimer.getRunTime();
 
-        // store symbolic string values
-        solver.setLast(base, arg);
+        // initialize branch results
+        CountEstimate trueModelCount, falseModelCount, overlap;
+        String disjoint = "yes";
 
-        //System.out.printf("Asserting True Predicate for Constraint %d\n", base);
+        if (branchEvaluator != null) {
+
+            // evaluate true and false branches concurrently
+            BranchEvaluator.Branch trueBranch =
+                    new BranchEvaluator.Branch(parser, constraint,
+                                               branch(constraint, base, arg, 1),
+                                               base, countPrecisions[1], true);
+            BranchEvaluator.Branch falseBranch =
+                    new BranchEvaluator.Branch(parser, constraint,
+                                               branch(constraint, base, arg, 2),
+                                               base, countPrecisions[2], false);
+
+            trueBranch.setCountLengths(countLengths);
+            falseBranch.setCountLengths(countLengths);
+
+            // if actual execution did not produce either true or false
+            if (!actualVal.equals("true") && !actualVal.equals("false")) {
+
+                branchEvaluator.evaluate(trueBranch, falseBranch);
+
+                System.err.println("warning constraint detected without " +
+                                   "true/false value");
+                return;
+            }
 
-        // test if true branch is SAT
-        parser.assertBooleanConstraint(true, constraint);
-        tTime = BasicTimer.getRunTime();
-        if (solver.isSatisfiable(base)) {
-            trueSat = true;
-        }
+            // determine result of actual execution
+            boolean result = !actualVal.equals("false");
+
+            // overlap asserts the negation on top of the actual result
+            BranchEvaluator.Branch overlapBranch =
+                    new BranchEvaluator.Branch(parser, constraint,
+                                               branch(constraint, base, arg, 3),
+                                               base, countPrecisions[3],
+                                               result, !result);
+            overlapBranch.setCountLengths(countLengths);
 
-       // System.out.printf("Calculating T MC for Constraint %d\n", base);
+            branchEvaluator.evaluate(trueBranch, falseBranch, overlapBranch);
 
-        long trueModelCount = this.modelCountSolver.getModelCount(base);
-        tMCTime = BasicTimer.getRunTime();
+            // get branch results
+            trueSat = trueBranch.isSatisfiable();
+            tTime = trueBranch.getPredicateTime();
+            trueModelCount = trueBranch.getModelCountEstimate();
+            tMCTime = trueBranch.getModelCountTime();
+            falseSat = falseBranch.isSatisfiable();
+            fTime = falseBranch.getPredicateTime();
+            falseModelCount = falseBranch.getModelCountEstimate();
+            fMCTime = falseBranch.getModelCountTime();
+            if (overlapBranch.isSatisfiable()) {
+                disjoint = "no";
+            }
+            overlap = overlapBranch.getModelCountEstimate();
+            lengthCounts[1] = trueBranch.getModelCountByLength();
+            lengthCounts[2] = falseBranch.getModelCountByLength();
+            lengthCounts[3] = overlapBranch.getModelCountByLength();
 
-        // revert symbolic string values
-        solver.revertLastPredicate();
+            // keep values of the actual branch
+            BranchEvaluator.Branch actualBranch =
+                    result ? trueBranch : falseBranch;
+            solver.mergeBranch(actualBranch.getSolver());
 
-        // store symbolic string values
-        solver.setLast(base, arg);
+            // update accumulated timers for base and arg
+            updateTimer(base, actualBranch.getPredicateTime());
+            updateTimer(arg, actualBranch.getPredicateTime());
 
-        //System.out.printf("Asserting False Predicate for Constraint %d\n", base);
+        } else {
 
-        // test if false branch is SAT
-        parser.assertBooleanConstraint(false, constraint);
-        fTime = BasicTimer.getRunTime();
-        if (solver.isSatisfiable(base)) {
-            falseSat = true;
-        }
+            // store symbolic string values
+            solver.setLast(base, arg);
 
-       // System.out.printf("Calculating F MC for Constraint %d\n", base);
+            //System.out.printf("Asserting True Predicate for Constraint %d\n", base);
 
-        long falseModelCount = this.modelCountSolver.getModelCount(base);
-        fMCTime = BasicTimer.getRunTime();
+            // test if true branch is SAT
+            parser.assertBooleanConstraint(true, constraint);
+            tTime = BasicTimer.getRunTime();
+            if (solver.isSatisfiable(base)) {
+                trueSat = true;
+            }
 
-        // revert symbolic string values
-        solver.revertLastPredicate();
+           // System.out.printf("Calculating T MC for Constraint %d\n", base);
 
-        // if actual execution did not produce either true or false
-        if (!actualVal.equals("true") && !actualVal.equals("false")) {
+            trueModelCount = count(constraint, base, 1, lengthCounts);
+            tMCTime = BasicTimer.getRunTime();
 
-            System.err.println("warning constraint detected without " +
-                               "true/false value");
-            return;
-        }
+            // revert symbolic string values
+            solver.revertLastPredicate();
 
-        // determine result of actual execution
-        boolean result = true;
-        if (actualVal.equals("false")) {
-            result = false;
-        }
+            // store symbolic string values
+            solver.setLast(base, arg);
 
-        //System.out.printf("Asserting Predicate to determine disjoint branches for Constraint %d\n", base);
+            //System.out.printf("Asserting False Predicate for Constraint %d\n", base);
 
-        // branches disjoint?
-        parser.assertBooleanConstraint(result, constraint);
+            // test if false branch is SAT
+            parser.assertBooleanConstraint(false, constraint);
+            fTime = BasicTimer.getRunTime();
+            if (solver.isSatisfiable(base)) {
+                falseSat = true;
+            }
 
-        // update accumulated timer for base
-        long prevTime = 0;
-        if (timerMap.containsKey(base)) {
-            prevTime = timerMap.get(base);
-        }
-        long lastTime = BasicTimer.getRunTime();
-        timerMap.put(base, lastTime + prevTime);
+           // System.out.printf("Calculating F MC for Constraint %d\n", base);
 
-        // update accumulated timer for arg
-        prevTime = 0;
-        if (timerMap.containsKey(arg)) {
-            prevTime = timerMap.get(arg);
-        }
-        timerMap.put(arg, lastTime + prevTime);
+            falseModelCount = count(constraint, base, 2, lengthCounts);
+            fMCTime = BasicTimer.getRunTime();
 
-        // store symbolic string values
-        solver.setLast(base, arg);
+            // revert symbolic string values
+            solver.revertLastPredicate();
 
-      // System.out.printf("Asserting Negation of Predicate to determine disjoint branches for Constraint %d\n", base);
+            // if actual execution did not produce either true or false
+            if (!actualVal.equals("true") && !actualVal.equals("false")) {
 
-        parser.assertBooleanConstraint(!result, constraint);
+                System.err.println("warning constraint detected without " +
+                                   "true/false value");
+                return;
+            }
 
-        //System.out.printf("After assering for Constraint %d\n", base);
-        // set yes or no for disjoint branches
-        String disjoint = "yes";
-        if (solver.isSatisfiable(base)) {
-            disjoint = "no";
-        }
+            // determine result of actual execution
+            boolean result = true;
+            if (actualVal.equals("false")) {
+                result = false;
+            }
+
+            //System.out.printf("Asserting Predicate to determine disjoint branches for Constraint %d\n", base);
+
+            // branches disjoint?
+            parser.assertBooleanConstraint(result, constraint);
 
-       //System.out.printf("Calculating Disjoint MC for Constraint %d\n", base);
+            // update accumulated timers for base and arg
+            long lastTime = BasicTimer.getRunTime();
+            updateTimer(base, lastTime);
+            updateTimer(arg, lastTime);
 
-        // set yes or no for disjoint branches
-        long overlap = this.modelCountSolver.getModelCount(base);
+            // store symbolic string values
+            solver.setLast(base, arg);
 
-        // revert symbolic string values
-        solver.revertLastPredicate();
+          // System.out.printf("Asserting Negation of Predicate to determine disjoint branches for Constraint %d\n", base);
+
+            parser.assertBooleanConstraint(!result, constraint);
+
+            //System.out.printf("After assering for Constraint %d\n", base);
+            // set yes or no for disjoint branches
+            if (solver.isSatisfiable(base)) {
+                disjoint = "no";
+            }
+
+           //System.out.printf("Calculating Disjoint MC for Constraint %d\n", base);
+
+            // set yes or no for disjoint branches
+            overlap = count(constraint, base, 3, lengthCounts);
+
+            // revert symbolic string values
+            solver.revertLastPredicate();
+
+        }
 
         // get percentages
 //        float truePercent = 100 * (float) trueModelCount / (float) initialCount;
@@ -175,7 +276,7 @@ public class MCReporter
         }
 
         // get constraint function name
-        String constName = constraint.getSplitValue().split("!!")[0];
+        String constName = constraint.getFunctionName();
 
         // add boolean operation to operation list
         addBooleanOperation(base, arg, constName, constraint.getId(), argIsSingleton);
@@ -184,84 +285,216 @@ public class MCReporter
         String[] opsArray = this.operationsMap.get(base);
         String ops = joinStrings(Arrays.asList(opsArray), " -> ");
 
-        // gather column data in list
-        List<String> columns = new ArrayList<>();
-        // id
-        columns.add(String.valueOf(constraint.getId()));
-        // actual value
-        columns.add(String.format("\\\"%s\\\"", constraint.getActualVal()));
-        // is singleton?
-        columns.add(String.valueOf(isSingleton));
-        // true sat?
-        columns.add(String.valueOf(trueSat));
-        // false sat?
-        columns.add(String.valueOf(falseSat));
-        // disjoint?
-        columns.add(String.format("%8s", disjoint));
-        // accumulated time
-        columns.add(String.valueOf(accTime));
-        // id of initial model
-        columns.add(String.valueOf(base));
-        // initial model count
-        columns.add(String.valueOf(initialCount));
-        // initial model count time
-        columns.add(String.valueOf(inMCTime));
-        // true model count
-        columns.add(String.valueOf(trueModelCount));
-        // true model count time
-        columns.add(String.valueOf(tMCTime));
-        // true predicate time
-        columns.add(String.valueOf(tTime));
-        // false model count
-        columns.add(String.valueOf(falseModelCount));
-        // false model count time
-        columns.add(String.valueOf(fMCTime));
-        // false predicate time
-        columns.add(String.valueOf(fTime));
-        // overlap count
-        columns.add(String.valueOf(overlap));
-        // previous operations
-        columns.add(ops);
-
-        // generate row string
-        String row = joinStrings(columns, "\t");
+        // gather column data in row
+        Object[] row = new Object[] {
+                constraint.getId(),
+                constraint.getActualVal(),
+                isSingleton,
+                trueSat,
+                falseSat,
+                disjoint,
+                accTime,
+                base,
+                countValue(0, initialCount),
+                inMCTime,
+                countValue(1, trueModelCount),
+                tMCTime,
+                tTime,
+                countValue(2, falseModelCount),
+                fMCTime,
+                fTime,
+                countValue(3, overlap),
+                ops
+        };
+
+        // add largest error bound of the row counts
+        List<Object> extraColumns = new ArrayList<>();
+        if (hasDoubleCounts()) {
+            double error = Math.max(Math.max(initialCount.getRelativeError(),
+                                             trueModelCount.getRelativeError()),
+                                    Math.max(falseModelCount.getRelativeError(),
+                                             overlap.getRelativeError()));
+            extraColumns.add(String.format("%.2e", error));
+        }
+
+        // add counts of each length
+        if (countLengths) {
+            for (int i = 0; i < COUNT_COLUMNS.length; i++) {
+                extraColumns.add(joinCounts(i, lengthCounts[i]));
+            }
+        }
+
+        // extra columns go before the operations
+        if (!extraColumns.isEmpty()) {
+            row = Arrays.copyOf(row, row.length + extraColumns.size());
+            row[row.length - 1] = ops;
+            for (int i = 0; i < extraColumns.size(); i++) {
+                row[row.length - 1 - extraColumns.size() + i] = extraColumns.get(i);
+            }
+        }
 
         // output row
-        System.out.println(row);
+        outputRow(row);
         
 //        System.out.println(((AcyclicWeightedAutomatonModel) solver.getValue(base)).getAutomaton());
 //        System.out.println(((AcyclicWeightedAutomatonModel) solver.getValue(arg)).getAutomaton());
 //        System.exit(2);
     }
 
+    /**
+     * Sets the evaluator used to compute the branches of each predicate
+     * concurrently, or null to evaluate them sequentially. The evaluator is
+     * shut down with the solver once the report is done, reporters of the
+     * components of a parallel run share the evaluator of their parent.
+     *
+     * @param branchEvaluator
+     *         The branch evaluator.
+     */
+    public void setBranchEvaluator(BranchEvaluator branchEvaluator) {
+        this.branchEvaluator = branchEvaluator;
+    }
+
+    @Override
+    protected void shutDown() {
+        super.shutDown();
+        if (branchEvaluator != null) {
+            branchEvaluator.shutDown();
+        }
+    }
+
+    /**
+     * Sets whether all counts are counted in doubles, written as text with
+     * an error bound column, or exactly as long values.
+     *
+     * @param approximate
+     *         True to count in doubles.
+     */
+    public void setApproximate(boolean approximate) {
+        Arrays.fill(countPrecisions,
+                    approximate ? CountPrecision.DOUBLE : CountPrecision.EXACT);
+    }
+
+    /**
+     * Sets how the counts of one column are counted. Counts in doubles are
+     * written as text and add an error bound column to the report.
+     *
+     * @param column
+     *         The name of a count column.
+     * @param precision
+     *         How the counts of the column are counted.
+     */
+    public void setCountPrecision(String column, CountPrecision precision) {
+        int index = Arrays.asList(COUNT_COLUMNS).indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown count column: " + column);
+        }
+        countPrecisions[index] = precision;
+    }
+
+    /**
+     * Sets whether the counts are also reported by length, adding a column
+     * for each count with the comma separated counts of lengths 0 up to the
+     * longest counted string.
+     *
+     * @param countLengths
+     *         True to report counts by length.
+     */
+    public void setCountLengths(boolean countLengths) {
+        this.countLengths = countLengths;
+    }
+
+    /**
+     * Counts the models of a symbolic string for a count column. When counts
+     * are reported by length, the models are counted once by length and the
+     * count is the sum of the lengths. The count is named by the vertex and
+     * column for solvers that store counts.
+     */
+    private CountEstimate count(PrintConstraint constraint,
+                                int id,
+                                int column,
+                                CountEstimate[][] lengthCounts) {
+        solver.setCountStep(constraint.getId(), column);
+        if (!countLengths) {
+            return this.modelCountSolver.estimateModelCount(id,
+                                                            countPrecisions[column]);
+        }
+        lengthCounts[column] =
+                this.modelCountSolver.estimateModelCountByLength(id,
+                                                                 countPrecisions[column]);
+        return CountEstimate.sum(lengthCounts[column]);
+    }
+
+    /**
+     * Branches the solver for a count column, naming the count taken on the
+     * branch.
+     */
+    private ExtendedSolver branch(PrintConstraint constraint,
+                                  int base,
+                                  int arg,
+                                  int column) {
+        ExtendedSolver branch = solver.branch(base, arg);
+        branch.setCountStep(constraint.getId(), column);
+        return branch;
+    }
+
+    private String joinCounts(int column, CountEstimate[] counts) {
+        List<String> values = new ArrayList<>(counts.length);
+        for (CountEstimate count : counts) {
+            values.add(String.valueOf(countValue(column, count)));
+        }
+        return counts.length == 0 ? "0" : joinStrings(values, ",");
+    }
+
+    private boolean hasDoubleCounts() {
+        return Arrays.asList(countPrecisions).contains(CountPrecision.DOUBLE);
+    }
+
+    private Object countValue(int column, CountEstimate count) {
+        if (countPrecisions[column] == CountPrecision.DOUBLE) {
+            return count.toString();
+        }
+        return count.longValue();
+    }
+
+    private void updateTimer(int id, long time) {
+        long prevTime = 0;
+        if (timerMap.containsKey(id)) {
+            prevTime = timerMap.get(id);
+        }
+        timerMap.put(id, time + prevTime);
+    }
+
     @Override
-    protected void outputHeader() {
-
-        // gather headers in list
-        List<String> headers = new ArrayList<>();
-        headers.add("ID");
-        headers.add("ACT VAL");
-        headers.add("SING");
-        headers.add("TSAT");
-        headers.add("FSAT");
-        headers.add("DISJOINT");
-        headers.add("ACC IN TIME");
-        headers.add("IN ID");
-        headers.add("IN COUNT");
-        headers.add("IN TIME");
-        headers.add("T COUNT");
-        headers.add("T MC TIME");
-        headers.add("T PRED TIME");
-        headers.add("F COUNT");
-        headers.add("F MC TIME");
-        headers.add("F PRED TIME");
-        headers.add("OVERLAP");
-        headers.add("PREV OPS");
-
-        // generate headers string
-        String header = joinStrings(headers, "\t");
-
-        // output header
-        System.out.println(header);
+    protected ReportColumn[] getColumns() {
+        if (!hasDoubleCounts() && !countLengths) {
+            return COLUMNS;
+        }
+
+        // counts in doubles are text, with the largest error bound of the
+        // row and the counts by length before the operations
+        List<ReportColumn> columns = new ArrayList<>();
+        for (ReportColumn column : COLUMNS) {
+            int count = Arrays.asList(COUNT_COLUMNS).indexOf(column.getName());
+            if (count >= 0 && countPrecisions[count] == CountPrecision.DOUBLE) {
+                columns.add(new ReportColumn(column.getName(),
+                                             ReportColumn.Type.STRING));
+            } else if (column.getName().equals("PREV OPS")) {
+                if (hasDoubleCounts()) {
+                    columns.add(new ReportColumn("COUNT ERROR",
+                                                 ReportColumn.Type.STRING));
+                }
+                if (countLengths) {
+                    for (String name : COUNT_COLUMNS) {
+                        String lengths = name.replace(" COUNT", "") + " LENGTHS";
+                        columns.add(new ReportColumn(lengths,
+                                                     ReportColumn.Type.STRING));
+                    }
+                }
+                columns.add(column);
+            } else {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new ReportColumn[columns.size()]);
     }
 }
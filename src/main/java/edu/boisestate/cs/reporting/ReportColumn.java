@@ -0,0 +1,69 @@
+package edu.boisestate.cs.reporting;
+
+/**
+ * A named, typed column of a report. The text format is used only by the
+ * tab separated sink, so that its output stays the same as the original
+ * reporters while the other sinks write the raw values.
+ */
+public class ReportColumn {
+
+    private final String name;
+    private final Type type;
+    private final String textFormat;
+
+    public ReportColumn(String name, Type type) {
+        this(name, type, "%s");
+    }
+
+    public ReportColumn(String name, Type type, String textFormat) {
+        this.name = name;
+        this.type = type;
+        this.textFormat = textFormat;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Formats a value of this column for tab separated output.
+     *
+     * @param value
+     *         The column value.
+     *
+     * @return The formatted value.
+     */
+    public String formatText(Object value) {
+        return String.format(textFormat, value);
+    }
+
+    /**
+     * Gets the index of a named column.
+     *
+     * @param columns
+     *         The report columns.
+     * @param name
+     *         The column name.
+     *
+     * @return The index of the column.
+     */
+    public static int indexOf(ReportColumn[] columns, String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].name.equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown report column: " + name);
+    }
+
+    public enum Type {
+        INT,
+        LONG,
+        BOOLEAN,
+        STRING
+    }
+}
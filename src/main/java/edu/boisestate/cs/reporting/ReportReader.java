@@ -0,0 +1,241 @@
+package edu.boisestate.cs.reporting;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a report written by any of the report sinks. The format is detected
+ * from the start of the file. Tab separated reports have no type
+ * information, so their values are read as strings.
+ */
+public abstract class ReportReader implements Closeable {
+
+    protected ReportColumn[] columns;
+
+    /**
+     * Opens a report file.
+     *
+     * @param path
+     *         The path of the report.
+     *
+     * @return A reader positioned at the first row.
+     */
+    public static ReportReader open(String path) throws IOException {
+        BufferedInputStream in =
+                new BufferedInputStream(new FileInputStream(path));
+
+        // peek at the start of the file to detect the format
+        in.mark(4);
+        DataInputStream data = new DataInputStream(in);
+        int magic;
+        try {
+            magic = data.readInt();
+        } catch (EOFException e) {
+            magic = 0;
+        }
+        in.reset();
+
+        if (magic == ColumnarReportSink.MAGIC) {
+            return new ColumnarReader(data);
+        }
+        BufferedReader lines = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+        if ((magic >>> 24) == '{') {
+            return new JsonLinesReader(lines);
+        }
+        return new TextReader(lines);
+    }
+
+    public ReportColumn[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The values of the next row, or null at the end of the report.
+     */
+    public abstract Object[] readRow() throws IOException;
+
+    private static class TextReader extends ReportReader {
+
+        private final BufferedReader reader;
+
+        TextReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+
+            // read column names from header
+            String header = reader.readLine();
+            String[] names = header == null ? new String[0] : header.split("\t");
+            columns = new ReportColumn[names.length];
+            for (int i = 0; i < names.length; i++) {
+                columns[i] = new ReportColumn(names[i],
+                                              ReportColumn.Type.STRING);
+            }
+        }
+
+        @Override
+        public Object[] readRow() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            return line.split("\t", -1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class JsonLinesReader extends ReportReader {
+
+        private final BufferedReader reader;
+        private final ObjectMapper mapper;
+        private JsonNode next;
+
+        JsonLinesReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            this.mapper = new ObjectMapper();
+
+            // infer columns from the first row
+            next = readNode();
+            List<ReportColumn> list = new ArrayList<>();
+            if (next != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = next.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    ReportColumn.Type type = ReportColumn.Type.STRING;
+                    if (field.getValue().isIntegralNumber()) {
+                        type = ReportColumn.Type.LONG;
+                    } else if (field.getValue().isBoolean()) {
+                        type = ReportColumn.Type.BOOLEAN;
+                    }
+                    list.add(new ReportColumn(field.getKey(), type));
+                }
+            }
+            columns = list.toArray(new ReportColumn[list.size()]);
+        }
+
+        private JsonNode readNode() throws IOException {
+            String line = reader.readLine();
+            while (line != null && line.trim().isEmpty()) {
+                line = reader.readLine();
+            }
+            return line == null ? null : mapper.readTree(line);
+        }
+
+        @Override
+        public Object[] readRow() throws IOException {
+            if (next == null) {
+                return null;
+            }
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                JsonNode value = next.get(columns[i].getName());
+                if (value == null || value.isNull()) {
+                    row[i] = null;
+                } else if (value.isIntegralNumber()) {
+                    row[i] = value.asLong();
+                } else if (value.isBoolean()) {
+                    row[i] = value.asBoolean();
+                } else {
+                    row[i] = value.asText();
+                }
+            }
+            next = readNode();
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class ColumnarReader extends ReportReader {
+
+        private final DataInputStream in;
+        private Object[][] block;
+        private int blockRow;
+
+        ColumnarReader(DataInputStream in) throws IOException {
+            this.in = in;
+
+            // read file header and column schema
+            in.readInt();
+            int version = in.readUnsignedByte();
+            if (version != ColumnarReportSink.VERSION) {
+                throw new IOException("Unsupported report version: " +
+                                      version);
+            }
+            ReportColumn.Type[] types = ReportColumn.Type.values();
+            columns = new ReportColumn[(int) ColumnarReportSink.readVarLong(in)];
+            for (int i = 0; i < columns.length; i++) {
+                String name = ColumnarReportSink.readString(in);
+                columns[i] = new ReportColumn(name,
+                                              types[in.readUnsignedByte()]);
+            }
+            block = new Object[0][];
+        }
+
+        @Override
+        public Object[] readRow() throws IOException {
+            if (blockRow == block.length) {
+                if (!readBlock()) {
+                    return null;
+                }
+            }
+            return block[blockRow++];
+        }
+
+        private boolean readBlock() throws IOException {
+            int rows = (int) ColumnarReportSink.readVarLong(in);
+            if (rows == 0) {
+                return false;
+            }
+            block = new Object[rows][columns.length];
+            blockRow = 0;
+            for (int c = 0; c < columns.length; c++) {
+                switch (columns[c].getType()) {
+                    case INT:
+                    case LONG:
+                        for (int r = 0; r < rows; r++) {
+                            long zigZag = ColumnarReportSink.readVarLong(in);
+                            long value = (zigZag >>> 1) ^ -(zigZag & 1);
+                            if (columns[c].getType() == ReportColumn.Type.INT) {
+                                block[r][c] = (int) value;
+                            } else {
+                                block[r][c] = value;
+                            }
+                        }
+                        break;
+                    case BOOLEAN:
+                        for (int r = 0; r < rows; r += 8) {
+                            int bits = in.readUnsignedByte();
+                            for (int b = 0; b < 8 && r + b < rows; b++) {
+                                block[r + b][c] = (bits & (1 << b)) != 0;
+                            }
+                        }
+                        break;
+                    default:
+                        for (int r = 0; r < rows; r++) {
+                            block[r][c] = ColumnarReportSink.readString(in);
+                        }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package edu.boisestate.cs.reporting;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows produced by a reporter.
+ */
+public interface ReportSink {
+
+    /**
+     * Starts the report, writing a header if the format has one.
+     *
+     * @param columns
+     *         The columns of every following row.
+     */
+    void open(ReportColumn[] columns) throws IOException;
+
+    /**
+     * Writes a row of values, one for each column.
+     *
+     * @param row
+     *         The row values. The sink may keep the array, so it must not be
+     *         modified after it is written.
+     */
+    void write(Object[] row) throws IOException;
+
+    /**
+     * Flushes any buffered rows. The underlying stream is left open.
+     */
+    void close() throws IOException;
+}
@@ -1,15 +1,22 @@
 package edu.boisestate.cs.reporting;
 
 import edu.boisestate.cs.BasicTimer;
+import edu.boisestate.cs.ConstantFolding;
 import edu.boisestate.cs.Parser;
+import edu.boisestate.cs.graph.CommonSubexpressions;
+import edu.boisestate.cs.graph.CompiledGraph;
+import edu.boisestate.cs.graph.LastUseIndex;
 import edu.boisestate.cs.graph.PrintConstraint;
-import edu.boisestate.cs.graph.PrintConstraintComparator;
 import edu.boisestate.cs.graph.SymbolicEdge;
 import edu.boisestate.cs.solvers.ExtendedSolver;
 import org.jgrapht.DirectedGraph;
-import org.jgrapht.traverse.TopologicalOrderIterator;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 @SuppressWarnings("Duplicates")
 abstract public class Reporter {
@@ -20,6 +27,15 @@ abstract public class Reporter {
     protected final ExtendedSolver solver;
     protected final Map<Integer, String[]> operationsMap;
     protected final Map<Integer, Long> timerMap;
+    private ReportSink sink;
+    private CompiledGraph compiled;
+    private ConstantFolding folding;
+    private CommonSubexpressions duplicates;
+    private int[] schedule;
+    private long peakLiveStates;
+    private boolean statistics;
+    private Object[][] rows;
+    private int currentVertex;
 
     protected Reporter(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
                        Parser parser,
@@ -34,119 +50,364 @@ abstract public class Reporter {
         timerMap = new HashMap<>();
     }
 
-    public void run() {
+    /**
+     * Sets the sink that receives the report rows. Reports are written as tab
+     * separated text to standard output if no sink is set.
+     *
+     * @param sink
+     *         The report sink.
+     */
+    public void setSink(ReportSink sink) {
+        this.sink = sink;
+    }
 
-        // output header
-        this.outputHeader();
+    /**
+     * Sets the compiled form of the graph, so that reporters run over the
+     * same graph, such as the reporters of a solve server, compile it only
+     * once. The graph is compiled when the reporter is run if
+     * it is not set.
+     *
+     * @param compiled
+     *         The compiled constraint graph.
+     */
+    public void setCompiledGraph(CompiledGraph compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Sets the operations of the compiled graph folded before solving, which
+     * are given their folded results instead of being solved.
+     *
+     * @param folding
+     *         The folded operations of the compiled graph.
+     */
+    public void setConstantFolding(ConstantFolding folding) {
+        this.folding = folding;
+    }
 
-        // initialize sets
-        Set<PrintConstraint> ends = new HashSet<>();
-        Set<PrintConstraint> roots = new HashSet<>();
-        Map<PrintConstraint, Set<PrintConstraint>> unfinishedOutEdges = new HashMap<>();
-        Map<PrintConstraint, Set<PrintConstraint>> unfinishedInEdges = new HashMap<>();
+    /**
+     * Sets the duplicate operations of the compiled graph, which are given a
+     * copy of the result of their representatives instead of being solved.
+     *
+     * @param duplicates
+     *         The duplicate operations of the compiled graph.
+     */
+    public void setCommonSubexpressions(CommonSubexpressions duplicates) {
+        this.duplicates = duplicates;
+    }
 
-        int maxId = 0;
+    /**
+     * Sets the order the vertices of the compiled graph are solved in, such
+     * as a {@link edu.boisestate.cs.graph.LivenessSchedule}. Rows are still
+     * output in topological order. The topological order is used if it is
+     * not set.
+     *
+     * @param schedule
+     *         The vertex indices in the order they are to be solved.
+     */
+    public void setSchedule(int[] schedule) {
+        this.schedule = schedule;
+    }
 
-        // populate root and end sets
-        for (PrintConstraint constraint : graph.vertexSet()) {
+    /**
+     * Sets whether memory statistics of the run, such as the peak number of
+     * live models, are written to standard error once the report is done.
+     *
+     * @param statistics
+     *         True to write the statistics.
+     */
+    public void setStatistics(boolean statistics) {
+        this.statistics = statistics;
+    }
 
-            // if no in paths, node is a root node
-            if (graph.inDegreeOf(constraint) == 0) {
-                roots.add(constraint);
-            }
+    public void run() {
 
-            // if no out paths, node is an end node
-            if (graph.outDegreeOf(constraint) == 0) {
-                ends.add(constraint);
-            }
+        // output header
+        this.openSink();
+
+        // solve graph, flushing the rows of the vertices solved so far even
+        // if solving fails
+        int peakLiveModels = 0;
+        Throwable failure = null;
+        try {
+
+            // compile graph for traversal
+            CompiledGraph compiled = this.compile();
 
-            // update max id if necessary
-            if (constraint.getId() > maxId) {
-                maxId = constraint.getId();
+            // process constraints in schedule order, buffering rows if it is
+            // not the topological order
+            if (schedule == null) {
+                peakLiveModels = solve(compiled, compiled.getTopologicalOrder());
+            } else {
+                Object[][] buffered = new Object[compiled.size()][];
+                rows = buffered;
+                try {
+                    peakLiveModels = solve(compiled, schedule);
+                } finally {
+                    rows = null;
+                    outputRows(compiled, buffered);
+                }
             }
-        }
 
-        // set max id in parser
-        this.parser.setMaxGraphId(maxId);
+            // shut down solver
+            this.shutDown();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
 
-        // create priority queue structure for topological iteration
-        Queue<PrintConstraint> queue =
-                new PriorityQueue<>(1, new PrintConstraintComparator());
+            // flush report rows
+            this.closeSink(failure);
+        }
 
-        // create topological iterator for graph
-        TopologicalOrderIterator<PrintConstraint, SymbolicEdge> iterator =
-                new TopologicalOrderIterator<>(this.graph, queue);
+        // output memory statistics if requested
+        if (statistics) {
+            printMemoryStatistics("",
+                                  peakLiveModels,
+                                  peakLiveStates,
+                                  solver.getPeakOffHeapBytes());
+        }
+    }
 
-        // while processing constraints in topological order
-        while (iterator.hasNext()) {
+    /**
+     * Runs the reporter with each weakly connected component of the graph
+     * solved independently on a fork-join pool. Every component gets its own
+     * reporter, and so its own solver and parser, from the factory, created
+     * when the component is solved and released once it is done. Rows are
+     * buffered and output in the same order as a sequential run.
+     * <p>
+     * Components are solved at the same time as each other, so the memory
+     * statistics written for the run are the sums of the peaks of the
+     * components, an upper bound on the peak of the run.
+     *
+     * @param factory
+     *         Creates a reporter with a fresh solver for each component.
+     * @param threads
+     *         The number of worker threads.
+     */
+    public void runParallel(ReporterFactory factory, int threads) {
 
-            // get constraint
-            PrintConstraint constraint = iterator.next();
-            int constraintId = constraint.getId();
+        // output header
+        this.openSink();
+
+        // solve graph, flushing the rows of the vertices solved so far even
+        // if solving fails
+        long[] peaks;
+        Throwable failure = null;
+        try {
+            peaks = solveComponents(factory, threads);
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+
+            // flush report rows
+            this.closeSink(failure);
+        }
 
-//            System.out.printf("%d: %s\n", constraintId, constraint.getValue());
+        // output bounds of memory statistics if requested
+        if (statistics) {
+            printMemoryStatistics(" (upper bound)",
+                                  (int) peaks[0],
+                                  peaks[1],
+                                  peaks[2]);
+        }
+    }
 
-            // add to unfinished edges
-            Set<PrintConstraint> unfinishedOutSet = new HashSet<>();
-            for (SymbolicEdge e : graph.outgoingEdgesOf(constraint)) {
-                PrintConstraint target = (PrintConstraint) e.getATarget();
+    /**
+     * Solves each component on its own reporter.
+     *
+     * @return The sums of the peak live models, peak live states and peak
+     * off-heap bytes of the components.
+     */
+    private long[] solveComponents(ReporterFactory factory, int threads) {
+
+        // compile graph for traversal
+        final CompiledGraph compiled = this.compile();
+        int[] schedule = this.schedule;
+        if (schedule == null) {
+            schedule = compiled.getTopologicalOrder();
+        }
 
-                unfinishedOutSet.add(target);
+        // split schedule by component, keeping schedule order
+        int[] labels = compiled.findComponents();
+        int componentCount = 0;
+        for (int label : labels) {
+            componentCount = Math.max(componentCount, label + 1);
+        }
+        int[][] componentSchedules = new int[componentCount][];
+        int[] sizes = new int[componentCount];
+        for (int label : labels) {
+            sizes[label]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            componentSchedules[c] = new int[sizes[c]];
+            sizes[c] = 0;
+        }
+        for (int v : schedule) {
+            int c = labels[v];
+            componentSchedules[c][sizes[c]++] = v;
+        }
 
-                Set<PrintConstraint> unfinishedInSet = unfinishedInEdges.get(target);
-                if (unfinishedInSet == null) {
-                    unfinishedInSet = new HashSet<>();
+        // submit largest components first
+        Integer[] components = new Integer[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            components[c] = c;
+        }
+        final int[][] schedules = componentSchedules;
+        Arrays.sort(components, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer c1, Integer c2) {
+                return Integer.compare(schedules[c2].length,
+                                       schedules[c1].length);
+            }
+        });
+
+        // solve each component with a reporter created by its task, keeping
+        // only the peaks of the reporter once it is done
+        final Object[][] rows = new Object[compiled.size()][];
+        final ReporterFactory workerFactory = factory;
+        final ConstantFolding folding = this.folding;
+        final CommonSubexpressions duplicates = this.duplicates;
+        List<Callable<long[]>> tasks = new ArrayList<>(componentCount);
+        for (final int c : components) {
+            tasks.add(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    Reporter worker = workerFactory.createReporter();
+                    worker.rows = rows;
+                    worker.folding = folding;
+                    worker.duplicates = duplicates;
+                    try {
+                        int peakModels = worker.solve(compiled, schedules[c]);
+                        return new long[]{peakModels,
+                                          worker.peakLiveStates,
+                                          worker.solver.getPeakOffHeapBytes()};
+                    } finally {
+                        worker.solver.shutDown();
+                    }
                 }
-                unfinishedInSet.add(constraint);
-                unfinishedInEdges.put(target, unfinishedInSet);
+            });
+        }
+
+        // solve components, summing peaks as upper bounds of the peaks of
+        // the run, where -1 marks a peak a solver does not count
+        int peakLiveModels = 0;
+        long peakLiveStates = 0;
+        long peakOffHeapBytes = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<long[]> result : pool.invokeAll(tasks)) {
+                long[] peaks = result.get();
+                peakLiveModels += (int) peaks[0];
+                peakLiveStates = sumPeaks(peakLiveStates, peaks[1]);
+                peakOffHeapBytes = sumPeaks(peakOffHeapBytes, peaks[2]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            unfinishedOutEdges.put(constraint, unfinishedOutSet);
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
 
-            // initialize constraint source map
-            Map<String, Integer> sourceMap = new HashMap<>();
+            // output rows in topological order, as in a sequential run
+            outputRows(compiled, rows);
+        }
 
-            // declare target id
-            int targetId = 0;
+        // shut down solver
+        this.shutDown();
 
-            // for each incoming edge of the constraint
-            for (SymbolicEdge edge : graph.incomingEdgesOf(constraint)) {
+        return new long[]{peakLiveModels, peakLiveStates, peakOffHeapBytes};
+    }
 
-                // get the source constraint
-                PrintConstraint source =
-                        (PrintConstraint) edge.getASource();
+    /**
+     * Shuts down the solver and anything else the reporter owns once the
+     * report is done.
+     */
+    protected void shutDown() {
+        solver.shutDown();
+    }
 
-                // add the edge type and source id to the source map
-                sourceMap.put(edge.getType(), source.getId());
+    private static long sumPeaks(long sum, long peak) {
+        return sum < 0 || peak < 0 ? -1 : sum + peak;
+    }
 
-                // if source is target, set id
-                if (edge.getType().equals("t")) {
-                    targetId = source.getId();
-                }
-            }
+    private static void printMemoryStatistics(String qualifier,
+                                              int peakLiveModels,
+                                              long peakLiveStates,
+                                              long peakOffHeapBytes) {
+        System.err.printf("Peak live models%s: %d\n",
+                          qualifier,
+                          peakLiveModels);
+        if (peakLiveStates >= 0) {
+            System.err.printf("Peak live states%s: %d\n",
+                              qualifier,
+                              peakLiveStates);
+        }
+        if (peakOffHeapBytes >= 0) {
+            System.err.printf("Peak off-heap bytes%s: %d\n",
+                              qualifier,
+                              peakOffHeapBytes);
+        }
+    }
 
-            // set the constraint source map
-            constraint.setSourceMap(sourceMap);
+    /**
+     * Processes the constraints of a schedule, calculating stats for each
+     * predicate and releasing symbolic values after their last use. The peak
+     * number of live automaton states is recorded, or -1 if the solver does
+     * not count them.
+     *
+     * @param compiled
+     *         The compiled graph.
+     * @param schedule
+     *         The vertices to process in topological order, or in an order
+     *         that keeps the results of the topological order.
+     *
+     * @return The peak number of live symbolic values.
+     */
+    private int solve(CompiledGraph compiled, int[] schedule) {
 
-            // if constraint is an end node
-            if (ends.contains(constraint)) {
+        // set max id in parser
+        this.parser.setMaxGraphId(compiled.getMaxId());
+
+        // compute when each symbolic value can be released
+        LastUseIndex lastUse = LastUseIndex.compute(compiled, schedule, duplicates);
+        String[] operations = duplicates == null ? null : new String[compiled.size()];
+        int releasedTempId = compiled.getMaxId();
+        int peakLiveModels = 0;
+        peakLiveStates = 0;
+
+        // while processing constraints in topological order
+        for (int position = 0; position < schedule.length; position++) {
+
+            // get constraint
+            int v = schedule[position];
+            PrintConstraint constraint = compiled.getConstraint(v);
+            int constraintId = constraint.getId();
+            this.currentVertex = v;
+
+            // get target id
+            int targetId = 0;
+            if (compiled.getTarget(v) >= 0) {
+                targetId = compiled.getId(compiled.getTarget(v));
+            }
 
-//                System.out.printf("%d: Predicate\n", constraint.getId());
+            // if constraint is an end node
+            if (compiled.isEnd(v)) {
 
                 // add end
                 boolean isBoolFunc = parser.addEnd(constraint);
 
                 if (isBoolFunc) {
-//                    System.out.printf("%d: Predicate Calculating Stats\n", constraint.getId());
-
                     this.calculateStats(constraint);
                 }
-
-                finishEdges(unfinishedInEdges, unfinishedOutEdges, constraint);
             }
             // if constraint is root node
-            else if (roots.contains(constraint)) {
-
-//                System.out.printf("%d: Root\n", constraint.getId());
+            else if (compiled.isRoot(v)) {
 
                 // add root
                 String init = parser.addRoot(constraint);
@@ -160,16 +421,28 @@ abstract public class Reporter {
 
                 // add operation time to map
                 timerMap.put(constraintId, lastTime);
-
-                finishEdges(unfinishedInEdges, unfinishedOutEdges, constraint);
             }
             // constraint is op node
             else {
 
-//                System.out.printf("%d: Operation\n", constraint.getId());
-
-                // add operation
-                String operation = parser.addOperation(constraint);
+                // add operation, using its result if folded or a copy of
+                // the result of its representative if a duplicate
+                String operation;
+                if (folding != null && folding.isFolded(v)) {
+                    operation = parser.addFoldedOperation(constraint,
+                                                          folding.getValue(v),
+                                                          folding.getOperation(v));
+                } else if (duplicates != null && duplicates.isDuplicate(v)) {
+                    int representative = duplicates.getRepresentative(v);
+                    operation = parser.addDuplicateOperation(constraint,
+                                                             compiled.getId(representative),
+                                                             operations[representative]);
+                } else {
+                    operation = parser.addOperation(constraint);
+                }
+                if (operations != null) {
+                    operations[v] = operation;
+                }
 
                 // get previous operations
                 String[] prevOps = this.operationsMap.get(targetId);
@@ -193,35 +466,110 @@ abstract public class Reporter {
                 // add operation time to map
                 long currTime = lastTime + prevTime;
                 timerMap.put(constraintId, currTime);
+            }
+
+            // record number of live symbolic values
+            int liveModels = solver.getSymbolicStringCount();
+            if (liveModels > peakLiveModels) {
+                peakLiveModels = liveModels;
+            }
+
+            // record number of live automaton states, if counted
+            long liveStates = solver.getSymbolicStateCount();
+            if (liveStates < 0) {
+                peakLiveStates = -1;
+            } else if (peakLiveStates >= 0 && liveStates > peakLiveStates) {
+                peakLiveStates = liveStates;
+            }
 
-                finishEdges(unfinishedInEdges, unfinishedOutEdges, constraint);
+            // release values whose last consumer was this constraint
+            for (int i = lastUse.releaseBegin(position);
+                 i < lastUse.releaseEnd(position);
+                 i++) {
+                solver.remove(compiled.getId(lastUse.releasedVertex(i)));
             }
+
+            // release temporary values created by the parser
+            while (releasedTempId < parser.getMaxGraphId()) {
+                releasedTempId++;
+                solver.remove(releasedTempId);
+            }
+            solver.finishVertex();
         }
 
-        // shut down solver
-        solver.shutDown();
+        return peakLiveModels;
     }
 
-    private void finishEdges(Map<PrintConstraint, Set<PrintConstraint>> inEdges,
-                             Map<PrintConstraint, Set<PrintConstraint>> outEdges,
-                             PrintConstraint vertex) {
-        Set<PrintConstraint> parents = inEdges.get(vertex);
-        inEdges.remove(vertex);
-        if (parents != null) {
-            for (PrintConstraint parent : parents) {
-                Set<PrintConstraint> siblings = outEdges.get(parent);
-                if (siblings == null) {
-                    return;
-                }
-                siblings.remove(vertex);
-                if (siblings.isEmpty()) {
-                    siblings.remove(parent);
-                    solver.remove(parent.getId());
+    private CompiledGraph compile() {
+        if (compiled == null) {
+            compiled = CompiledGraph.compile(this.graph);
+        }
+        return compiled;
+    }
+
+    private void openSink() {
+        if (sink == null) {
+            sink = new TextReportSink(System.out);
+        }
+        try {
+            sink.open(this.getColumns());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Closes the sink. A failure to close it is added to a failure of the
+     * run, if there is one, rather than hiding it.
+     *
+     * @param failure
+     *         The failure of the run, or null if it succeeded.
+     */
+    private void closeSink(Throwable failure) {
+        try {
+            sink.close();
+        } catch (IOException | RuntimeException e) {
+
+            // a failed write already reported the failure of the sink
+            if (failure == null) {
+                if (e instanceof RuntimeException) {
+                    throw (RuntimeException) e;
                 }
+                throw new IllegalStateException(e);
+            }
+            if (e != failure && e != failure.getCause()) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private void outputRows(CompiledGraph compiled, Object[][] buffered) {
+        for (int v : compiled.getTopologicalOrder()) {
+            if (buffered[v] != null) {
+                this.outputRow(buffered[v]);
             }
         }
     }
 
+    /**
+     * Outputs a row of the report, or buffers it for the current vertex when
+     * solving in parallel.
+     *
+     * @param row
+     *         The row values, one for each column.
+     */
+    protected void outputRow(Object[] row) {
+        if (rows != null) {
+            rows[currentVertex] = row;
+            return;
+        }
+        try {
+            sink.write(row);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     protected String joinStrings(Iterable<String> strings, String separator) {
         StringBuilder head = new StringBuilder();
         Iterator<String> iter = strings.iterator();
@@ -269,7 +617,7 @@ abstract public class Reporter {
                                       const_id,
                                       base,
                                       constName,
-                                      Parser.actualVals.get(arg),
+                                      parser.getActualValue(arg),
                                       accTime);
             } else {
                 newBaseOps[newBaseOps.length - 1] =
@@ -298,7 +646,10 @@ abstract public class Reporter {
         }
     }
 
-    protected abstract void outputHeader();
+    /**
+     * @return The columns of the rows output by the reporter.
+     */
+    protected abstract ReportColumn[] getColumns();
 
     protected abstract void calculateStats(PrintConstraint constraint);
 }
@@ -0,0 +1,14 @@
+package edu.boisestate.cs.reporting;
+
+/**
+ * Creates reporters, each with its own solver and parser, for solving parts
+ * of a graph independently. Reporters are created on the worker threads
+ * that use them, so the factory must be safe to call concurrently.
+ */
+public interface ReporterFactory {
+
+    /**
+     * @return A new reporter for the graph with a fresh solver and parser.
+     */
+    Reporter createReporter();
+}
@@ -6,13 +6,20 @@ import edu.boisestate.cs.graph.SymbolicEdge;
 import edu.boisestate.cs.solvers.ExtendedSolver;
 import org.jgrapht.DirectedGraph;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.Map;
 
 public class SATReporter extends Reporter {
 
+    private static final ReportColumn[] COLUMNS = new ReportColumn[] {
+            new ReportColumn("ID", ReportColumn.Type.INT),
+            new ReportColumn("SING", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("TSAT", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("FSAT", ReportColumn.Type.BOOLEAN),
+            new ReportColumn("DISJOINT", ReportColumn.Type.STRING),
+            new ReportColumn("PREV OPS", ReportColumn.Type.STRING)
+    };
+
     public SATReporter(DirectedGraph<PrintConstraint, SymbolicEdge> graph,
                        Parser parser,
                        ExtendedSolver solver,
@@ -22,25 +29,10 @@ public class SATReporter extends Reporter {
     }
 
     @Override
-    protected void outputHeader() {
-
-        // gather headers in list
-        List<String> headers = new ArrayList<>();
-        headers.add("ID");
-        headers.add("SING");
-        headers.add("TSAT");
-        headers.add("FSAT");
-        headers.add("DISJOINT");
-        headers.add("PREV OPS");
-
-        // generate headers string
-        String header = joinStrings(headers, "\t");
-
-        // output header
-        System.out.println(header);
+    protected ReportColumn[] getColumns() {
+        return COLUMNS;
     }
 
-
     protected void calculateStats(PrintConstraint constraint) {
 
         // get constraint info as variables
@@ -125,7 +117,7 @@ public class SATReporter extends Reporter {
         solver.revertLastPredicate();
 
         // get constraint function name
-        String constName = constraint.getSplitValue().split("!!")[0];
+        String constName = constraint.getFunctionName();
 
         // add boolean operation to operation list
         addBooleanOperation(base, arg, constName, constraint.getId(), argIsSingleton);
@@ -134,26 +126,18 @@ public class SATReporter extends Reporter {
         String[] opsArray = this.operationsMap.get(base);
         String ops = joinStrings(Arrays.asList(opsArray), " -> ");
 
-        // gather column data in list
-        List<String> columns = new ArrayList<>();
-        // id
-        columns.add(String.valueOf(constraint.getId()));
-        // is singleton?
-        columns.add(String.valueOf(isSingleton));
-        // true sat?
-        columns.add(String.valueOf(trueSat));
-        // false sat?
-        columns.add(String.valueOf(falseSat));
-        // disjoint?
-        columns.add(String.valueOf(disjoint));
-        // previous operations
-        columns.add(ops);
-
-        // generate row string
-        String row = joinStrings(columns, "\t");
+        // gather column data in row
+        Object[] row = new Object[] {
+                constraint.getId(),
+                isSingleton,
+                trueSat,
+                falseSat,
+                disjoint,
+                ops
+        };
 
         // output row
-        System.out.println(row);
+        outputRow(row);
 
     }
 }
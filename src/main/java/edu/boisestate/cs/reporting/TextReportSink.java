@@ -0,0 +1,47 @@
+package edu.boisestate.cs.reporting;
+
+import java.io.*;
+
+/**
+ * Writes a report as buffered tab separated text, the format output by the
+ * reporters before sinks were introduced.
+ */
+public class TextReportSink implements ReportSink {
+
+    private final Writer writer;
+    private ReportColumn[] columns;
+
+    public TextReportSink(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16);
+    }
+
+    @Override
+    public void open(ReportColumn[] columns) throws IOException {
+        this.columns = columns;
+
+        // output header
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writer.write(columns[i].getName());
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writer.write(columns[i].formatText(row[i]));
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
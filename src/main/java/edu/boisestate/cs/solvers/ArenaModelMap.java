@@ -0,0 +1,189 @@
+package edu.boisestate.cs.solvers;
+
+import edu.boisestate.cs.Alphabet;
+import edu.boisestate.cs.automatonModel.AutomatonModel;
+import edu.boisestate.cs.automatonModel.ModelCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A map of symbolic string ids to models that keeps each model encoded in a
+ * {@link ModelArena} instead of on the heap, so only the models of the vertex
+ * being solved are live on the heap. Models put for the vertex are kept as
+ * they are and encoded by {@link #finishVertex()} once the vertex is solved,
+ * so a model replaced while solving the vertex, such as by a predicate that
+ * is reverted, is never encoded. Models read for the vertex are decoded into
+ * new models once and kept until then. Removing an id releases its block.
+ * <p>
+ * Unlike other maps, replacing or removing a model returns null instead of
+ * the previous model, which would have to be decoded to be returned.
+ */
+class ArenaModelMap extends AbstractMap<Integer, AutomatonModel> {
+
+    private final ModelArena arena;
+    private final Alphabet alphabet;
+
+    // blocks and state counts by id, a null block for a null model or a
+    // model not yet encoded
+    private final Map<Integer, ByteBuffer> blocks;
+    private final Map<Integer, Integer> stateCounts;
+    private long stateCount;
+
+    // models of the vertex being solved by id, and those put for the vertex
+    private final Map<Integer, AutomatonModel> decoded;
+    private final Map<Integer, AutomatonModel> pending;
+
+    ArenaModelMap(ModelArena arena, Alphabet alphabet) {
+        this.arena = arena;
+        this.alphabet = alphabet;
+        this.blocks = new HashMap<>();
+        this.stateCounts = new HashMap<>();
+        this.decoded = new HashMap<>();
+        this.pending = new HashMap<>();
+    }
+
+    /**
+     * @return The total number of automaton states of the stored models.
+     */
+    long getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * Encodes the models put for the vertex being solved and drops the models
+     * kept for it, once it is solved. Later reads decode their models again.
+     */
+    void finishVertex() {
+        for (Entry<Integer, AutomatonModel> entry : pending.entrySet()) {
+            blocks.put(entry.getKey(),
+                       arena.store(ModelCodec.encode(entry.getValue())));
+        }
+        pending.clear();
+        decoded.clear();
+    }
+
+    @Override
+    public AutomatonModel get(Object key) {
+
+        // decode model unless already read or put for this vertex
+        AutomatonModel model = decoded.get(key);
+        if (model == null) {
+            ByteBuffer block = blocks.get(key);
+            if (block != null) {
+                model = decode(block);
+                decoded.put((Integer) key, model);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Stores a model, releasing the block of the model it replaces. The model
+     * is encoded once the vertex is solved.
+     *
+     * @return Null, the replaced model is not decoded.
+     */
+    @Override
+    public AutomatonModel put(Integer key, AutomatonModel model) {
+        remove(key);
+        int states = 0;
+        if (model != null) {
+            decoded.put(key, model);
+            pending.put(key, model);
+            states = model.getStateCount();
+        }
+        blocks.put(key, null);
+        stateCounts.put(key, states);
+        stateCount += states;
+        return null;
+    }
+
+    /**
+     * Removes a model, releasing its block.
+     *
+     * @return Null, the removed model is not decoded.
+     */
+    @Override
+    public AutomatonModel remove(Object key) {
+        decoded.remove(key);
+        pending.remove(key);
+        if (!blocks.containsKey(key)) {
+            return null;
+        }
+        ByteBuffer block = blocks.remove(key);
+        if (block != null) {
+            arena.release(block);
+        }
+        stateCount -= stateCounts.remove(key);
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return blocks.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    @Override
+    public void clear() {
+        for (Integer key : new ArrayList<>(blocks.keySet())) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, AutomatonModel>> entrySet() {
+
+        // decode each model as it is iterated, without keeping it
+        return new AbstractSet<Entry<Integer, AutomatonModel>>() {
+            @Override
+            public Iterator<Entry<Integer, AutomatonModel>> iterator() {
+                final Iterator<Entry<Integer, ByteBuffer>> iter =
+                        blocks.entrySet().iterator();
+                return new Iterator<Entry<Integer, AutomatonModel>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Integer, AutomatonModel> next() {
+                        Entry<Integer, ByteBuffer> entry = iter.next();
+                        AutomatonModel model = decoded.get(entry.getKey());
+                        if (model == null && entry.getValue() != null) {
+                            model = decode(entry.getValue());
+                        }
+                        return new SimpleImmutableEntry<>(entry.getKey(),
+                                                          model);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return blocks.size();
+            }
+        };
+    }
+
+    private AutomatonModel decode(ByteBuffer block) {
+        try {
+            return ModelCodec.decode(arena.read(block), alphabet);
+        } catch (IOException e) {
+
+            // blocks hold models encoded by this map
+            throw new IllegalStateException(e);
+        }
+    }
+}
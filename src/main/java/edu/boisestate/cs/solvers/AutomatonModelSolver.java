@@ -4,19 +4,33 @@ import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.BasicTimer;
 import edu.boisestate.cs.automatonModel.AutomatonModel;
 import edu.boisestate.cs.automatonModel.AutomatonModelManager;
+import edu.boisestate.cs.automatonModel.ModelCodec;
 import edu.boisestate.cs.util.DotToGraph;
 import edu.boisestate.cs.util.Tuple;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class AutomatonModelSolver
         extends ExtendedSolver<AutomatonModel> {
 
     protected final AutomatonModelManager modelManager;
+    private ModelCache modelCache;
+    private String modelCacheKey;
+    private int countVertex = -1;
+    private int countStep;
+    private ModelArena modelArena;
 
     public AutomatonModelSolver(AutomatonModelManager modelManager) {
         super();
 
         // initialize factory from parameter
         this.modelManager = modelManager;
+
+        // count states as models are stored
+        this.symbolicStringMap = new CountingModelMap();
     }
 
     public AutomatonModelSolver(AutomatonModelManager modelManager,
@@ -25,6 +39,235 @@ public class AutomatonModelSolver
 
         // initialize factory from parameter
         this.modelManager = modelManager;
+
+        // count states as models are stored
+        this.symbolicStringMap = new CountingModelMap();
+    }
+
+    /**
+     * Sets an on-disk cache of operation results shared between runs.
+     *
+     * @param modelCache
+     *         The cache.
+     * @param runKey
+     *         A key for everything the results of a run depend on, such as
+     *         the graph, model version, bound and alphabet. The result of
+     *         each vertex is stored under this key and the vertex id, the
+     *         counts of a vertex under this key, the vertex id and the
+     *         count step.
+     */
+    public void setModelCache(ModelCache modelCache, String runKey) {
+        this.modelCache = modelCache;
+        this.modelCacheKey = runKey;
+    }
+
+    /**
+     * Keeps the stored models encoded in an off-heap arena, encoding the
+     * models of a vertex once it is solved and decoding a model when it is
+     * first read for a vertex. The memory of a model is released when it is
+     * replaced or removed.
+     *
+     * @param modelArena
+     *         The arena, owned by this solver.
+     */
+    public void setModelArena(ModelArena modelArena) {
+        ArenaModelMap arenaMap =
+                new ArenaModelMap(modelArena, modelManager.getAlphabet());
+        arenaMap.putAll(symbolicStringMap);
+        arenaMap.finishVertex();
+        this.symbolicStringMap = arenaMap;
+        this.modelArena = modelArena;
+    }
+
+    @Override
+    public long getPeakOffHeapBytes() {
+        return modelArena == null ? -1 : modelArena.getPeakUsedBytes();
+    }
+
+    @Override
+    public long getSymbolicStateCount() {
+
+        // both maps count states under each id as models are stored
+        if (symbolicStringMap instanceof ArenaModelMap) {
+            return ((ArenaModelMap) symbolicStringMap).getStateCount();
+        }
+        if (symbolicStringMap instanceof CountingModelMap) {
+            return ((CountingModelMap) symbolicStringMap).getStateCount();
+        }
+
+        // count states of the plain maps of branches
+        long total = 0;
+        for (AutomatonModel model : symbolicStringMap.values()) {
+            if (model != null) {
+                total += model.getStateCount();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void finishVertex() {
+
+        // move models of the vertex off the heap
+        if (symbolicStringMap instanceof ArenaModelMap) {
+            ((ArenaModelMap) symbolicStringMap).finishVertex();
+        }
+    }
+
+    @Override
+    public String restoreResult(int id) {
+        if (modelCache == null) {
+            return null;
+        }
+        ByteBuffer entry = null;
+        try {
+            entry = modelCache.get(ModelCache.subkey(modelCacheKey, id));
+            if (entry == null) {
+                return null;
+            }
+
+            // read operation description followed by result model
+            byte[] operation = new byte[entry.getInt()];
+            entry.get(operation);
+            AutomatonModel model =
+                    ModelCodec.decode(entry, modelManager.getAlphabet());
+            this.symbolicStringMap.put(id, model);
+            return new String(operation, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Model cache entry not read: " + e.getMessage());
+            return null;
+        } finally {
+            if (entry != null) {
+                modelCache.release(entry);
+            }
+        }
+    }
+
+    @Override
+    public void storeResult(int id, String operation) {
+        AutomatonModel model = this.symbolicStringMap.get(id);
+        if (modelCache == null || model == null || operation == null) {
+            return;
+        }
+
+        // write operation description followed by result model
+        byte[] description = operation.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = ModelCodec.encode(model);
+        ByteBuffer entry = ByteBuffer.allocate(4 +
+                                               description.length +
+                                               encoded.remaining());
+        entry.putInt(description.length);
+        entry.put(description);
+        entry.put(encoded);
+        entry.flip();
+        try {
+            modelCache.put(ModelCache.subkey(modelCacheKey, id), entry);
+        } catch (IOException e) {
+            System.err.println("Model cache entry not written: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void setCountStep(int vertex, int step) {
+        this.countVertex = vertex;
+        this.countStep = step;
+    }
+
+    /**
+     * Keys the next count in the model cache by the vertex and step set with
+     * {@link #setCountStep(int, int)}, which are cleared so they only name
+     * one count.
+     *
+     * @param id
+     *         The counted symbolic string.
+     * @param kind
+     *         What is counted, so different counts of a step are kept apart.
+     *
+     * @return The key, or null if there is no model cache or no step is set.
+     */
+    protected String takeCountKey(int id, String kind) {
+        int vertex = countVertex;
+        countVertex = -1;
+        if (modelCache == null || vertex < 0) {
+            return null;
+        }
+        return ModelCache.subkey(modelCacheKey,
+                                 "count",
+                                 vertex,
+                                 countStep,
+                                 id,
+                                 kind);
+    }
+
+    /**
+     * Reads counts stored by an earlier run.
+     *
+     * @param key
+     *         The key from {@link #takeCountKey(int, String)}, or null.
+     *
+     * @return The counts, or null if none are stored.
+     */
+    protected BigInteger[] restoreCounts(String key) {
+        if (key == null) {
+            return null;
+        }
+        ByteBuffer entry = null;
+        try {
+            entry = modelCache.get(key);
+            if (entry == null) {
+                return null;
+            }
+
+            // read number of counts followed by each count
+            BigInteger[] counts = new BigInteger[entry.getInt()];
+            for (int i = 0; i < counts.length; i++) {
+                byte[] count = new byte[entry.getInt()];
+                entry.get(count);
+                counts[i] = new BigInteger(count);
+            }
+            return counts;
+        } catch (IOException e) {
+            System.err.println("Model cache entry not read: " + e.getMessage());
+            return null;
+        } finally {
+            if (entry != null) {
+                modelCache.release(entry);
+            }
+        }
+    }
+
+    /**
+     * Stores counts for later runs.
+     *
+     * @param key
+     *         The key from {@link #takeCountKey(int, String)}, or null.
+     * @param counts
+     *         The counts.
+     */
+    protected void storeCounts(String key, BigInteger[] counts) {
+        if (key == null) {
+            return;
+        }
+
+        // write number of counts followed by each count
+        byte[][] bytes = new byte[counts.length][];
+        int size = 4;
+        for (int i = 0; i < counts.length; i++) {
+            bytes[i] = counts[i].toByteArray();
+            size += 4 + bytes[i].length;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(size);
+        entry.putInt(counts.length);
+        for (byte[] count : bytes) {
+            entry.putInt(count.length);
+            entry.put(count);
+        }
+        entry.flip();
+        try {
+            modelCache.put(key, entry);
+        } catch (IOException e) {
+            System.err.println("Model cache entry not written: " + e.getMessage());
+        }
     }
 
     @Override
@@ -470,6 +713,13 @@ public class AutomatonModelSolver
         this.symbolicStringMap.put(id, model);
     }
 
+    @Override
+    protected AutomatonModel copyValue(AutomatonModel value) {
+
+        // models may be normalized in place by predicates
+        return value == null ? null : value.clone();
+    }
+
     @Override
     public void propagateSymbolicString(int id, int base) {
         // get model
@@ -654,7 +904,11 @@ public class AutomatonModelSolver
 
     @Override
     public void shutDown() {
-        // nothing needed
+
+        // release off-heap models
+        if (modelArena != null) {
+            symbolicStringMap.clear();
+        }
     }
 
     @Override
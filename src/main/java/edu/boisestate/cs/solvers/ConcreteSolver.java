@@ -2,9 +2,12 @@ package edu.boisestate.cs.solvers;
 
 import edu.boisestate.cs.Alphabet;
 import edu.boisestate.cs.BasicTimer;
+import edu.boisestate.cs.StringSpace;
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
 
+import java.math.BigInteger;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -35,10 +38,23 @@ public class ConcreteSolver
     public static boolean DEBUG = true;
     private final Alphabet alphabet;
 
+    //when set, concatenations keep their operands
+    //instead of building the cross product of strings
+    private final boolean lazyConcat;
+
     public ConcreteSolver(Alphabet alphabet, int setBound) {
+        this(alphabet, setBound, false);
+    }
+
+    public ConcreteSolver(Alphabet alphabet, int setBound, boolean lazyConcat) {
         super(setBound);
 
         this.alphabet = alphabet;
+        this.lazyConcat = lazyConcat;
+    }
+
+    private ConcreteValues concat(ConcreteValues base, ConcreteValues arg) {
+        return lazyConcat ? base.lazyConcat(arg) : base.concat(arg);
     }
 
     @Override
@@ -54,7 +70,7 @@ public class ConcreteSolver
         ConcreteValues substr = argValues.substring(start, end);
 
         // perform concatenation, equivalent to append
-        ConcreteValues results = baseValues.concat(substr);
+        ConcreteValues results = concat(baseValues, substr);
 
         // start timer
         BasicTimer.stop();
@@ -73,7 +89,7 @@ public class ConcreteSolver
         BasicTimer.start();
 
         // perform concatenation, equivalent to append
-        ConcreteValues results = baseValues.concat(argValues);
+        ConcreteValues results = concat(baseValues, argValues);
 
         // start timer
         BasicTimer.stop();
@@ -319,6 +335,27 @@ public class ConcreteSolver
         return values.modelCount();
     }
 
+    @Override
+    public CountEstimate estimateModelCount(int id, CountPrecision precision) {
+        // concrete values are always counted exactly
+        return CountEstimate.exact(BigInteger.valueOf(getModelCount(id)));
+    }
+
+    @Override
+    public CountEstimate[] estimateModelCountByLength(int id,
+                                                      CountPrecision precision) {
+        // get values
+        ConcreteValues values = this.symbolicStringMap.get(id);
+
+        // concrete values are always counted exactly
+        long[] counts = values.modelCountByLength();
+        CountEstimate[] estimates = new CountEstimate[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            estimates[i] = CountEstimate.exact(BigInteger.valueOf(counts[i]));
+        }
+        return estimates;
+    }
+
     @Override
     public String getSatisfiableResult(int id) {
         // get values
@@ -412,7 +449,7 @@ public class ConcreteSolver
         ConcreteValues values = symbolicStringMap.get(id);
 
         // satisfiable if string values list is not null and not empty
-        return values != null && !values.getValues().isEmpty();
+        return values != null && !values.isEmpty();
     }
 
     @Override
@@ -467,8 +504,8 @@ public class ConcreteSolver
         // start timer
         BasicTimer.start();
 
-        // get list of all possible strings from alphabet
-        List<String> strings = this.alphabet.allStrings(0, this.initialBound);
+        // get space of all possible strings from alphabet
+        StringSpace strings = this.alphabet.stringSpace(0, this.initialBound);
 
         // create new concrete values from strings
         ConcreteValues newValues = new ConcreteValues(this.alphabet,
@@ -0,0 +1,501 @@
+package edu.boisestate.cs.solvers;
+
+import java.util.*;
+
+/**
+ * An immutable set of strings with a count for each string, stored as a trie
+ * so that strings share their common prefixes. Nodes are numbered in
+ * breadth first order with the children of a node stored next to each other
+ * in sorted order, so each node needs only its label, the offset of its
+ * children and its count. Counts are stored as ints unless a count needs a
+ * long. Strings are visited in the same order as the sorted map this
+ * replaces.
+ */
+class ConcreteTrie {
+
+    private static final ConcreteTrie EMPTY = new Builder().build();
+
+    private final char[] labels;
+    private final int[] childOffsets;
+    private final int[] intCounts;
+    private final long[] counts;
+    private final BitSet terminals;
+    private final int size;
+    private final int maxLength;
+
+    private ConcreteTrie(char[] labels,
+                         int[] childOffsets,
+                         int[] intCounts,
+                         long[] counts,
+                         BitSet terminals,
+                         int size,
+                         int maxLength) {
+        this.labels = labels;
+        this.childOffsets = childOffsets;
+        this.intCounts = intCounts;
+        this.counts = counts;
+        this.terminals = terminals;
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    static ConcreteTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return The number of strings in the set.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(String string) {
+        int node = find(string);
+        return node >= 0 && terminals.get(node);
+    }
+
+    /**
+     * @return The count of the string, or 0 if the string is not in the set.
+     */
+    long getCount(String string) {
+        int node = find(string);
+        return node >= 0 && terminals.get(node) ? count(node) : 0;
+    }
+
+    private long count(int node) {
+        return intCounts != null ? intCounts[node] : counts[node];
+    }
+
+    /**
+     * @return The sum of the counts of all strings.
+     */
+    long totalCount() {
+        long total = 0;
+        for (int node = terminals.nextSetBit(0);
+             node >= 0;
+             node = terminals.nextSetBit(node + 1)) {
+            total += count(node);
+        }
+        return total;
+    }
+
+    /**
+     * @return A cursor over the strings in sorted order.
+     */
+    Cursor cursor() {
+        return new Cursor(childOffsets[0], childOffsets[1], true);
+    }
+
+    /**
+     * Splits the strings into parts that can be walked independently. Each
+     * part covers a contiguous run of about the same number of strings in
+     * sorted order, found by descending from the root by the number of
+     * strings below each node. Parts may start deep inside a subtree, so they
+     * are balanced however the strings are spread over the subtrees of the
+     * root.
+     *
+     * @param parts
+     *         The number of parts wanted.
+     *
+     * @return Cursors over the parts, fewer than requested if there are too
+     * few strings.
+     */
+    List<Cursor> split(int parts) {
+
+        // count strings below each node, children follow parents
+        int nodeCount = labels.length;
+        int[] below = new int[nodeCount];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            below[node] = terminals.get(node) ? 1 : 0;
+            for (int c = childOffsets[node]; c < childOffsets[node + 1]; c++) {
+                below[node] += below[c];
+            }
+        }
+
+        // cut strings into runs of about equal size by rank
+        List<Cursor> cursors = new ArrayList<>(parts);
+        int from = 0;
+        for (int part = 1; part <= parts && from < size; part++) {
+            int to = (int) ((long) size * part / parts);
+            if (to > from) {
+                cursors.add(new Cursor(below, from, to - from));
+                from = to;
+            }
+        }
+        if (cursors.isEmpty()) {
+            cursors.add(cursor());
+        }
+        return cursors;
+    }
+
+    /**
+     * @return A read only view of the strings in sorted order.
+     */
+    Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Cursor cursor = cursor();
+                return new Iterator<String>() {
+                    private boolean ready = cursor.next();
+
+                    @Override
+                    public boolean hasNext() {
+                        return ready;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!ready) {
+                            throw new NoSuchElementException();
+                        }
+                        String string = cursor.getString();
+                        ready = cursor.next();
+                        return string;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String &&
+                       ConcreteTrie.this.contains((String) o);
+            }
+        };
+    }
+
+    private int find(String string) {
+        int node = 0;
+        for (int i = 0; i < string.length(); i++) {
+            int child = Arrays.binarySearch(labels,
+                                            childOffsets[node],
+                                            childOffsets[node + 1],
+                                            string.charAt(i));
+            if (child < 0) {
+                return -1;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Walks the strings of a trie in sorted order, a depth first traversal
+     * that builds each string as its terminal node is reached.
+     */
+    class Cursor {
+
+        private final int[] nodes;
+        private final int[] nextChild;
+        private final boolean[] visited;
+        private final char[] path;
+        private final int rootEnd;
+        private int depth;
+        private String string;
+        private long count;
+        private long remaining;
+
+        private Cursor(int rootFrom, int rootEnd, boolean includeRoot) {
+            nodes = new int[maxLength + 1];
+            nextChild = new int[maxLength + 1];
+            visited = new boolean[maxLength + 1];
+            path = new char[maxLength];
+            nextChild[0] = rootFrom;
+            visited[0] = !includeRoot;
+            this.rootEnd = rootEnd;
+            this.remaining = Long.MAX_VALUE;
+        }
+
+        // a cursor over the strings from the given rank in sorted order
+        private Cursor(int[] below, int rank, int length) {
+            this(childOffsets[0], childOffsets[1], true);
+            this.remaining = length;
+
+            // descend to the string of the rank, skipping the strings of
+            // earlier nodes and the subtrees of earlier children
+            int skip = rank;
+            while (true) {
+                int node = nodes[depth];
+                if (terminals.get(node)) {
+                    if (skip == 0) {
+                        return;
+                    }
+                    skip--;
+                }
+                visited[depth] = true;
+                int child = nextChild[depth];
+                while (below[child] <= skip) {
+                    skip -= below[child];
+                    child++;
+                }
+                nextChild[depth] = child + 1;
+                path[depth] = labels[child];
+                depth++;
+                nodes[depth] = child;
+                nextChild[depth] = childOffsets[child];
+                visited[depth] = false;
+            }
+        }
+
+        /**
+         * Moves to the next string.
+         *
+         * @return False if there are no more strings.
+         */
+        boolean next() {
+            if (remaining == 0) {
+                string = null;
+                return false;
+            }
+            while (depth >= 0) {
+                int node = nodes[depth];
+
+                // visit node before its children
+                if (!visited[depth]) {
+                    visited[depth] = true;
+                    if (terminals.get(node)) {
+                        string = new String(path, 0, depth);
+                        count = count(node);
+                        remaining--;
+                        return true;
+                    }
+                }
+
+                // descend to next child or return to parent
+                int child = nextChild[depth];
+                int childEnd = depth == 0 ? rootEnd : childOffsets[node + 1];
+                if (child < childEnd) {
+                    nextChild[depth]++;
+                    path[depth] = labels[child];
+                    depth++;
+                    nodes[depth] = child;
+                    nextChild[depth] = childOffsets[child];
+                    visited[depth] = false;
+                } else {
+                    depth--;
+                }
+            }
+            string = null;
+            return false;
+        }
+
+        String getString() {
+            return string;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Collects strings and counts in any order before building a trie. Child
+     * nodes are found through an open addressing table keyed by parent node
+     * and label, so insertion does not scan the children of a node.
+     */
+    static class Builder {
+
+        private char[] labels;
+        private int[] firstChild;
+        private int[] nextSibling;
+        private long[] counts;
+        private final BitSet terminals;
+        private int nodeCount;
+        private int size;
+        private int maxLength;
+        private long[] tableKeys;
+        private int[] tableNodes;
+
+        Builder() {
+            labels = new char[16];
+            firstChild = new int[16];
+            nextSibling = new int[16];
+            counts = new long[16];
+            terminals = new BitSet();
+            tableKeys = new long[32];
+            tableNodes = new int[32];
+            firstChild[0] = -1;
+            nextSibling[0] = -1;
+            nodeCount = 1;
+        }
+
+        boolean contains(CharSequence string) {
+            int node = find(string, false);
+            return node >= 0 && terminals.get(node);
+        }
+
+        /**
+         * @return The count of the string, or 0 if it has not been added.
+         */
+        long getCount(CharSequence string) {
+            int node = find(string, false);
+            return node >= 0 && terminals.get(node) ? counts[node] : 0;
+        }
+
+        /**
+         * Adds a string, replacing its count if it was already added.
+         */
+        void put(CharSequence string, long count) {
+            int node = find(string, true);
+            if (!terminals.get(node)) {
+                terminals.set(node);
+                size++;
+                maxLength = Math.max(maxLength, string.length());
+            }
+            counts[node] = count;
+        }
+
+        /**
+         * @return The trie of the added strings.
+         */
+        ConcreteTrie build() {
+
+            // number nodes breadth first with sorted children
+            int[] order = new int[nodeCount];
+            int[] childOffsets = new int[nodeCount + 1];
+            char[] newLabels = new char[nodeCount];
+            long[] newCounts = new long[nodeCount];
+            BitSet newTerminals = new BitSet(nodeCount);
+            int[] children = new int[Math.min(nodeCount, Character.MAX_VALUE + 1)];
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int node = order[head];
+                newLabels[head] = labels[node];
+                newCounts[head] = counts[node];
+                if (terminals.get(node)) {
+                    newTerminals.set(head);
+                }
+
+                // gather and sort children by label
+                int childCount = 0;
+                for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+                    children[childCount++] = c;
+                }
+                sortByLabel(children, childCount);
+                childOffsets[head] = tail;
+                for (int i = 0; i < childCount; i++) {
+                    order[tail++] = children[i];
+                }
+            }
+            childOffsets[nodeCount] = tail;
+
+            // narrow counts when they all fit in an int
+            int[] intCounts = new int[nodeCount];
+            for (int i = 0; i < nodeCount && intCounts != null; i++) {
+                if (newCounts[i] != (int) newCounts[i]) {
+                    intCounts = null;
+                } else {
+                    intCounts[i] = (int) newCounts[i];
+                }
+            }
+            if (intCounts != null) {
+                newCounts = null;
+            }
+
+            return new ConcreteTrie(newLabels,
+                                    childOffsets,
+                                    intCounts,
+                                    newCounts,
+                                    newTerminals,
+                                    size,
+                                    maxLength);
+        }
+
+        private void sortByLabel(int[] nodes, int length) {
+            for (int i = 1; i < length; i++) {
+                int node = nodes[i];
+                int j = i - 1;
+                while (j >= 0 && labels[nodes[j]] > labels[node]) {
+                    nodes[j + 1] = nodes[j];
+                    j--;
+                }
+                nodes[j + 1] = node;
+            }
+        }
+
+        private int find(CharSequence string, boolean create) {
+            int node = 0;
+            for (int i = 0; i < string.length() && node >= 0; i++) {
+                node = child(node, string.charAt(i), create);
+            }
+            return node;
+        }
+
+        private int child(int parent, char label, boolean create) {
+
+            // probe for the child, table entries store node + 1
+            long key = ((long) parent << 16) | label;
+            int mask = tableKeys.length - 1;
+            int slot = hash(key) & mask;
+            while (tableNodes[slot] != 0) {
+                if (tableKeys[slot] == key) {
+                    return tableNodes[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!create) {
+                return -1;
+            }
+
+            // add new child node
+            if (nodeCount == labels.length) {
+                int capacity = 2 * nodeCount;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+            }
+            int node = nodeCount++;
+            labels[node] = label;
+            firstChild[node] = -1;
+            nextSibling[node] = firstChild[parent];
+            firstChild[parent] = node;
+            tableKeys[slot] = key;
+            tableNodes[slot] = node + 1;
+
+            // keep the table at most half full
+            if (2 * nodeCount > tableKeys.length) {
+                rehash();
+            }
+            return node;
+        }
+
+        private void rehash() {
+            long[] oldKeys = tableKeys;
+            int[] oldNodes = tableNodes;
+            tableKeys = new long[2 * oldKeys.length];
+            tableNodes = new int[2 * oldKeys.length];
+            int mask = tableKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldNodes[i] != 0) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (tableNodes[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    tableKeys[slot] = oldKeys[i];
+                    tableNodes[slot] = oldNodes[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
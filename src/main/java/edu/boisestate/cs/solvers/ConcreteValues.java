@@ -1,21 +1,44 @@
 package edu.boisestate.cs.solvers;
 
 import edu.boisestate.cs.Alphabet;
+import edu.boisestate.cs.StringSpace;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 //Special class to hold the values
 //of concrete strings together
 //with the feasibility
+//values are kept in a trie with a count for
+//each string, so strings share their prefixes
+//a lazy concatenation keeps its two operands
+//instead of a trie, and its strings are streamed
+//from the pairs of operand strings when needed
 public class ConcreteValues {
 
+	//value sets smaller than this are never split
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	//partitions for each thread, so threads that finish
+	//early take the partitions left by slower ones
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	//pool shared by all value sets when operations
+	//run over partitions of the values
+	private static volatile ExecutorService executor;
+	private static volatile int parallelism = 1;
+
 	private final Alphabet alphabet;
 	private final int initialBoundLength;
-	private final Map<String, Long> values;
-	private long exceptionCount;
+	private volatile ConcreteTrie values;
+	private final ConcreteValues left;
+	private final ConcreteValues right;
+	private final AtomicLong exceptionCount = new AtomicLong();
+	private volatile ConcreteValuesIndex index;
 
 	public Set<String> getValues() {
-		return values.keySet();
+		return values().keySet();
 	}
 
 	//always feasible in the root nodes
@@ -26,10 +49,12 @@ public class ConcreteValues {
 
 		this.alphabet = alphabet;
 		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
 
-		this.values = new TreeMap<>();
-		this.values.put(value, (long) 1);
-		exceptionCount = 0;
+		ConcreteTrie.Builder builder = new ConcreteTrie.Builder();
+		builder.put(value, 1);
+		this.values = builder.build();
 	}
 
 	//creates an infeasible
@@ -38,9 +63,10 @@ public class ConcreteValues {
 
 		this.alphabet = alphabet;
 		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
 
-		this.values = new TreeMap<>();
-		exceptionCount = 0;
+		this.values = ConcreteTrie.empty();
 	}
 
 	@SuppressWarnings("Duplicates")
@@ -50,13 +76,34 @@ public class ConcreteValues {
 
 		this.alphabet = alphabet;
 		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
 
-		this.values = new TreeMap<>();
+		ConcreteTrie.Builder builder = new ConcreteTrie.Builder();
 		for (String s : values) {
-			long count = updateCount(this.values, s, 1);
-			this.values.put(s, count);
+			long count = updateCount(builder, s, 1);
+			builder.put(s, count);
+		}
+		this.values = builder.build();
+	}
+
+	//streams the strings of a space into the trie
+	//without creating a string for each value
+	public ConcreteValues(Alphabet alphabet,
+			int initialBoundLength,
+			StringSpace values) {
+
+		this.alphabet = alphabet;
+		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
+
+		ConcreteTrie.Builder builder = new ConcreteTrie.Builder();
+		for (StringSpace.Cursor s = values.cursor(); s.next(); ) {
+			long count = updateCount(builder, s, 1);
+			builder.put(s, count);
 		}
-		exceptionCount = 0;
+		this.values = builder.build();
 	}
 
 	@SuppressWarnings("Duplicates")
@@ -66,17 +113,79 @@ public class ConcreteValues {
 
 		this.alphabet = alphabet;
 		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
 
-		this.values = new TreeMap<>(values);
-		exceptionCount = 0;
+		ConcreteTrie.Builder builder = new ConcreteTrie.Builder();
+		for (Map.Entry<String, Long> entry : values.entrySet()) {
+			builder.put(entry.getKey(), entry.getValue());
+		}
+		this.values = builder.build();
 	}
 
-	private static long updateCount(Map<String, Long> map,
-			String key,
+	private ConcreteValues(Alphabet alphabet,
+			int initialBoundLength,
+			ConcreteTrie values) {
+
+		this.alphabet = alphabet;
+		this.initialBoundLength = initialBoundLength;
+		this.left = null;
+		this.right = null;
+
+		this.values = values;
+	}
+
+	//a lazy concatenation of two value sets
+	private ConcreteValues(Alphabet alphabet,
+			int initialBoundLength,
+			ConcreteValues left,
+			ConcreteValues right) {
+
+		this.alphabet = alphabet;
+		this.initialBoundLength = initialBoundLength;
+		this.left = left;
+		this.right = right;
+	}
+
+	//the strings of the set, built from the operand
+	//pairs the first time a lazy concatenation needs them
+	private ConcreteTrie values() {
+		ConcreteTrie result = values;
+		if (result == null) {
+			result = forEachValue(new ValueOperation() {
+				@Override
+				public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
+				}
+			});
+			values = result;
+		}
+		return result;
+	}
+
+	//an operation that appends each suffix to a string
+	//and applies the given operation to the result
+	private static ValueOperation appendEach(final ConcreteTrie suffixes,
+			final ValueOperation operation) {
+		return new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				for (ConcreteTrie.Cursor entry = suffixes.cursor(); entry.next(); ) {
+					operation.apply(string.concat(entry.getString()),
+							prevCount * entry.getCount(),
+							results);
+				}
+			}
+		};
+	}
+
+	private static long updateCount(ConcreteTrie.Builder map,
+			CharSequence key,
 			long prevCount) {
 		long count = prevCount;
-		if (map.containsKey(key)) {
-			count += map.get(key);
+		if (map.contains(key)) {
+			count += map.getCount(key);
 		}
 		if (count == 0) {
 			return prevCount;
@@ -84,20 +193,150 @@ public class ConcreteValues {
 		return count;
 	}
 
+	//string indices over the values, built when
+	//a predicate first uses this set as its argument
+	private ConcreteValuesIndex index() {
+		ConcreteValuesIndex result = index;
+		if (result == null) {
+			result = new ConcreteValuesIndex(values().keySet());
+			index = result;
+		}
+		return result;
+	}
+
+	//runs operations over partitions of the values
+	//on the given number of threads, 1 to run
+	//operations on the calling thread, set once
+	//before solving as the old pool is shut down
+	public static synchronized void setParallelism(int threads) {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		parallelism = Math.max(1, threads);
+		if (parallelism > 1) {
+			// use daemon threads so the pool never keeps the jvm alive
+			executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "concrete-values");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	//one step of an operation, adding the results
+	//for a single value and its count
+	private interface ValueOperation {
+		void apply(String value, long count, ConcreteTrie.Builder results);
+	}
+
+	//applies an operation to every value, splitting large
+	//value sets into partitions that are processed concurrently
+	//and summed into a single result as each one finishes,
+	//operations only read the tries of other sets taken on the
+	//calling thread, as building a lazy set from a pool thread
+	//would wait on the pool it runs in
+	private ConcreteTrie forEachValue(ValueOperation operation) {
+		// stream the strings of a lazy concatenation from the
+		// strings of its leftmost set, reading each set's values
+		// once and appending the suffixes of each right operand,
+		// which are built here rather than in a pool thread
+		ValueOperation expanded = operation;
+		ConcreteValues set = this;
+		ConcreteTrie strings = set.values;
+		while (strings == null) {
+			expanded = appendEach(set.right.values(), expanded);
+			set = set.left;
+			strings = set.values;
+		}
+		final ValueOperation step = expanded;
+
+		ExecutorService pool = executor;
+		if (pool == null || strings.size() < PARALLEL_THRESHOLD) {
+			return applyAll(strings.cursor(), step);
+		}
+
+		// gather partitions as tasks, each adding its results
+		// to the shared totals when it finishes
+		final ConcurrentMap<String, AtomicLong> totals = new ConcurrentHashMap<>();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		int partitions = parallelism * PARTITIONS_PER_THREAD;
+		for (final ConcreteTrie.Cursor part : strings.split(partitions)) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					accumulate(totals, applyAll(part, step));
+					return null;
+				}
+			});
+		}
+
+		// run tasks and build result from totals
+		try {
+			for (Future<Void> result : pool.invokeAll(tasks)) {
+				result.get();
+			}
+			ConcreteTrie.Builder merged = new ConcreteTrie.Builder();
+			for (Map.Entry<String, AtomicLong> entry : totals.entrySet()) {
+				merged.put(entry.getKey(), entry.getValue().get());
+			}
+			return merged.build();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	//adds the counts of a partition result to the totals
+	private static void accumulate(ConcurrentMap<String, AtomicLong> totals,
+			ConcreteTrie result) {
+		for (ConcreteTrie.Cursor entry = result.cursor(); entry.next(); ) {
+			String key = entry.getString();
+			AtomicLong total = totals.get(key);
+			if (total == null) {
+				AtomicLong created = new AtomicLong();
+				total = totals.putIfAbsent(key, created);
+				if (total == null) {
+					total = created;
+				}
+			}
+			total.addAndGet(entry.getCount());
+		}
+	}
+
+	private static ConcreteTrie applyAll(ConcreteTrie.Cursor cursor,
+			ValueOperation operation) {
+		ConcreteTrie.Builder results = new ConcreteTrie.Builder();
+		while (cursor.next()) {
+			operation.apply(cursor.getString(), cursor.getCount(), results);
+		}
+		return results.build();
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (o instanceof ConcreteValues) {
 			ConcreteValues other = (ConcreteValues) o;
-			Map<String, Long> otherValues = other.values;
+			ConcreteTrie thisValues = this.values();
+			ConcreteTrie otherValues = other.values();
 
-			if (this.values.size() != otherValues.size()) {
+			if (thisValues.size() != otherValues.size()) {
 				return false;
 			}
 
-			for (String str : this.values.keySet()) {
-				if (!otherValues.containsKey(str)) {
+			for (ConcreteTrie.Cursor entry = thisValues.cursor(); entry.next(); ) {
+				String str = entry.getString();
+				if (!otherValues.contains(str)) {
 					return false;
-				} else if (!values.get(str).equals(otherValues.get(str))) {
+				} else if (entry.getCount() != otherValues.getCount(str)) {
 					return false;
 				}
 			}
@@ -109,10 +348,11 @@ public class ConcreteValues {
 	@Override
 	public String toString() {
 		StringBuilder output = new StringBuilder("( ");
-		if(!values.isEmpty()){
-			for (String str : this.values.keySet()) {
-				output.append(str).append("{")
-				.append(values.get(str))
+		ConcreteTrie strings = values();
+		if(!strings.isEmpty()){
+			for (ConcreteTrie.Cursor entry = strings.cursor(); entry.next(); ) {
+				output.append(entry.getString()).append("{")
+				.append(entry.getCount())
 				.append("} | ");
 			}
 			output.delete(output.length() - 2, output.length());
@@ -123,563 +363,471 @@ public class ConcreteValues {
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertContainedInOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertContainedInOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
+		final ConcreteTrie containingValues = containing.values();
 
 		// for each substring in values
-		for (String substr : this.values.keySet()) {
-			long prevCount = values.get(substr);
-
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string contains the substring
-				if (string.contains(substr)) {
-					long prevArgCount = containing.values.get(string);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String substr, long prevCount, ConcreteTrie.Builder results) {
+				// find the first string that contains the substring
+				int rank = containingIndex.firstContaining(substr);
+				if (rank >= 0) {
+					long prevArgCount = containingValues.getCount(containingIndex.get(rank));
 					// add substring to result list
 					long count = updateCountCorrect(results, substr, prevCount, prevArgCount);
 					results.put(substr, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertContainsOther(ConcreteValues substring) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertContainsOther(final ConcreteValues substring) {
+		final ConcreteValuesIndex substringIndex = substring.index();
+		final ConcreteTrie substringValues = substring.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// for each possible substring
-			for (String substr : substring.values.keySet()) {
-				// if the string contains the substring
-				if (string.contains(substr)) {
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// find the first substring the string contains
+				int rank = substringIndex.firstContainedIn(string);
+				if (rank >= 0) {
 					// add string to result list
-					long prevArgCount = substring.values.get(substr);
+					long prevArgCount = substringValues.getCount(substringIndex.get(rank));
 					long count = updateCountCorrect(results, string, prevCount, prevArgCount);
 					results.put(string, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertEndsOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertEndsOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
+		final ConcreteTrie containingValues = containing.values();
 
 		// for each suffix in values
-		for (String suffix : this.values.keySet()) {
-			long prevCount = values.get(suffix);
-
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string ends with the suffix
-				if (string.endsWith(suffix)) {
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String suffix, long prevCount, ConcreteTrie.Builder results) {
+				// find the first string that ends with the suffix
+				int rank = containingIndex.firstWithSuffix(suffix);
+				if (rank >= 0) {
 					// add suffix to result list
-					long prevArgCount = containing.values.get(string);
+					long prevArgCount = containingValues.getCount(containingIndex.get(rank));
 					long count = updateCountCorrect(results, suffix, prevCount, prevArgCount);
 					results.put(suffix, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertEndsWith(ConcreteValues suffix) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertEndsWith(final ConcreteValues suffix) {
+		final ConcreteValuesIndex suffixIndex = suffix.index();
+		final ConcreteTrie suffixValues = suffix.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// for each possible suffix
-			for (String suf : suffix.values.keySet()) {
-				// if the string ends with the suffix
-				if (string.endsWith(suf)) {
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if the string ends with any suffix
+				if (suffixIndex.countSuffixesOf(string) > 0) {
 					// add string to result list
-					long prevArgCount = suffix.values.get(string);
+					long prevArgCount = suffixValues.getCount(string);
 					long count = updateCountCorrect(results, string, prevCount,prevArgCount);
 					results.put(string, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertEqual(ConcreteValues other) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertEqual(final ConcreteValues other) {
+		final ConcreteTrie otherValues = other.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// for each possible other string
-			for (String otherString : other.values.keySet()) {
-				// if the string equals the other
-				if (string.equals(otherString)) {
-					long prevArgCount = other.values.get(string);
-					// add string to result list
-					long count = updateCountCorrect(results, string, prevCount, prevArgCount);
-					results.put(string, count);
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// for each possible other string
+				for (String otherString : otherValues.keySet()) {
+					// if the string equals the other
+					if (string.equals(otherString)) {
+						long prevArgCount = otherValues.getCount(string);
+						// add string to result list
+						long count = updateCountCorrect(results, string, prevCount, prevArgCount);
+						results.put(string, count);
+
+						// no need to keep iterating, break the loop
+						break;
+					}
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertEqualIgnoreCase(ConcreteValues other) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertEqualIgnoreCase(final ConcreteValues other) {
+		final ConcreteTrie otherValues = other.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// for each possible other string
-			for (String otherString : other.values.keySet()) {
-				// if the string equals the other ignoring case
-				if (string.equalsIgnoreCase(otherString)) {
-					long prevArgCount = other.values.get(string);
-					// add string to result list
-					long count = updateCountCorrect(results, string, prevCount, prevArgCount);
-					results.put(string, count);
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// for each possible other string
+				for (String otherString : otherValues.keySet()) {
+					// if the string equals the other ignoring case
+					if (string.equalsIgnoreCase(otherString)) {
+						long prevArgCount = otherValues.getCount(string);
+						// add string to result list
+						long count = updateCountCorrect(results, string, prevCount, prevArgCount);
+						results.put(string, count);
+
+						// no need to keep iterating, break the loop
+						break;
+					}
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues assertIsEmpty() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// if string is empty
-			if (string.isEmpty()) {
-				// add string to results
-				long count = updateCount(results, string, prevCount);
-				results.put(string, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if string is empty
+				if (string.isEmpty()) {
+					// add string to results
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotContainedInOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotContainedInOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
 
 		// for each substring in values
-		for (String substr : this.values.keySet()) {
-			long prevCount = values.get(substr);
-			// initialize flag
-			boolean notContained = false;
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string does contain the substring
-				if (!string.contains(substr)) {
-					// unset flag
-					notContained = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String substr, long prevCount, ConcreteTrie.Builder results) {
+				// if some containing value does not contain the substring
+				if (containingIndex.countContaining(substr) < containingIndex.size()) {
+					long count = updateCount(results, substr, prevCount);
+					results.put(substr, count);
 				}
 			}
-			// if all containing values do not contain the substring
-			if (notContained) {
-				long count = updateCount(results, substr, prevCount);
-				results.put(substr, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotContainsOther(ConcreteValues substring) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotContainsOther(final ConcreteValues substring) {
+		final ConcreteValuesIndex substringIndex = substring.index();
+		final ConcreteTrie substringValues = substring.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// initialize flag
-			boolean flag = false;
-			// for each possible substring
-			long prevArgCount = 0;
-			for (String substr : substring.values.keySet()) {
-				// if the string does contain the substring
-				if (!string.contains(substr)) {
-					// unset flag
-					flag = true;
-					prevArgCount = substring.values.get(substr);
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// find the first substring the string does not contain
+				int rank = substringIndex.firstNotContainedIn(string);
+				if (rank >= 0) {
+					long prevArgCount = substringValues.getCount(substringIndex.get(rank));
+					long count = updateCountCorrect(results, string, prevCount, prevArgCount);
+					results.put(string, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			if (flag) {
-				
-				long count = updateCountCorrect(results, string, prevCount, prevArgCount);
-				results.put(string, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues assertNotEmpty() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// if string is empty
-			if (!string.isEmpty()) {
-				// add string to results
-				long count = updateCount(results, string, prevCount);
-				results.put(string, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if string is empty
+				if (!string.isEmpty()) {
+					// add string to results
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotEndsOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotEndsOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
 
 		// for each suffix in values
-		for (String suffix : this.values.keySet()) {
-			long prevCount = values.get(suffix);
-			// initialize flag
-			boolean flag = false;
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string does end with the suffix
-				if (!string.endsWith(suffix)) {
-					// unset flag
-					flag = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String suffix, long prevCount, ConcreteTrie.Builder results) {
+				// if some containing value does not have the suffix
+				//eas: not sure what to do with that one - will do later
+				//when will implement notEndsWith in the acyclic weighted
+				if (containingIndex.countWithSuffix(suffix) < containingIndex.size()) {
+					long count = updateCount(results, suffix, prevCount);
+					results.put(suffix, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			//eas: not sure what to do with that one - will do later
-			//when will implement notEndsWith in the acyclic weighted
-			if (flag) {
-				long count = updateCount(results, suffix, prevCount);
-				results.put(suffix, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotEndsWith(ConcreteValues suffix) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotEndsWith(final ConcreteValues suffix) {
+		final ConcreteValuesIndex suffixIndex = suffix.index();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// initialize flag
-			boolean flag = false;
-			// for each possible suffix
-			for (String suf : suffix.values.keySet()) {
-				// if the string does end with the suffix
-				if (!string.endsWith(suf)) {
-					// unset flag
-					flag = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if the string does not end with some suffix
+				if (suffixIndex.countSuffixesOf(string) < suffixIndex.size()) {
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			if (flag) {
-				long count = updateCount(results, string, prevCount);
-				results.put(string, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotEqual(ConcreteValues other) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotEqual(final ConcreteValues other) {
+		final ConcreteTrie otherValues = other.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// initialize flag
-			boolean flag = false;
-			// for each possible other string
-			long prevArgCount = 0;
-			for (String otherString : other.values.keySet()) {
-				// if the string does equal the other
-				if (!string.equals(otherString)) {
-					// unset flag
-					flag = true;
-					prevArgCount = other.values.get(otherString);
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// initialize flag
+				boolean flag = false;
+				// for each possible other string
+				long prevArgCount = 0;
+				for (String otherString : otherValues.keySet()) {
+					// if the string does equal the other
+					if (!string.equals(otherString)) {
+						// unset flag
+						flag = true;
+						prevArgCount = otherValues.getCount(otherString);
+						// no need to keep iterating, break the loop
+						break;
+					}
+				}
+				// if all containing values do not have the suffix
+				if (flag) {
+					long count = updateCountCorrect(results, string, prevCount, prevArgCount);
+					results.put(string, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			if (flag) {
-				long count = updateCountCorrect(results, string, prevCount, prevArgCount);
-				results.put(string, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotEqualIgnoreCase(ConcreteValues other) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotEqualIgnoreCase(final ConcreteValues other) {
+		final ConcreteTrie otherValues = other.values();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// initialize flag
-			boolean flag = false;
-			// for each possible other string
-			for (String otherString : other.values.keySet()) {
-				// if the string does equal the other ignoring case
-				if (!string.equalsIgnoreCase(otherString)) {
-					// unset flag
-					flag = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// initialize flag
+				boolean flag = false;
+				// for each possible other string
+				for (String otherString : otherValues.keySet()) {
+					// if the string does equal the other ignoring case
+					if (!string.equalsIgnoreCase(otherString)) {
+						// unset flag
+						flag = true;
+
+						// no need to keep iterating, break the loop
+						break;
+					}
+				}
+				// if all containing values do not have the suffix
+				if (flag) {
+					//eas: will fix it later
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			if (flag) {
-				//eas: will fix it later
-				long count = updateCount(results, string, prevCount);
-				results.put(string, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotStartsOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotStartsOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
 
 		// for each prefix in values
-		for (String prefix : this.values.keySet()) {
-			long prevCount = values.get(prefix);
-			// initialize flag
-			boolean flag = false;
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string does start with the prefix
-				if (!string.startsWith(prefix)) {
-					// unset flag
-					flag = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String prefix, long prevCount, ConcreteTrie.Builder results) {
+				// if some containing value does not have the prefix
+				if (containingIndex.countWithPrefix(prefix) < containingIndex.size()) {
+					//TODO: will fix it later
+					long count = updateCount(results, prefix, prevCount);
+					results.put(prefix, count);
 				}
 			}
-			// if all containing values do not have the prefix
-			if (flag) {
-				//TODO: will fix it later
-				long count = updateCount(results, prefix, prevCount);
-				results.put(prefix, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertNotStartsWith(ConcreteValues prefix) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertNotStartsWith(final ConcreteValues prefix) {
+		final ConcreteValuesIndex prefixIndex = prefix.index();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			// initialize flag
-			boolean flag = false;
-			// for each possible prefix
-			for (String pre : prefix.values.keySet()) {
-				// if the string does start with the prefix
-				if (!string.startsWith(pre)) {
-					// unset flag
-					flag = true;
-
-					// no need to keep iterating, break the loop
-					break;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if the string does not start with some prefix
+				if (prefixIndex.countPrefixesOf(string) < prefixIndex.size()) {
+					//TODO: fix it later
+					long count = updateCount(results, string, prevCount);
+					results.put(string, count);
 				}
 			}
-			// if all containing values do not have the suffix
-			if (flag) {
-				//TODO: fix it later
-				long count = updateCount(results, string, prevCount);
-				results.put(string, count);
-			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertStartsOther(ConcreteValues containing) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertStartsOther(final ConcreteValues containing) {
+		final ConcreteValuesIndex containingIndex = containing.index();
 
 		// for each prefix in values
-		for (String prefix : this.values.keySet()) {
-			long prevCount = values.get(prefix);
-
-			// for each possible string
-			for (String string : containing.values.keySet()) {
-				// if the string starts with the prefix
-				if (string.startsWith(prefix)) {
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String prefix, long prevCount, ConcreteTrie.Builder results) {
+				// if any string starts with the prefix
+				if (containingIndex.countWithPrefix(prefix) > 0) {
 					// add prefix to result list
 					//TODO: fix it later
 					long count = updateCount(results, prefix, prevCount);
 					results.put(prefix, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues assertStartsWith(ConcreteValues prefix) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues assertStartsWith(final ConcreteValues prefix) {
+		final ConcreteValuesIndex prefixIndex = prefix.index();
 
 		// for each string in values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-
-			// for each possible prefix
-			for (String pre : prefix.values.keySet()) {
-				// if the string starts with the prefix
-				if (string.startsWith(pre)) {
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				// if the string starts with any prefix
+				if (prefixIndex.countPrefixesOf(string) > 0) {
 					// add string to result list
 					//TODO: fix it later
 					long count = updateCount(results, string, prevCount);
 					results.put(string, count);
-
-					// no need to keep iterating, break the loop
-					break;
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues concat(ConcreteValues arg) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues concat(final ConcreteValues arg) {
+		final ConcreteTrie argValues = arg.values();
 
 		// for each string in both base and arg values
-		for (String baseStr : this.values.keySet()) {
-			long prevCount = values.get(baseStr);
-			for (String argStr : arg.values.keySet()) {
-				//eas: 2-13-19
-				//but arg count could also be multiple
-				long prevArgCount = arg.values.get(argStr);
-				// add concatenation of strings to result list
-				String concatenated = baseStr.concat(argStr);
-				long count = updateCountCorrect(results, concatenated, prevCount, prevArgCount);
-				results.put(concatenated, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String baseStr, long prevCount, ConcreteTrie.Builder results) {
+				for (ConcreteTrie.Cursor argEntry = argValues.cursor(); argEntry.next(); ) {
+					String argStr = argEntry.getString();
+					//eas: 2-13-19
+					//but arg count could also be multiple
+					long prevArgCount = argEntry.getCount();
+					// add concatenation of strings to result list
+					String concatenated = baseStr.concat(argStr);
+					long count = updateCountCorrect(results, concatenated, prevCount, prevArgCount);
+					results.put(concatenated, count);
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
-	private static long updateCountCorrect(Map<String, Long> map,
+	//concatenates lazily, keeping both value sets
+	//so predicates can stream over the pairs of
+	//strings without building the cross product
+	public ConcreteValues lazyConcat(ConcreteValues arg) {
+		return new ConcreteValues(alphabet, initialBoundLength, this, arg);
+	}
+
+	private static long updateCountCorrect(ConcreteTrie.Builder map,
 			String key,
 			long prevCount, long prevArgCount) {
 		long count = prevCount * prevArgCount;
-		if (map.containsKey(key)) {
-			count += map.get(key);
+		if (map.contains(key)) {
+			count += map.getCount(key);
 		}
 		if (count == 0) {
 			return prevCount;
@@ -692,356 +840,389 @@ public class ConcreteValues {
 	 * return@ the copy of itself
 	 **/
 	public ConcreteValues copy() {
-		return new ConcreteValues(alphabet, initialBoundLength, this.values);
+		ConcreteTrie strings = values;
+		if (strings == null) {
+			return new ConcreteValues(alphabet, initialBoundLength, left, right);
+		}
+		return new ConcreteValues(alphabet, initialBoundLength, strings);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues delete(int start, int end) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues delete(final int start, final int end) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			try {
-				// add deleted string to result list
-				StringBuilder strBuilder = new StringBuilder(str);
-				strBuilder.delete(start, end);
-				String deleted = strBuilder.toString();
-				long count = updateCount(results, deleted, prevCount);
-				results.put(deleted, count);
-			} catch (Exception e) {
-				this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				try {
+					// add deleted string to result list
+					StringBuilder strBuilder = new StringBuilder(str);
+					strBuilder.delete(start, end);
+					String deleted = strBuilder.toString();
+					long count = updateCount(results, deleted, prevCount);
+					results.put(deleted, count);
+				} catch (Exception e) {
+					exceptionCount.incrementAndGet();
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues deleteCharAt(int loc) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues deleteCharAt(final int loc) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			try {
-				// add deleted string to result list
-				StringBuilder strBuilder = new StringBuilder(str);
-				strBuilder.deleteCharAt(loc);
-				String deleted = strBuilder.toString();
-				long count = updateCount(results, deleted, prevCount);
-				results.put(deleted, count);
-			} catch (Exception e) {
-				this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				try {
+					// add deleted string to result list
+					StringBuilder strBuilder = new StringBuilder(str);
+					strBuilder.deleteCharAt(loc);
+					String deleted = strBuilder.toString();
+					long count = updateCount(results, deleted, prevCount);
+					results.put(deleted, count);
+				} catch (Exception e) {
+					exceptionCount.incrementAndGet();
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues insert(int offset, ConcreteValues arg) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues insert(final int offset, final ConcreteValues arg) {
+		final ConcreteTrie argValues = arg.values();
 
 		// for each string in both base and arg values
-		for (String baseStr : this.values.keySet()) {
-			long prevCount = values.get(baseStr);
-			for (String argStr : arg.values.keySet()) {
-				try {
-					// add result of string insertion to result list
-					StringBuilder strBuilder = new StringBuilder(baseStr);
-					strBuilder.insert(offset, argStr);
-					String inserted = strBuilder.toString();
-					long prevArgCount = arg.values.get(argStr);
-					long count = updateCountCorrect(results, inserted, prevCount, prevArgCount);
-					results.put(inserted, count);
-				} catch (Exception e) {
-					this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String baseStr, long prevCount, ConcreteTrie.Builder results) {
+				for (ConcreteTrie.Cursor argEntry = argValues.cursor(); argEntry.next(); ) {
+					String argStr = argEntry.getString();
+					try {
+						// add result of string insertion to result list
+						StringBuilder strBuilder = new StringBuilder(baseStr);
+						strBuilder.insert(offset, argStr);
+						String inserted = strBuilder.toString();
+						long prevArgCount = argEntry.getCount();
+						long count = updateCountCorrect(results, inserted, prevCount, prevArgCount);
+						results.put(inserted, count);
+					} catch (Exception e) {
+						exceptionCount.incrementAndGet();
+					}
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	public long modelCount() {
-		long count = 0;
-		for (String s : values.keySet()) {
-			count += values.get(s);
+		// the counts of a lazy concatenation are the
+		// products of the counts of its operand pairs
+		ConcreteTrie strings = values;
+		if (strings == null) {
+			return left.modelCount() * right.modelCount();
 		}
+		long count = 0;
+		count += strings.totalCount();
 		return count;
 	}
 
-	@SuppressWarnings("Duplicates")
-	public ConcreteValues replace(char find, char replace) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public long[] modelCountByLength() {
+		// the lengths of a lazy concatenation are the sums
+		// of the lengths of its operand pairs
+		ConcreteTrie strings = values;
+		if (strings == null) {
+			long[] prefixes = left.modelCountByLength();
+			long[] suffixes = right.modelCountByLength();
+			long[] counts = new long[Math.max(0, prefixes.length + suffixes.length - 1)];
+			for (int i = 0; i < prefixes.length; i++) {
+				for (int j = 0; j < suffixes.length; j++) {
+					counts[i + j] += prefixes[i] * suffixes[j];
+				}
+			}
+			return counts;
+		}
 
-		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add replaced string to result list
-			String replaced = str.replace(find, replace);
-			long count = updateCount(results, replaced, prevCount);
-			results.put(replaced, count);
+		// sum the counts of the strings of each length
+		long[] counts = new long[0];
+		for (ConcreteTrie.Cursor entry = strings.cursor(); entry.next(); ) {
+			int length = entry.getString().length();
+			if (length >= counts.length) {
+				counts = Arrays.copyOf(counts, length + 1);
+			}
+			counts[length] += entry.getCount();
 		}
+		return counts;
+	}
 
-		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+	public boolean isEmpty() {
+		ConcreteTrie strings = values;
+		if (strings == null) {
+			return left.isEmpty() || right.isEmpty();
+		}
+		return strings.isEmpty();
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues replace(String find, String replace) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues replace(final char find, final char replace) {
+		// for each string in values
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add replaced string to result list
+				String replaced = str.replace(find, replace);
+				long count = updateCount(results, replaced, prevCount);
+				results.put(replaced, count);
+			}
+		});
+
+		// return new concrete values from result list
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
+	}
 
+	@SuppressWarnings("Duplicates")
+	public ConcreteValues replace(final String find, final String replace) {
 		// for each string in both base and arg values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add replaced string to result list
-			String replaced = str.replace(find, replace);
-			//so the arguments are not automata
-			long count = updateCount(results, replaced, prevCount);
-			results.put(replaced, count);
-		}
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add replaced string to result list
+				String replaced = str.replace(find, replace);
+				//so the arguments are not automata
+				long count = updateCount(results, replaced, prevCount);
+				results.put(replaced, count);
+			}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues replaceChar() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			for (char find : this.alphabet.getSymbolSet()) {
-				for (char replace : this.alphabet.getSymbolSet()) {
-					// add replaced string to result list
-					String replaced = str.replace(find, replace);
-					long count = updateCount(results, replaced, prevCount);
-					results.put(replaced, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				for (char find : alphabet.getSymbolSet()) {
+					for (char replace : alphabet.getSymbolSet()) {
+						// add replaced string to result list
+						String replaced = str.replace(find, replace);
+						long count = updateCount(results, replaced, prevCount);
+						results.put(replaced, count);
+					}
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues replaceFindKnown(char find) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues replaceFindKnown(final char find) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			for (char replace : this.alphabet.getSymbolSet()) {
-				// add replaced string to result list
-				String replaced = str.replace(find, replace);
-				long count = updateCount(results, replaced, prevCount);
-				results.put(replaced, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				for (char replace : alphabet.getSymbolSet()) {
+					// add replaced string to result list
+					String replaced = str.replace(find, replace);
+					long count = updateCount(results, replaced, prevCount);
+					results.put(replaced, count);
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues replaceReplaceKnown(char replace) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues replaceReplaceKnown(final char replace) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			for (char find : this.alphabet.getSymbolSet()) {
-				// add replaced string to result list
-				String replaced = str.replace(find, replace);
-				long count = updateCount(results, replaced, prevCount);
-				results.put(replaced, count);
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				for (char find : alphabet.getSymbolSet()) {
+					// add replaced string to result list
+					String replaced = str.replace(find, replace);
+					long count = updateCount(results, replaced, prevCount);
+					results.put(replaced, count);
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues reverse() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add replaced string to result list
-			StringBuilder strBuilder = new StringBuilder(str);
-			strBuilder.reverse();
-			String reversed = strBuilder.toString();
-			long count = updateCount(results, reversed, prevCount);
-			results.put(reversed, count);
-		}
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add replaced string to result list
+				StringBuilder strBuilder = new StringBuilder(str);
+				strBuilder.reverse();
+				String reversed = strBuilder.toString();
+				long count = updateCount(results, reversed, prevCount);
+				results.put(reversed, count);
+			}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues setCharAt(int offset, ConcreteValues arg) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
+	public ConcreteValues setCharAt(final int offset, final ConcreteValues arg) {
+		final ConcreteTrie argValues = arg.values();
 
 		// for each string in both base and arg values
-		for (String baseStr : this.values.keySet()) {
-			long prevCount = values.get(baseStr);
-			for (String argStr : arg.values.keySet()) {
-				try {
-					// add result of setting character to result list
-					StringBuilder strBuilder = new StringBuilder(baseStr);
-					strBuilder.setCharAt(offset, argStr.charAt(0));
-					String charSet = strBuilder.toString();
-					//TODO: might need some adjustements
-					long count = updateCount(results, charSet, prevCount);
-					results.put(charSet, count);
-				} catch (Exception e) {
-					this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String baseStr, long prevCount, ConcreteTrie.Builder results) {
+				for (String argStr : argValues.keySet()) {
+					try {
+						// add result of setting character to result list
+						StringBuilder strBuilder = new StringBuilder(baseStr);
+						strBuilder.setCharAt(offset, argStr.charAt(0));
+						String charSet = strBuilder.toString();
+						//TODO: might need some adjustements
+						long count = updateCount(results, charSet, prevCount);
+						results.put(charSet, count);
+					} catch (Exception e) {
+						exceptionCount.incrementAndGet();
+					}
 				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues setLength(int length) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues setLength(final int length) {
 		// for each string in both base and arg values
-		for (String string : this.values.keySet()) {
-			long prevCount = values.get(string);
-			try {
-				// add result of setting character to result list
-				StringBuilder strBuilder = new StringBuilder(string);
-				strBuilder.setLength(length);
-				String lengthSet = strBuilder.toString();
-				long count = updateCount(results, lengthSet, prevCount);
-				results.put(lengthSet, count);
-			} catch (Exception e) {
-				this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String string, long prevCount, ConcreteTrie.Builder results) {
+				try {
+					// add result of setting character to result list
+					StringBuilder strBuilder = new StringBuilder(string);
+					strBuilder.setLength(length);
+					String lengthSet = strBuilder.toString();
+					long count = updateCount(results, lengthSet, prevCount);
+					results.put(lengthSet, count);
+				} catch (Exception e) {
+					exceptionCount.incrementAndGet();
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(this.alphabet, length, results);
+		return new ConcreteValues(this.alphabet, length, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues substring(int start, int end) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues substring(final int start, final int end) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			try {
-				// add substring to result list
-				String substring = str.substring(start, end);
-				long count = updateCount(results, substring, prevCount);
-				results.put(substring, count);
-			} catch (Exception e) {
-				this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				try {
+					// add substring to result list
+					String substring = str.substring(start, end);
+					long count = updateCount(results, substring, prevCount);
+					results.put(substring, count);
+				} catch (Exception e) {
+					exceptionCount.incrementAndGet();
+				}
 			}
-		}
+		});
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
-	public ConcreteValues substring(int start) {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
+	public ConcreteValues substring(final int start) {
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			try {
-				// add substring to result list
-				String substring = str.substring(start);
-				long count = updateCount(results, substring, prevCount);
-				results.put(substring, count);
-			} catch (Exception e) {
-				this.exceptionCount += 1;
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				try {
+					// add substring to result list
+					String substring = str.substring(start);
+					long count = updateCount(results, substring, prevCount);
+					results.put(substring, count);
+				} catch (Exception e) {
+					exceptionCount.incrementAndGet();
+				}
 			}
-		}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues toLowerCase() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add lowercase string to result list
-			String lower = str.toLowerCase();
-			long count = updateCount(results, lower, prevCount);
-			results.put(lower, count);
-		}
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add lowercase string to result list
+				String lower = str.toLowerCase();
+				long count = updateCount(results, lower, prevCount);
+				results.put(lower, count);
+			}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues toUpperCase() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add uppercase string to result list
-			String lower = str.toUpperCase();
-			long count = updateCount(results, lower, prevCount);
-			results.put(lower, count);
-		}
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add uppercase string to result list
+				String lower = str.toUpperCase();
+				long count = updateCount(results, lower, prevCount);
+				results.put(lower, count);
+			}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 
 	@SuppressWarnings("Duplicates")
 	public ConcreteValues trim() {
-		// initialize result map
-		Map<String, Long> results = new HashMap<>();
-
 		// for each string in values
-		for (String str : this.values.keySet()) {
-			long prevCount = values.get(str);
-			// add trimmed string to result list
-			String trimmed = str.trim();
-			long count = updateCount(results, trimmed, prevCount);
-			results.put(trimmed, count);
-		}
+		ConcreteTrie resultValues = forEachValue(new ValueOperation() {
+			@Override
+			public void apply(String str, long prevCount, ConcreteTrie.Builder results) {
+				// add trimmed string to result list
+				String trimmed = str.trim();
+				long count = updateCount(results, trimmed, prevCount);
+				results.put(trimmed, count);
+			}
+		});
 
 		// return new concrete values from result list
-		return new ConcreteValues(alphabet, initialBoundLength, results);
+		return new ConcreteValues(alphabet, initialBoundLength, resultValues);
 	}
 }
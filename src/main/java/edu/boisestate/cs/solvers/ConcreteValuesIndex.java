@@ -0,0 +1,471 @@
+package edu.boisestate.cs.solvers;
+
+import java.util.*;
+
+/**
+ * String indices over the values of a concrete value set, used to answer the
+ * set against set predicates without testing every pair of strings. Strings
+ * are identified by their rank in the sorted order of the set, which is the
+ * order the predicates search for a matching string. Each index is built the
+ * first time a predicate needs it.
+ */
+class ConcreteValuesIndex {
+
+    private final String[] strings;
+    private volatile SuffixAutomaton substrings;
+    private volatile PatternMatcher patterns;
+    private volatile Trie prefixes;
+    private volatile Trie suffixes;
+
+    /**
+     * @param sortedStrings
+     *         The strings of the set in sorted order.
+     */
+    ConcreteValuesIndex(Collection<String> sortedStrings) {
+        this.strings = sortedStrings.toArray(new String[sortedStrings.size()]);
+    }
+
+    String get(int rank) {
+        return strings[rank];
+    }
+
+    int size() {
+        return strings.length;
+    }
+
+    /**
+     * @return The rank of the first string that contains the pattern, or -1
+     * if no string contains it.
+     */
+    int firstContaining(String pattern) {
+        SuffixAutomaton automaton = substrings();
+        int state = automaton.find(pattern);
+        return state < 0 ? -1 : automaton.minRank[state];
+    }
+
+    /**
+     * @return The number of strings that contain the pattern.
+     */
+    int countContaining(String pattern) {
+        SuffixAutomaton automaton = substrings();
+        int state = automaton.find(pattern);
+        return state < 0 ? 0 : automaton.count[state];
+    }
+
+    /**
+     * @return The rank of the first string contained in the text, or -1 if
+     * the text contains none of the strings.
+     */
+    int firstContainedIn(String text) {
+        return patterns().firstMatch(text);
+    }
+
+    /**
+     * @return The rank of the first string not contained in the text, or -1
+     * if the text contains all of the strings.
+     */
+    int firstNotContainedIn(String text) {
+        int rank = patterns().matches(text).nextClearBit(0);
+        return rank < strings.length ? rank : -1;
+    }
+
+    /**
+     * @return The number of strings that start with the prefix.
+     */
+    int countWithPrefix(String prefix) {
+        Trie trie = prefixes();
+        int node = trie.find(prefix, false);
+        return node < 0 ? 0 : trie.count[node];
+    }
+
+    /**
+     * @return The rank of the first string that ends with the suffix, or -1
+     * if there is none.
+     */
+    int firstWithSuffix(String suffix) {
+        Trie trie = suffixes();
+        int node = trie.find(suffix, true);
+        return node < 0 ? -1 : trie.minRank[node];
+    }
+
+    /**
+     * @return The number of strings that end with the suffix.
+     */
+    int countWithSuffix(String suffix) {
+        Trie trie = suffixes();
+        int node = trie.find(suffix, true);
+        return node < 0 ? 0 : trie.count[node];
+    }
+
+    /**
+     * @return The number of strings that are prefixes of the text.
+     */
+    int countPrefixesOf(String text) {
+        return prefixes().countTerminals(text, false);
+    }
+
+    /**
+     * @return The number of strings that are suffixes of the text.
+     */
+    int countSuffixesOf(String text) {
+        return suffixes().countTerminals(text, true);
+    }
+
+    // indices may be built by more than one thread at once when branches
+    // are evaluated concurrently, which only costs a duplicate build
+
+    private SuffixAutomaton substrings() {
+        SuffixAutomaton result = substrings;
+        if (result == null) {
+            result = new SuffixAutomaton(strings);
+            substrings = result;
+        }
+        return result;
+    }
+
+    private PatternMatcher patterns() {
+        PatternMatcher result = patterns;
+        if (result == null) {
+            result = new PatternMatcher(strings);
+            patterns = result;
+        }
+        return result;
+    }
+
+    private Trie prefixes() {
+        Trie result = prefixes;
+        if (result == null) {
+            result = new Trie(strings, false);
+            prefixes = result;
+        }
+        return result;
+    }
+
+    private Trie suffixes() {
+        Trie result = suffixes;
+        if (result == null) {
+            result = new Trie(strings, true);
+            suffixes = result;
+        }
+        return result;
+    }
+
+    private static int totalLength(String[] strings) {
+        int length = 0;
+        for (String string : strings) {
+            length += string.length();
+        }
+        return length;
+    }
+
+    private static char charAt(String string, int i, boolean reversed) {
+        return reversed ?
+               string.charAt(string.length() - 1 - i) :
+               string.charAt(i);
+    }
+
+    /**
+     * A trie of the strings, or of the reversed strings, recording at each
+     * node the number and first rank of the strings that pass through it and
+     * the rank of the string that ends there.
+     */
+    private static class Trie {
+
+        final List<Map<Character, Integer>> children;
+        final int[] minRank;
+        final int[] count;
+        final int[] terminal;
+
+        Trie(String[] strings, boolean reversed) {
+            int capacity = totalLength(strings) + 1;
+            children = new ArrayList<>(capacity);
+            minRank = new int[capacity];
+            count = new int[capacity];
+            terminal = new int[capacity];
+            Arrays.fill(terminal, -1);
+            addNode();
+            minRank[0] = strings.length > 0 ? 0 : -1;
+
+            // insert strings in rank order so the first rank is set first
+            for (int rank = 0; rank < strings.length; rank++) {
+                String string = strings[rank];
+                int node = 0;
+                count[node]++;
+                for (int i = 0; i < string.length(); i++) {
+                    char c = charAt(string, i, reversed);
+                    Integer next = children.get(node).get(c);
+                    if (next == null) {
+                        next = addNode();
+                        minRank[next] = rank;
+                        children.get(node).put(c, next);
+                    }
+                    node = next;
+                    count[node]++;
+                }
+                terminal[node] = rank;
+            }
+        }
+
+        private int addNode() {
+            children.add(new HashMap<Character, Integer>(4));
+            return children.size() - 1;
+        }
+
+        int find(String string, boolean reversed) {
+            int node = 0;
+            for (int i = 0; i < string.length() && node >= 0; i++) {
+                Integer next = children.get(node)
+                                       .get(charAt(string, i, reversed));
+                node = next == null ? -1 : next;
+            }
+            return node;
+        }
+
+        int countTerminals(String text, boolean reversed) {
+            int node = 0;
+            int found = terminal[node] >= 0 ? 1 : 0;
+            for (int i = 0; i < text.length(); i++) {
+                Integer next = children.get(node)
+                                       .get(charAt(text, i, reversed));
+                if (next == null) {
+                    break;
+                }
+                node = next;
+                if (terminal[node] >= 0) {
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * An Aho-Corasick automaton over the strings, used to find which strings
+     * occur in a text with a single scan of the text.
+     */
+    private static class PatternMatcher {
+
+        final Trie trie;
+        final int[] fail;
+        final int[] output;
+        final int[] minOutput;
+
+        PatternMatcher(String[] strings) {
+            trie = new Trie(strings, false);
+            int size = trie.children.size();
+            fail = new int[size];
+            output = new int[size];
+            minOutput = new int[size];
+
+            // link each node to its longest proper suffix in the trie, in
+            // breadth first order so shorter nodes are linked first
+            Queue<Integer> queue = new ArrayDeque<>();
+            output[0] = trie.terminal[0] >= 0 ? 0 : -1;
+            minOutput[0] = trie.terminal[0] >= 0 ?
+                           trie.terminal[0] :
+                           Integer.MAX_VALUE;
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (Map.Entry<Character, Integer> edge :
+                        trie.children.get(node).entrySet()) {
+                    char c = edge.getKey();
+                    int child = edge.getValue();
+                    int link = 0;
+                    if (node != 0) {
+                        link = step(fail[node], c);
+                    }
+                    fail[child] = link;
+
+                    // nearest node on the suffix chain that ends a string
+                    output[child] = trie.terminal[child] >= 0 ?
+                                    child :
+                                    output[link];
+                    minOutput[child] = minOutput[link];
+                    if (trie.terminal[child] >= 0) {
+                        minOutput[child] = Math.min(minOutput[child],
+                                                    trie.terminal[child]);
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int step(int node, char c) {
+            while (true) {
+                Integer next = trie.children.get(node).get(c);
+                if (next != null) {
+                    return next;
+                }
+                if (node == 0) {
+                    return 0;
+                }
+                node = fail[node];
+            }
+        }
+
+        int firstMatch(String text) {
+            int node = 0;
+            int first = minOutput[0];
+            for (int i = 0; i < text.length(); i++) {
+                node = step(node, text.charAt(i));
+                first = Math.min(first, minOutput[node]);
+            }
+            return first == Integer.MAX_VALUE ? -1 : first;
+        }
+
+        BitSet matches(String text) {
+            BitSet found = new BitSet();
+            addOutputs(0, found);
+            int node = 0;
+            for (int i = 0; i < text.length(); i++) {
+                node = step(node, text.charAt(i));
+                addOutputs(node, found);
+            }
+            return found;
+        }
+
+        private void addOutputs(int node, BitSet found) {
+            for (int out = output[node]; out >= 0; out = output[fail[out]]) {
+                found.set(trie.terminal[out]);
+                if (out == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A generalized suffix automaton of the strings. Every state stands for
+     * a set of substrings that occur in exactly the same strings, so the
+     * number and first rank of those strings are stored once per state.
+     */
+    private static class SuffixAutomaton {
+
+        final List<Map<Character, Integer>> transitions;
+        int[] length;
+        int[] link;
+        final int[] minRank;
+        final int[] count;
+
+        SuffixAutomaton(String[] strings) {
+            int capacity = 2 * totalLength(strings) + 1;
+            transitions = new ArrayList<>(capacity);
+            length = new int[capacity];
+            link = new int[capacity];
+            addState(0, -1);
+
+            // extend the automaton with each string from the initial state
+            for (String string : strings) {
+                int last = 0;
+                for (int i = 0; i < string.length(); i++) {
+                    last = extend(last, string.charAt(i));
+                }
+            }
+
+            // mark the states of every substring of each string, climbing
+            // suffix links until a state already marked for the string
+            int size = transitions.size();
+            minRank = new int[size];
+            count = new int[size];
+            int[] marked = new int[size];
+            Arrays.fill(minRank, -1);
+            Arrays.fill(marked, -1);
+            for (int rank = 0; rank < strings.length; rank++) {
+                String string = strings[rank];
+                int state = 0;
+                mark(state, rank, marked);
+                for (int i = 0; i < string.length(); i++) {
+                    state = transitions.get(state).get(string.charAt(i));
+                    mark(state, rank, marked);
+                }
+            }
+        }
+
+        private void mark(int state, int rank, int[] marked) {
+            for (int s = state; s >= 0 && marked[s] != rank; s = link[s]) {
+                marked[s] = rank;
+                count[s]++;
+                if (minRank[s] < 0) {
+                    minRank[s] = rank;
+                }
+            }
+        }
+
+        private int addState(int stateLength, int stateLink) {
+            int state = transitions.size();
+            if (state == length.length) {
+                length = Arrays.copyOf(length, 2 * state);
+                link = Arrays.copyOf(link, 2 * state);
+            }
+            transitions.add(new HashMap<Character, Integer>(4));
+            length[state] = stateLength;
+            link[state] = stateLink;
+            return state;
+        }
+
+        private int cloneState(int state, int stateLength) {
+            int clone = addState(stateLength, link[state]);
+            transitions.get(clone).putAll(transitions.get(state));
+            return clone;
+        }
+
+        private void redirect(int p, char c, int from, int to) {
+            while (p >= 0) {
+                Integer next = transitions.get(p).get(c);
+                if (next == null || next != from) {
+                    break;
+                }
+                transitions.get(p).put(c, to);
+                p = link[p];
+            }
+        }
+
+        private int extend(int last, char c) {
+
+            // the extension already exists from an earlier string
+            Integer existing = transitions.get(last).get(c);
+            if (existing != null) {
+                int q = existing;
+                if (length[last] + 1 == length[q]) {
+                    return q;
+                }
+                int clone = cloneState(q, length[last] + 1);
+                redirect(last, c, q, clone);
+                link[q] = clone;
+                return clone;
+            }
+
+            int current = addState(length[last] + 1, 0);
+            int p = last;
+            while (p >= 0 && !transitions.get(p).containsKey(c)) {
+                transitions.get(p).put(c, current);
+                p = link[p];
+            }
+            if (p >= 0) {
+                int q = transitions.get(p).get(c);
+                if (length[p] + 1 == length[q]) {
+                    link[current] = q;
+                } else {
+                    int clone = cloneState(q, length[p] + 1);
+                    redirect(p, c, q, clone);
+                    link[q] = clone;
+                    link[current] = clone;
+                }
+            }
+            return current;
+        }
+
+        int find(String pattern) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = transitions.get(state).get(pattern.charAt(i));
+                if (next == null) {
+                    return -1;
+                }
+                state = next;
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package edu.boisestate.cs.solvers;
+
+import edu.boisestate.cs.automatonModel.AutomatonModel;
+
+import java.util.*;
+
+/**
+ * A map of symbolic string ids to models that keeps a running total of the
+ * automaton states of the stored models. The states of a model are counted
+ * when it is put, and a model stored under two ids is counted under each.
+ */
+class CountingModelMap extends AbstractMap<Integer, AutomatonModel> {
+
+    // models and state counts by id
+    private final Map<Integer, AutomatonModel> models;
+    private final Map<Integer, Integer> stateCounts;
+    private long stateCount;
+
+    CountingModelMap() {
+        this.models = new HashMap<>();
+        this.stateCounts = new HashMap<>();
+    }
+
+    /**
+     * @return The total number of automaton states of the stored models.
+     */
+    long getStateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public AutomatonModel get(Object key) {
+        return models.get(key);
+    }
+
+    @Override
+    public AutomatonModel put(Integer key, AutomatonModel model) {
+        int states = model == null ? 0 : model.getStateCount();
+        Integer previousStates = stateCounts.put(key, states);
+        if (previousStates != null) {
+            stateCount -= previousStates;
+        }
+        stateCount += states;
+        return models.put(key, model);
+    }
+
+    @Override
+    public AutomatonModel remove(Object key) {
+        Integer previousStates = stateCounts.remove(key);
+        if (previousStates != null) {
+            stateCount -= previousStates;
+        }
+        return models.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return models.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return models.size();
+    }
+
+    @Override
+    public void clear() {
+        models.clear();
+        stateCounts.clear();
+        stateCount = 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, AutomatonModel>> entrySet() {
+
+        // read only, so counts follow every change
+        return Collections.unmodifiableMap(models).entrySet();
+    }
+}
@@ -1,5 +1,7 @@
 package edu.boisestate.cs.solvers;
 
+import edu.boisestate.cs.graph.Opcode;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,7 +13,7 @@ import java.util.Map;
  *
  * @author Scott Kausler
  */
-public abstract class ExtendedSolver<TSymbolicString> {
+public abstract class ExtendedSolver<TSymbolicString> implements Cloneable {
 
     protected Map<Integer, String> concreteStringMap = new HashMap<>();
     protected int initialBound = -1;
@@ -43,16 +45,9 @@ public abstract class ExtendedSolver<TSymbolicString> {
      * @return true if the parameter is a predicate.
      */
     public static boolean containsBoolFunction(String string) {
-        String fName = string.split("!!")[0];
-        return fName.equals("equals") ||
-               fName.equals("contains") ||
-               fName.equals("contentEquals") ||
-               fName.equals("endsWith") ||
-               fName.equals("startsWith") ||
-               fName.equals("equalsIgnoreCase") ||
-               fName.equals("matches") ||
-               fName.equals("isEmpty") ||
-               fName.equals("regionMatches");
+        int end = string.indexOf("!!");
+        String fName = end < 0 ? string : string.substring(0, end);
+        return Opcode.fromFunctionName(fName).isPredicate();
     }
 
     /**
@@ -560,6 +555,131 @@ public abstract class ExtendedSolver<TSymbolicString> {
         return true;
     }
 
+    /**
+     * Creates a copy of this solver holding private copies of only the base
+     * and argument values, so a predicate can be asserted on the copy while
+     * other branches are evaluated on other copies concurrently.
+     *
+     * @param base
+     *         id of the current base.
+     * @param arg
+     *         id of the current arg, -1 if none.
+     *
+     * @return The branch solver.
+     */
+    @SuppressWarnings("unchecked")
+    public ExtendedSolver<TSymbolicString> branch(int base, int arg) {
+
+        // shallow copy shares configuration such as the alphabet
+        ExtendedSolver<TSymbolicString> branch;
+        try {
+            branch = (ExtendedSolver<TSymbolicString>) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // give the branch its own values
+        branch.symbolicStringMap = new HashMap<>();
+        branch.symbolicStringMap.put(base,
+                                     copyValue(symbolicStringMap.get(base)));
+        if (arg > 0) {
+            branch.symbolicStringMap.put(arg,
+                                         copyValue(symbolicStringMap.get(arg)));
+        }
+        branch.last = null;
+        branch.lastArg = null;
+        branch.lastId = -1;
+        branch.lastArgId = -1;
+
+        return branch;
+    }
+
+    /**
+     * Replaces the values in this solver with those of a branch, committing
+     * the predicate asserted on the branch.
+     *
+     * @param branch
+     *         A branch created by {@link #branch(int, int)}.
+     */
+    public void mergeBranch(ExtendedSolver<TSymbolicString> branch) {
+        symbolicStringMap.putAll(branch.symbolicStringMap);
+    }
+
+    /**
+     * Copies a symbolic string value for use in a branch. Values that are not
+     * changed by operations can be shared.
+     *
+     * @param value
+     *         the value to copy.
+     *
+     * @return the value for the branch.
+     */
+    protected TSymbolicString copyValue(TSymbolicString value) {
+        return value;
+    }
+
+    /**
+     * Restores the result of an operation stored by an earlier run, so the
+     * operation does not need to be computed again.
+     *
+     * @param id
+     *         represents result.
+     *
+     * @return The description of the restored operation, or null if no
+     * result is stored for the id.
+     */
+    public String restoreResult(int id) {
+        return null;
+    }
+
+    /**
+     * Stores the result of an operation for later runs. Solvers without a
+     * store ignore the result.
+     *
+     * @param id
+     *         represents result.
+     * @param operation
+     *         description of the operation that produced the result.
+     */
+    public void storeResult(int id, String operation) {
+    }
+
+    /**
+     * Names the model count taken next, so solvers that store counts for
+     * later runs can find it again. Solvers without a store ignore it.
+     *
+     * @param vertex
+     *         id of the vertex the count is reported for.
+     * @param step
+     *         which count of the vertex is taken next, such as the count
+     *         before the predicate or the count of one of its branches.
+     */
+    public void setCountStep(int vertex, int step) {
+    }
+
+    /**
+     * @return The number of symbolic strings currently stored.
+     */
+    public int getSymbolicStringCount() {
+        return symbolicStringMap.size();
+    }
+
+    /**
+     * @return The total number of automaton states of the symbolic strings
+     * currently stored, or -1 if the solver does not use automata.
+     */
+    public long getSymbolicStateCount() {
+        return -1;
+    }
+
+    /**
+     * @return The greatest number of bytes of symbolic strings stored outside
+     * the heap at once, or -1 if the solver stores them on the heap.
+     */
+    public long getPeakOffHeapBytes() {
+        return -1;
+    }
+
     /**
      * Remove a symbolic string that won't be used anymore.
      *
@@ -572,6 +692,13 @@ public abstract class ExtendedSolver<TSymbolicString> {
         }
     }
 
+    /**
+     * Marks the end of solving and reporting a vertex. Solvers that keep
+     * state for the vertex being solved drop it.
+     */
+    public void finishVertex() {
+    }
+
     /**
      * Used to undo the last predicate applied. Useful for checking if the
      * branch is satisfiable without actually applying the predicate.
@@ -3,6 +3,8 @@ package edu.boisestate.cs.solvers;
 import edu.boisestate.cs.BasicTimer;
 import edu.boisestate.cs.automatonModel.AutomatonModel;
 import edu.boisestate.cs.automatonModel.AutomatonModelManager;
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
 
 import java.math.BigInteger;
 import java.util.Set;
@@ -11,6 +13,12 @@ public class MCAutomatonModelSolver
         extends AutomatonModelSolver
         implements ModelCountSolver {
 
+    // error bound accepted for counts in doubles unless set
+    private static final double DEFAULT_EPSILON = 1e-9;
+
+    private double epsilon = DEFAULT_EPSILON;
+    private double delta;
+
     public MCAutomatonModelSolver(AutomatonModelManager modelFactory) {
         super(modelFactory);
     }
@@ -20,6 +28,20 @@ public class MCAutomatonModelSolver
         super(modelFactory, initialBound);
     }
 
+    /**
+     * Sets the bounds of model counts in doubles, which fall back to exact
+     * counts for estimates outside the bounds.
+     *
+     * @param epsilon
+     *         the largest relative error accepted
+     * @param delta
+     *         the largest probability of exceeding epsilon accepted
+     */
+    public void setApproximation(double epsilon, double delta) {
+        this.epsilon = epsilon;
+        this.delta = delta;
+    }
+
     /**
      * Enumerates all possible values for a given symbolic string
      *
@@ -50,14 +72,11 @@ public class MCAutomatonModelSolver
     @Override
     public long getModelCount(int id) {
 
-        // get model from id
-        AutomatonModel model = this.symbolicStringMap.get(id);
-
         // start timer
         BasicTimer.start();
 
         // get model count as big integer
-        BigInteger count = model.modelCount();
+        BigInteger count = exactCount(id, takeCountKey(id, "total"));
 
         // stop timer
         BasicTimer.stop();
@@ -65,4 +84,93 @@ public class MCAutomatonModelSolver
         // return model count as integer
         return count.longValue();
     }
+
+    @Override
+    public CountEstimate estimateModelCount(int id, CountPrecision precision) {
+        String key = takeCountKey(id, "total");
+
+        // start timer
+        BasicTimer.start();
+
+        // count exactly unless counting in doubles, estimates are not cached
+        CountEstimate count;
+        if (precision == CountPrecision.EXACT) {
+            count = CountEstimate.exact(exactCount(id, key));
+        } else {
+            AutomatonModel model = this.symbolicStringMap.get(id);
+            count = model.estimateModelCount(epsilon, delta);
+        }
+
+        // stop timer
+        BasicTimer.stop();
+
+        return count;
+    }
+
+    @Override
+    public CountEstimate[] estimateModelCountByLength(int id,
+                                                      CountPrecision precision) {
+        String key = takeCountKey(id, "lengths");
+
+        // start timer
+        BasicTimer.start();
+
+        // count exactly if any estimate is outside the bounds
+        CountEstimate[] counts;
+        if (precision == CountPrecision.EXACT) {
+            counts = exactCountByLength(id, key);
+        } else {
+            AutomatonModel model = this.symbolicStringMap.get(id);
+            counts = model.modelCountByLength(precision);
+            for (CountEstimate count : counts) {
+                if (count.getRelativeError() > epsilon ||
+                    count.getDelta() > delta) {
+                    counts = exactCountByLength(id, key);
+                    break;
+                }
+            }
+        }
+
+        // stop timer
+        BasicTimer.stop();
+
+        return counts;
+    }
+
+    private BigInteger exactCount(int id, String key) {
+
+        // restore count of an earlier run if cached
+        BigInteger[] stored = restoreCounts(key);
+        if (stored != null) {
+            return stored[0];
+        }
+
+        // count and cache count
+        BigInteger count = this.symbolicStringMap.get(id).modelCount();
+        storeCounts(key, new BigInteger[]{count});
+        return count;
+    }
+
+    private CountEstimate[] exactCountByLength(int id, String key) {
+
+        // restore counts of each length of an earlier run if cached
+        BigInteger[] stored = restoreCounts(key);
+        if (stored != null) {
+            CountEstimate[] counts = new CountEstimate[stored.length];
+            for (int i = 0; i < stored.length; i++) {
+                counts[i] = CountEstimate.exact(stored[i]);
+            }
+            return counts;
+        }
+
+        // count and cache counts of each length
+        AutomatonModel model = this.symbolicStringMap.get(id);
+        CountEstimate[] counts = model.modelCountByLength(CountPrecision.EXACT);
+        BigInteger[] values = new BigInteger[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            values[i] = counts[i].toBigInteger();
+        }
+        storeCounts(key, values);
+        return counts;
+    }
 }
@@ -0,0 +1,136 @@
+package edu.boisestate.cs.solvers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An off-heap store of encoded models. Values are copied into blocks carved
+ * from large direct buffers, so the garbage collector sees a few chunks
+ * instead of the states and transitions of every stored automaton. Blocks
+ * are sized in powers of two and explicitly released back to a free list
+ * of their size, so values of similar size reuse the same memory. Values
+ * larger than a chunk get a direct buffer of their own, which is freed by
+ * the collector once released.
+ * <p>
+ * An arena is not thread safe, each solver owns its own arena.
+ */
+public class ModelArena {
+
+    // chunks of 1 megabyte unless given
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    // smallest block is 2^6 = 64 bytes
+    private static final int MIN_BLOCK_SHIFT = 6;
+
+    private final int chunkSize;
+    private final List<Deque<ByteBuffer>> freeBlocks;
+    private ByteBuffer chunk;
+    private long usedBytes;
+    private long peakUsedBytes;
+
+    /**
+     * Creates an empty arena of 1 megabyte chunks.
+     */
+    public ModelArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an empty arena.
+     *
+     * @param chunkSize
+     *         The size of the direct buffers blocks are carved from, a power
+     *         of two.
+     */
+    public ModelArena(int chunkSize) {
+        if (Integer.bitCount(chunkSize) != 1 ||
+            chunkSize < (1 << MIN_BLOCK_SHIFT)) {
+            throw new IllegalArgumentException("Chunk size must be a power " +
+                                               "of two of at least 64 bytes");
+        }
+        this.chunkSize = chunkSize;
+        this.freeBlocks = new ArrayList<>();
+        int maxShift = Integer.numberOfTrailingZeros(chunkSize);
+        for (int shift = 0; shift <= maxShift; shift++) {
+            freeBlocks.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    /**
+     * Copies a value into the arena.
+     *
+     * @param value
+     *         The value from its position to its limit, which is not
+     *         changed.
+     *
+     * @return The block holding the value, to be read with {@link
+     * #read(ByteBuffer)} and released with {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer store(ByteBuffer value) {
+        int length = value.remaining();
+        ByteBuffer block = allocate(length);
+        block.clear();
+        block.put(value.duplicate());
+        block.flip();
+        usedBytes += block.capacity();
+        peakUsedBytes = Math.max(peakUsedBytes, usedBytes);
+        return block;
+    }
+
+    /**
+     * @return A view of the value in a block, positioned at its start.
+     */
+    public ByteBuffer read(ByteBuffer block) {
+        return block.duplicate();
+    }
+
+    /**
+     * Releases a block so its memory holds later values. The block must not
+     * be read afterwards.
+     */
+    public void release(ByteBuffer block) {
+        usedBytes -= block.capacity();
+        if (block.capacity() <= chunkSize) {
+            freeBlocks.get(Integer.numberOfTrailingZeros(block.capacity()))
+                      .push(block);
+        }
+    }
+
+    /**
+     * @return The greatest number of bytes held by blocks at once.
+     */
+    public long getPeakUsedBytes() {
+        return peakUsedBytes;
+    }
+
+    private ByteBuffer allocate(int length) {
+
+        // give values larger than a chunk their own buffer
+        if (length > chunkSize) {
+            return ByteBuffer.allocateDirect(length);
+        }
+
+        // reuse a released block of the same size
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        int shift = Math.max(MIN_BLOCK_SHIFT, bits);
+        Deque<ByteBuffer> free = freeBlocks.get(shift);
+        if (!free.isEmpty()) {
+            return free.pop();
+        }
+
+        // carve a new block from the current chunk, starting a new chunk
+        // when the rest of the current one is too small
+        int size = 1 << shift;
+        if (chunk == null || chunk.remaining() < size) {
+            chunk = ByteBuffer.allocateDirect(chunkSize);
+        }
+        ByteBuffer view = chunk.duplicate();
+        view.limit(view.position() + size);
+        ByteBuffer block = view.slice();
+        chunk.position(chunk.position() + size);
+        return block;
+    }
+}
@@ -0,0 +1,525 @@
+package edu.boisestate.cs.solvers;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * An on-disk store of solved models shared between runs. Entries are files
+ * in a directory named by a hash of their key, so a key built from
+ * everything a result depends on finds the same entry in every run. The
+ * total size of the entries is capped, evicting the least recently used
+ * entries first. Use is tracked in memory and written to an index file
+ * when the cache is closed, so the order survives between runs. Entries
+ * missing from the index, such as those written by a run that was not
+ * closed, are ordered by the modification times of their files. Entries
+ * and the index are written to a temporary file and moved into place, so
+ * readers never see a partial file.
+ * <p>
+ * Tiny entries, such as model counts, are kept in memory and stored in the
+ * index instead of in files of their own, so a run reads them all at once
+ * when the cache is opened. They are lost if the cache is not closed.
+ * Small entries are read onto the heap. Larger entries are mapped into
+ * memory and stay mapped until they are evicted or the cache is closed, so
+ * entries read again are not mapped again. An entry being read when it is
+ * evicted is unmapped once every reader has released it.
+ */
+public class ModelCache {
+
+    private static final String SUFFIX = ".model";
+
+    // entry keys and sizes from least to most recently used, followed by
+    // the value of each tiny entry
+    private static final String INDEX = "index";
+
+    // entries under 4 kilobytes are kept in the index instead of a file
+    private static final int MAX_INDEXED_BYTES = 4 * 1024;
+
+    // entries of at least 64 kilobytes are mapped instead of read
+    private static final long MIN_MAPPED_BYTES = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // unmaps a direct buffer, null if the runtime has no way to do so
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                                                  ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+
+            // runtimes before java 9, mappings are freed by the collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+
+    // entry sizes by key in least recently used order
+    private final LinkedHashMap<String, Long> entries;
+    private long totalBytes;
+
+    // values of entries kept in the index by key
+    private final Map<String, byte[]> indexed;
+
+    // mapped entries by key and the mapping of each read buffer
+    private final Map<String, Mapping> mappings;
+    private final Map<ByteBuffer, Mapping> readers;
+
+    /**
+     * Opens a cache directory, creating it if needed.
+     *
+     * @param directory
+     *         The directory holding the entries.
+     * @param maxBytes
+     *         The greatest total size of the entries.
+     */
+    public ModelCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.indexed = new HashMap<>();
+        this.mappings = new HashMap<>();
+        this.readers = new IdentityHashMap<>();
+        Files.createDirectories(directory);
+
+        // list entry files
+        Map<String, Path> files = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    files.put(name.substring(0, name.length() - SUFFIX.length()),
+                              file);
+                }
+            }
+        }
+
+        // load indexed entries from least to most recently used, keeping
+        // only entry files that still exist
+        readIndex(files);
+
+        // add entries missing from the index as the most recently used, in
+        // the order they were written
+        List<Path> unindexed = new ArrayList<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            if (!entries.containsKey(file.getKey())) {
+                unindexed.add(file.getValue());
+            }
+        }
+        final Map<Path, Long> times = new HashMap<>();
+        for (Path file : unindexed) {
+            times.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        Collections.sort(unindexed, new Comparator<Path>() {
+            @Override
+            public int compare(Path p1, Path p2) {
+                return Long.compare(times.get(p1), times.get(p2));
+            }
+        });
+        for (Path file : unindexed) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    /**
+     * Hashes the parts of a key into a fixed length key.
+     *
+     * @param parts
+     *         Everything the cached value depends on.
+     *
+     * @return The hexadecimal hash of the parts, see {@link #hash(byte[])}.
+     */
+    public static String key(Object... parts) {
+        StringBuilder joined = new StringBuilder();
+        for (Object part : parts) {
+            joined.append(part).append('\0');
+        }
+        return hash(joined.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Extends a hashed key with more parts without hashing it again, such as
+     * a run key with the id of a vertex.
+     *
+     * @param key
+     *         A key from {@link #key(Object...)}.
+     * @param parts
+     *         Numbers or short names, which must be valid in file names.
+     *
+     * @return The key followed by each part.
+     */
+    public static String subkey(String key, Object... parts) {
+        StringBuilder joined = new StringBuilder(key);
+        for (Object part : parts) {
+            joined.append('-').append(part);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Hashes bytes with the 128 bit MurmurHash3. The hash names cache
+     * entries, so it only needs to keep apart different inputs, not resist
+     * attacks, and unlike a cryptographic digest it needs no security
+     * provider to be loaded.
+     *
+     * @return The hexadecimal hash of the bytes.
+     */
+    public static String hash(byte[] bytes) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = 0;
+        long h2 = 0;
+
+        // mix each block of 16 bytes
+        int blocks = bytes.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = data.getLong(i * 16);
+            long k2 = data.getLong(i * 16 + 8);
+            h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+
+        // mix the remaining bytes
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = bytes.length - 1; i >= tail + 8; i--) {
+            k2 = (k2 << 8) | (bytes[i] & 0xff);
+        }
+        for (int i = Math.min(bytes.length, tail + 8) - 1; i >= tail; i--) {
+            k1 = (k1 << 8) | (bytes[i] & 0xff);
+        }
+        if (bytes.length - tail > 8) {
+            h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+        }
+        if (bytes.length > tail) {
+            h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+        }
+
+        // finish
+        h1 ^= bytes.length;
+        h2 ^= bytes.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = finish(h1);
+        h2 = finish(h2);
+        h1 += h2;
+        h2 += h1;
+        char[] hex = new char[32];
+        for (int i = 0; i < 16; i++) {
+            long h = i < 8 ? h1 : h2;
+            int b = (int) (h >>> (56 - 8 * (i % 8))) & 0xff;
+            hex[2 * i] = HEX_DIGITS[b >> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Reads an entry, marking it as the most recently used.
+     *
+     * @return The entry, to be released with {@link #release(ByteBuffer)}
+     * once read, or null if there is no entry for the key.
+     */
+    public synchronized ByteBuffer get(String key) throws IOException {
+        Long size = entries.get(key);
+        if (size == null) {
+            return null;
+        }
+
+        // return tiny entries from memory
+        byte[] bytes = indexed.get(key);
+        if (bytes != null) {
+            return ByteBuffer.wrap(bytes);
+        }
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+
+            // read small entries, which are cheaper to copy than to map
+            if (size < MIN_MAPPED_BYTES) {
+                return ByteBuffer.wrap(Files.readAllBytes(file));
+            }
+
+            // map entry unless still mapped by an earlier read
+            Mapping mapping = mappings.get(key);
+            if (mapping == null) {
+                try (FileChannel channel =
+                             FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapping = new Mapping(channel.map(FileChannel.MapMode.READ_ONLY,
+                                                      0,
+                                                      channel.size()));
+                }
+                mappings.put(key, mapping);
+            }
+
+            // give each reader its own position
+            ByteBuffer value = mapping.buffer.duplicate();
+            mapping.readers++;
+            readers.put(value, mapping);
+            return value;
+        } catch (NoSuchFileException e) {
+
+            // evicted by another run
+            totalBytes -= entries.remove(key);
+            unmap(key);
+            return null;
+        }
+    }
+
+    /**
+     * Releases an entry returned by {@link #get(String)}. The entry must not
+     * be read afterwards.
+     */
+    public synchronized void release(ByteBuffer value) {
+        Mapping mapping = readers.remove(value);
+        if (mapping == null) {
+            return;
+        }
+        mapping.readers--;
+        if (mapping.readers == 0 && mapping.dropped) {
+            clean(mapping.buffer);
+        }
+    }
+
+    /**
+     * Writes the order entries were used to the index and unmaps the entries
+     * that are not being read. Entries still being read are unmapped when
+     * released. The cache can still be used after it is closed.
+     */
+    public synchronized void close() throws IOException {
+        try {
+
+            // write each key and size from least to most recently used,
+            // followed by the value if it is kept in the index
+            int size = 4;
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                size += 2 + entry.getKey().length() + 8 + 1;
+                if (indexed.containsKey(entry.getKey())) {
+                    size += entry.getValue();
+                }
+            }
+            ByteBuffer index = ByteBuffer.allocate(size);
+            index.putInt(entries.size());
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+                byte[] value = indexed.get(entry.getKey());
+                index.putShort((short) key.length);
+                index.put(key);
+                index.putLong(entry.getValue());
+                index.put((byte) (value != null ? 1 : 0));
+                if (value != null) {
+                    index.put(value);
+                }
+            }
+            index.flip();
+            write(directory.resolve(INDEX), index);
+        } finally {
+
+            // unmap entries
+            for (String key : new ArrayList<>(mappings.keySet())) {
+                unmap(key);
+            }
+        }
+    }
+
+    /**
+     * Writes an entry, replacing any entry for the key, and evicts least
+     * recently used entries until the cache fits its size cap.
+     */
+    public synchronized void put(String key, ByteBuffer value) throws IOException {
+
+        // keep tiny entries in the index, dropping the file of the entry it
+        // replaces, and write others to their own file
+        Path file = directory.resolve(key + SUFFIX);
+        boolean replacesFile = entries.containsKey(key) &&
+                               !indexed.containsKey(key);
+        if (value.remaining() < MAX_INDEXED_BYTES) {
+            byte[] bytes = new byte[value.remaining()];
+            value.duplicate().get(bytes);
+            indexed.put(key, bytes);
+            if (replacesFile) {
+                Files.deleteIfExists(file);
+            }
+        } else {
+            write(file, value);
+            indexed.remove(key);
+        }
+
+        // record entry as most recently used, dropping the mapping of the
+        // entry it replaces
+        unmap(key);
+        Long previous = entries.put(key, (long) value.remaining());
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        totalBytes += value.remaining();
+        evict();
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> iter = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Long> eldest = iter.next();
+            if (indexed.remove(eldest.getKey()) == null) {
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + SUFFIX));
+            }
+            totalBytes -= eldest.getValue();
+            unmap(eldest.getKey());
+            iter.remove();
+        }
+    }
+
+    /**
+     * Loads the entries of the index, from least to most recently used. An
+     * entry with its own file is only loaded if the file is listed.
+     *
+     * @param files
+     *         The entry files in the directory by key.
+     */
+    private void readIndex(Map<String, Path> files) throws IOException {
+        ByteBuffer index;
+        try {
+            index = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(INDEX)));
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        try {
+            int count = index.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[index.getShort()];
+                index.get(key);
+                String name = new String(key, StandardCharsets.US_ASCII);
+                long size = index.getLong();
+                if (index.get() != 0) {
+                    byte[] value = new byte[(int) size];
+                    index.get(value);
+                    indexed.put(name, value);
+                } else if (!files.containsKey(name)) {
+                    continue;
+                }
+                entries.put(name, size);
+                totalBytes += size;
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+
+            // keep entries read before the damage, others are ordered by time
+        }
+    }
+
+    /**
+     * Writes a file to a temporary file and moves it into place. Temporary
+     * files are named by the clock, which unlike the random names of
+     * {@link Files#createTempFile} needs no secure random to be seeded.
+     */
+    private void write(Path file, ByteBuffer value) throws IOException {
+        Path temp;
+        FileChannel channel = null;
+        do {
+            temp = directory.resolve(file.getFileName() + "." +
+                                     Long.toHexString(System.nanoTime()) +
+                                     ".tmp");
+            try {
+                channel = FileChannel.open(temp,
+                                           StandardOpenOption.CREATE_NEW,
+                                           StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+
+                // written by another run at the same time, try another name
+            }
+        } while (channel == null);
+        try {
+            try {
+                ByteBuffer remaining = value.duplicate();
+                while (remaining.hasRemaining()) {
+                    channel.write(remaining);
+                }
+            } finally {
+                channel.close();
+            }
+            Files.move(temp,
+                       file,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long finish(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Drops the mapping of an entry, unmapping it now unless it is being
+     * read.
+     */
+    private void unmap(String key) {
+        Mapping mapping = mappings.remove(key);
+        if (mapping == null) {
+            return;
+        }
+        mapping.dropped = true;
+        if (mapping.readers == 0) {
+            clean(mapping.buffer);
+        }
+    }
+
+    private static void clean(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+
+            // left to the collector
+        }
+    }
+
+    /**
+     * An entry mapped into memory and the number of readers of it.
+     */
+    private static class Mapping {
+
+        private final MappedByteBuffer buffer;
+        private int readers;
+        private boolean dropped;
+
+        private Mapping(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package edu.boisestate.cs.solvers;
 
+import edu.boisestate.cs.automatonModel.operations.CountEstimate;
+import edu.boisestate.cs.automatonModel.operations.CountPrecision;
+
 import java.util.Set;
 
 public interface ModelCountSolver {
@@ -14,6 +17,34 @@ public interface ModelCountSolver {
      */
     long getModelCount(int id);
 
+    /**
+     * Get the number of solutions represented by the symbolic string model,
+     * as an estimate with an error bound when counted in doubles.
+     *
+     * @param id
+     *         the identifier of the symbolic string
+     * @param precision
+     *         how the solutions are counted
+     *
+     * @return the exact or estimated number of solutions for a given node in
+     * the graph
+     */
+    CountEstimate estimateModelCount(int id, CountPrecision precision);
+
+    /**
+     * Get the number of solutions of each length represented by the symbolic
+     * string model.
+     *
+     * @param id
+     *         the identifier of the symbolic string
+     * @param precision
+     *         how the solutions are counted
+     *
+     * @return the number of solutions indexed by length, up to the longest
+     * solution
+     */
+    CountEstimate[] estimateModelCountByLength(int id, CountPrecision precision);
+
 //    /**
 //     * Get a single string value if it exists from the solutions represented by
 //     * the symbolic string.
@@ -0,0 +1,261 @@
+package edu.boisestate.cs.stringRandom;
+
+import dk.brics.automaton.Automaton;
+import edu.boisestate.cs.automaton.WeightedAutomaton;
+import edu.boisestate.cs.automaton.acyclic.AcyclicWeightedAutomaton;
+import edu.boisestate.cs.automatonModel.operations.CountingGraph;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Draws strings uniformly at random from the strings counted by one or more
+ * automata. Each automaton is copied into a counting graph and the
+ * number of accepted strings of each length from each state is counted the
+ * first time the length is sampled, so every character of a sample is chosen
+ * in proportion to the number of strings that can still follow it. Weights of
+ * transitions, accept states and automata are counted as repeated strings,
+ * matching the model counts of the automata. The random source is seeded, so
+ * a sequence of samples can be repeated.
+ * <p>
+ * Fractional weights of acyclic automata are scaled to integers once per
+ * transition and once for accepting, so their counts of longer strings are
+ * scaled more. Counts are brought to a common scale before strings of
+ * different lengths or automata are weighed against each other.
+ */
+public class UniformStringSampler {
+
+    private final Random random;
+    private final List<Graph> graphs;
+
+    public UniformStringSampler(long seed) {
+        this.random = new Random(seed);
+        this.graphs = new ArrayList<>();
+    }
+
+    /**
+     * Adds the strings of an automaton.
+     */
+    public void add(Automaton automaton) {
+        add(automaton, BigInteger.ONE);
+    }
+
+    /**
+     * Adds the strings of an automaton, each counted factor times.
+     */
+    public void add(Automaton automaton, BigInteger factor) {
+        graphs.add(new Graph(CountingGraph.of(automaton, factor)));
+    }
+
+    /**
+     * Adds the strings of a weighted automaton, counting the empty string
+     * and transition weights as the model counter does.
+     */
+    public void add(WeightedAutomaton automaton) {
+        graphs.add(new Graph(CountingGraph.of(automaton)));
+    }
+
+    /**
+     * Adds the strings of an acyclic weighted automaton.
+     */
+    public void add(AcyclicWeightedAutomaton automaton) {
+        graphs.add(new Graph(CountingGraph.of(automaton)));
+    }
+
+    /**
+     * @return True if some string of the length is accepted.
+     */
+    public boolean hasLength(int length) {
+        return count(length, scale(length)).signum() > 0;
+    }
+
+    /**
+     * Draws a string of the given length.
+     *
+     * @return The string, or null if no string of the length is accepted.
+     */
+    public String sample(int length) {
+        BigInteger scale = scale(length);
+        BigInteger total = count(length, scale);
+        if (total.signum() == 0) {
+            return null;
+        }
+        return draw(length, below(total), scale);
+    }
+
+    /**
+     * Draws a string with a length in a range, so that every counted string
+     * in the range is equally likely.
+     *
+     * @return The string, or null if no string in the range is accepted.
+     */
+    public String sample(int minLength, int maxLength) {
+
+        // total the strings of every length in the range, on the scale of
+        // the longest length
+        BigInteger scale = scale(maxLength);
+        BigInteger total = BigInteger.ZERO;
+        for (int length = minLength; length <= maxLength; length++) {
+            total = total.add(count(length, scale));
+        }
+        if (total.signum() == 0) {
+            return null;
+        }
+
+        // pick the length holding the chosen string
+        BigInteger choice = below(total);
+        for (int length = minLength; length <= maxLength; length++) {
+            BigInteger count = count(length, scale);
+            if (choice.compareTo(count) < 0) {
+                return draw(length, choice, scale);
+            }
+            choice = choice.subtract(count);
+        }
+        throw new IllegalStateException("Sample choice out of range");
+    }
+
+    /**
+     * @return A scale that the counts of every automaton for lengths up to
+     * the given one divide, the product of their scales at that length.
+     */
+    private BigInteger scale(int maxLength) {
+        BigInteger scale = BigInteger.ONE;
+        for (Graph graph : graphs) {
+            scale = scale.multiply(graph.scale(maxLength));
+        }
+        return scale;
+    }
+
+    private BigInteger count(int length, BigInteger scale) {
+        BigInteger total = BigInteger.ZERO;
+        for (Graph graph : graphs) {
+            total = total.add(graph.count(length, 0)
+                                   .multiply(graph.weight(length, scale)));
+        }
+        return total;
+    }
+
+    private String draw(int length, BigInteger choice, BigInteger scale) {
+
+        // pick the automaton holding the chosen string
+        for (Graph graph : graphs) {
+            BigInteger weight = graph.weight(length, scale);
+            BigInteger count = graph.count(length, 0).multiply(weight);
+            if (choice.compareTo(count) < 0) {
+                return graph.draw(length, choice.divide(weight));
+            }
+            choice = choice.subtract(count);
+        }
+        throw new IllegalStateException("Sample choice out of range");
+    }
+
+    /**
+     * @return A random number from zero up to but not including the bound.
+     */
+    private BigInteger below(BigInteger bound) {
+        BigInteger value;
+        do {
+            value = new BigInteger(bound.bitLength(), random);
+        } while (value.compareTo(bound) >= 0);
+        return value;
+    }
+
+    /**
+     * An automaton graph with the counts of the strings of each length from
+     * each state.
+     */
+    private static class Graph {
+
+        final CountingGraph graph;
+        final BigInteger factor;
+
+        // counts[length][state], extended as longer strings are sampled
+        final List<BigInteger[]> counts;
+
+        Graph(CountingGraph graph) {
+            this.graph = graph;
+            this.factor = graph.getFactor();
+            this.counts = new ArrayList<>();
+        }
+
+        /**
+         * @return The amount the counts of strings of the length are scaled
+         * by, the transition denominator once for each character and the
+         * accept denominator once.
+         */
+        BigInteger scale(int length) {
+            return BigInteger.valueOf(graph.getTransitionDenominator())
+                             .pow(length)
+                             .multiply(BigInteger.valueOf(
+                                     graph.getAcceptDenominator()));
+        }
+
+        /**
+         * @return The number of times each string of the length is counted
+         * when counts are brought to the given scale.
+         */
+        BigInteger weight(int length, BigInteger scale) {
+            return factor.multiply(scale.divide(scale(length)));
+        }
+
+        BigInteger count(int length, int state) {
+
+            // count longer lengths from the counts one shorter
+            int stateCount = graph.getStateCount();
+            while (counts.size() <= length) {
+                int current = counts.size();
+                BigInteger[] row = new BigInteger[stateCount];
+                for (int s = 0; s < stateCount; s++) {
+                    if (current == 0) {
+                        row[s] = graph.getAcceptWeight(s);
+                        continue;
+                    }
+                    BigInteger[] shorter = counts.get(current - 1);
+                    BigInteger sum = BigInteger.ZERO;
+                    for (int t = graph.getTransitionStart(s); t < graph.getTransitionEnd(s); t++) {
+                        BigInteger tail = shorter[graph.getDest(t)];
+                        if (tail.signum() != 0) {
+                            sum = sum.add(graph.getChoices(t).multiply(tail));
+                        }
+                    }
+                    row[s] = sum;
+                }
+                counts.add(row);
+            }
+            return counts.get(length)[state];
+        }
+
+        String draw(int length, BigInteger choice) {
+            StringBuilder string = new StringBuilder(length);
+            int state = 0;
+            for (int remaining = length; remaining > 0; remaining--) {
+
+                // scale the choice down to the strings after one transition
+                int next = -1;
+                BigInteger[] shorter = counts.get(remaining - 1);
+                for (int t = graph.getTransitionStart(state); t < graph.getTransitionEnd(state); t++) {
+                    BigInteger span = graph.getChoices(t).multiply(shorter[graph.getDest(t)]);
+                    if (choice.compareTo(span) < 0) {
+                        next = t;
+                        break;
+                    }
+                    choice = choice.subtract(span);
+                }
+                if (next < 0) {
+                    throw new IllegalStateException("Sample choice out of range");
+                }
+
+                // the remaining choice picks the character and the string
+                // after it, with every character equally likely
+                char min = graph.getMin(next);
+                int width = graph.getMax(next) - min + 1;
+                BigInteger[] split = choice.divideAndRemainder(shorter[graph.getDest(next)]);
+                int offset = split[0].mod(BigInteger.valueOf(width)).intValue();
+                string.append((char) (min + offset));
+                choice = split[1];
+                state = graph.getDest(next);
+            }
+            return string.toString();
+        }
+    }
+}